@@ -0,0 +1,65 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.benchmark;
+
+import java.io.File;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler at 1 to 64 threads, writing a JSON result file for each thread count so a
+ * baseline can be compared with later runs.
+ * <p>
+ * Usage: java -cp target/benchmarks.jar org.jeasy.flows.benchmark.BenchmarkRunner [include regex] [output dir]
+ *
+ * @author matt rajkowski
+ */
+public class BenchmarkRunner {
+
+  static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+
+  public static void main(String[] args) throws RunnerException {
+    String include = args.length > 0 ? args[0] : "PlaybookRunBenchmark|ExpressionBenchmark|SetTaskBenchmark|"
+        + "YamlReaderBenchmark|ParallelFlowBenchmark";
+    File outputDir = new File(args.length > 1 ? args[1] : "target/jmh-results");
+    if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+      throw new IllegalStateException("Unable to create " + outputDir);
+    }
+    for (int threads : THREAD_COUNTS) {
+      Options options = new OptionsBuilder()
+          .include(include)
+          .threads(threads)
+          .addProfiler(GCProfiler.class)
+          .resultFormat(ResultFormatType.JSON)
+          .result(new File(outputDir, "threads-" + threads + ".json").getPath())
+          .build();
+      new Runner(options).run();
+    }
+  }
+}
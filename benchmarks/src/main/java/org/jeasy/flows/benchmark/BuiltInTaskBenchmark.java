@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.benchmark;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.jeasy.flows.playbook.CompiledPlaybook;
+import org.jeasy.flows.playbook.PlaybookManager;
+import org.jeasy.flows.reader.YamlReader;
+import org.jeasy.flows.work.WorkContext;
+import org.jeasy.flows.work.WorkReport;
+import org.jeasy.flows.work.WorkStatus;
+import org.jeasy.flows.workflow.SequentialFlow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs a 20-task playbook of built-in tasks which do not evaluate expressions, to check that running the tasks does not
+ * allocate; run with {@code -prof gc} and compare gc.alloc.rate.norm. The workflow is run with a re-used work context,
+ * and with PlaybookManager.run, which creates a work context for each run.
+ *
+ * @author matt rajkowski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuiltInTaskBenchmark {
+
+  private static final int TASKS = 20;
+
+  @Param({"noop", "log", "set"})
+  public String task;
+
+  private String playbookId;
+  private SequentialFlow workFlow;
+  private WorkContext workContext;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    playbookId = "built-in-" + task;
+    StringBuilder sb = new StringBuilder();
+    sb.append("id: ").append(playbookId).append('\n');
+    sb.append("workflow:\n");
+    for (int i = 0; i < TASKS; i++) {
+      switch (task) {
+        case "log":
+          sb.append("  - log: Step ").append(i).append('\n');
+          break;
+        case "set":
+          sb.append("  - set: step").append(i).append(" = yes\n");
+          break;
+        default:
+          sb.append("  - noop:\n");
+      }
+    }
+    PlaybookManager.register(new HashMap<>());
+    PlaybookManager.add(YamlReader.readPlaybook(sb.toString()));
+    CompiledPlaybook compiledPlaybook = PlaybookManager.getCompiledPlaybook(playbookId);
+    workFlow = compiledPlaybook.getWorkFlow();
+    workContext = compiledPlaybook.newWorkContext();
+    WorkReport workReport = workFlow.execute(workContext);
+    if (workReport == null || workReport.getStatus() != WorkStatus.COMPLETED) {
+      throw new IllegalStateException("The playbook did not complete: " + workReport);
+    }
+  }
+
+  @Benchmark
+  public WorkReport workflow() {
+    return workFlow.execute(workContext);
+  }
+
+  @Benchmark
+  public WorkReport run() {
+    return PlaybookManager.run(playbookId);
+  }
+}
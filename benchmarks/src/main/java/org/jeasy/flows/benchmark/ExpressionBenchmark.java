@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jeasy.flows.work.Expression;
+import org.jeasy.flows.work.NoOpTask;
+import org.jeasy.flows.work.TaskContext;
+import org.jeasy.flows.work.WorkContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluates the kinds of expressions found in playbooks: scripts, guards, single expressions and string templates
+ *
+ * @author matt rajkowski
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionBenchmark {
+
+  private WorkContext workContext;
+  private TaskContext taskContext;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Map<String, Object> user = new HashMap<>();
+    user.put("id", 1001);
+    user.put("name", "Jane");
+    user.put("active", true);
+    workContext = new WorkContext();
+    workContext.put("user", user);
+    workContext.put("total", 42);
+    taskContext = new TaskContext(new NoOpTask());
+    taskContext.put("threshold", 10);
+  }
+
+  @Benchmark
+  public Object evaluateScript() {
+    return Expression.evaluate(workContext, taskContext, "total * 2 + threshold");
+  }
+
+  @Benchmark
+  public Object evaluateSingleExpression() {
+    return Expression.evaluate(workContext, taskContext, "{{ user.name }}");
+  }
+
+  @Benchmark
+  public Object evaluateTemplate() {
+    return Expression.evaluate(workContext, taskContext, "User {{ user.name }} has {{ total }} points");
+  }
+
+  @Benchmark
+  public boolean validate() {
+    return Expression.validate(workContext, taskContext, "total > threshold && user.active");
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jeasy.flows.work.Expression;
+import org.jeasy.flows.work.NoOpTask;
+import org.jeasy.flows.work.TaskContext;
+import org.jeasy.flows.work.WorkContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluates a 'when' condition: with Expression.validate, as every check did before results were re-used, through a
+ * task context while its variables are unchanged, after one of its variables changes, and alternating between two
+ * work contexts, as concurrent runs of a compiled playbook share the task context
+ *
+ * @author matt rajkowski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GuardBenchmark {
+
+  private static final String WHEN = "count < limit && status == 'active'";
+
+  private TaskContext taskContext;
+  private WorkContext workContext;
+  private WorkContext otherWorkContext;
+  private boolean other = false;
+  private int count = 0;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    taskContext = new TaskContext(new NoOpTask());
+    taskContext.setWhen(WHEN);
+    workContext = new WorkContext();
+    workContext.put("count", 1);
+    workContext.put("limit", 10);
+    workContext.put("status", "active");
+    otherWorkContext = new WorkContext();
+    otherWorkContext.put("count", 20);
+    otherWorkContext.put("limit", 10);
+    otherWorkContext.put("status", "active");
+  }
+
+  @Benchmark
+  public boolean validate() {
+    return Expression.validate(workContext, taskContext, WHEN);
+  }
+
+  @Benchmark
+  public boolean unchanged() {
+    return taskContext.evaluateWhen(workContext);
+  }
+
+  @Benchmark
+  public boolean alternating() {
+    other = !other;
+    return taskContext.evaluateWhen(other ? otherWorkContext : workContext);
+  }
+
+  @Benchmark
+  public boolean changed() {
+    workContext.put("count", ++count & 7);
+    return taskContext.evaluateWhen(workContext);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.jeasy.flows.engine.WorkFlowEngine;
+import org.jeasy.flows.engine.WorkFlowEngineBuilder;
+import org.jeasy.flows.journal.RunJournal;
+import org.jeasy.flows.playbook.PlaybookManager;
+import org.jeasy.flows.reader.YamlReader;
+import org.jeasy.flows.work.WorkReport;
+import org.jeasy.flows.work.WorkStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs an added playbook with PlaybookManager.run without a journal, and with a journal which records each step
+ * asynchronously or waits for each step to be on disk; with several threads the synchronous journal writes the steps
+ * of concurrent runs together
+ *
+ * @author matt rajkowski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+
+  @Param({"10"})
+  public int tasksPerPlaybook;
+
+  @Param({"none", "ASYNC", "SYNC"})
+  public String journal;
+
+  private Path directory;
+  private String playbookId;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    WorkFlowEngineBuilder builder = WorkFlowEngineBuilder.aNewWorkFlowEngine();
+    if (!"none".equals(journal)) {
+      directory = Files.createTempDirectory("journal-benchmark");
+      builder.with(new RunJournal(directory.resolve("runs.journal"), RunJournal.Durability.valueOf(journal)));
+    }
+    PlaybookManager.setWorkFlowEngine(builder.build());
+    PlaybookManager.register(new HashMap<>());
+    PlaybookManager.add(YamlReader.readPlaybooks(PlaybookGenerator.generate(1, tasksPerPlaybook)));
+    playbookId = PlaybookGenerator.playbookId(0);
+    WorkReport workReport = PlaybookManager.run(playbookId);
+    if (workReport == null || workReport.getStatus() != WorkStatus.COMPLETED) {
+      throw new IllegalStateException("The generated playbook did not complete: " + workReport);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    PlaybookManager.getWorkFlowEngine().shutdown();
+    if (directory != null) {
+      Files.deleteIfExists(directory.resolve("runs.journal"));
+      Files.deleteIfExists(directory);
+    }
+  }
+
+  @Benchmark
+  public WorkReport run() {
+    return PlaybookManager.run(playbookId);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public WorkReport runConcurrently() {
+    return PlaybookManager.run(playbookId);
+  }
+}
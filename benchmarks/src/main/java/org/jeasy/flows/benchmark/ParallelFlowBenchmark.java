@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jeasy.flows.engine.ExecutorRegistry;
+import org.jeasy.flows.work.SetTask;
+import org.jeasy.flows.work.TaskContext;
+import org.jeasy.flows.work.WorkContext;
+import org.jeasy.flows.work.WorkReport;
+import org.jeasy.flows.workflow.ParallelFlowExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs short set tasks with ParallelFlowExecutor.executeInParallel on the engine's shared pool, measuring the cost of
+ * fanning out and joining rather than the work itself
+ *
+ * @author matt rajkowski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParallelFlowBenchmark {
+
+  @Param({"4", "16", "64"})
+  public int branches;
+
+  @Param({"0", "4"})
+  public int maxConcurrency;
+
+  private ExecutorRegistry executorRegistry;
+  private ParallelFlowExecutor parallelFlowExecutor;
+  private List<TaskContext> workUnits;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    executorRegistry = new ExecutorRegistry();
+    parallelFlowExecutor = new ParallelFlowExecutor(executorRegistry.getDefaultExecutor(), maxConcurrency, 10,
+        TimeUnit.SECONDS);
+    SetTask setTask = new SetTask();
+    workUnits = new ArrayList<>(branches);
+    for (int i = 0; i < branches; i++) {
+      TaskContext taskContext = new TaskContext(setTask, "branch" + i + " = " + i + " * 2");
+      taskContext.setName("set");
+      workUnits.add(taskContext);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    executorRegistry.shutdown();
+  }
+
+  @Benchmark
+  public List<WorkReport> executeInParallel() {
+    return parallelFlowExecutor.executeInParallel(workUnits, new WorkContext());
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jeasy.flows.engine.ExecutorRegistry;
+import org.jeasy.flows.engine.VirtualThreads;
+import org.jeasy.flows.work.DefaultWorkReport;
+import org.jeasy.flows.work.TaskContext;
+import org.jeasy.flows.work.Work;
+import org.jeasy.flows.work.WorkContext;
+import org.jeasy.flows.work.WorkReport;
+import org.jeasy.flows.work.WorkStatus;
+import org.jeasy.flows.workflow.ParallelFlowExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the fixed platform thread pool with virtual threads for work which blocks on I/O. Each operation completes
+ * the given number of concurrent runs, where a run is a work unit blocked for a millisecond (like sending an email),
+ * so the score is the time to drain that many in-flight runs. Virtual threads require Java 21 and the multi-release
+ * engine jar; without them the virtual mode fails in its setup, so on older JDKs run only the platform mode with
+ * {@code -p threadMode=platform}.
+ *
+ * @author matt rajkowski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelThreadModeBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  public int concurrentRuns;
+
+  @Param({"platform", "virtual"})
+  public String threadMode;
+
+  @Param({"200"})
+  public int platformThreads;
+
+  @Param({"1"})
+  public long blockingMillis;
+
+  private ExecutorRegistry executorRegistry;
+  private ParallelFlowExecutor parallelFlowExecutor;
+  private List<TaskContext> workUnits;
+  private WorkContext workContext;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    executorRegistry = new ExecutorRegistry(platformThreads);
+    ExecutorService executorService;
+    if ("virtual".equals(threadMode)) {
+      if (!VirtualThreads.isAvailable()) {
+        throw new IllegalStateException(
+            "Virtual threads are not available, run with Java 21+ or with -p threadMode=platform");
+      }
+      executorService = executorRegistry.registerVirtual("benchmark");
+    } else {
+      executorService = executorRegistry.register("benchmark", platformThreads);
+    }
+    parallelFlowExecutor = new ParallelFlowExecutor(executorService, 0, 10, TimeUnit.MINUTES);
+    Work blockingWork = new BlockingWork(blockingMillis);
+    workUnits = new ArrayList<>(concurrentRuns);
+    for (int i = 0; i < concurrentRuns; i++) {
+      workUnits.add(new TaskContext(blockingWork));
+    }
+    workContext = new WorkContext();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    executorRegistry.shutdown();
+  }
+
+  @Benchmark
+  public List<WorkReport> concurrentBlockingRuns() {
+    return parallelFlowExecutor.executeInParallel(workUnits, workContext);
+  }
+
+  static class BlockingWork implements Work {
+
+    private final long millis;
+
+    BlockingWork(long millis) {
+      this.millis = millis;
+    }
+
+    @Override
+    public WorkReport execute(WorkContext workContext, TaskContext taskContext) {
+      try {
+        Thread.sleep(millis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return new DefaultWorkReport(WorkStatus.FAILED, workContext, e);
+      }
+      return new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+    }
+  }
+}
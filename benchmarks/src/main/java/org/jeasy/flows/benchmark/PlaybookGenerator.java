@@ -0,0 +1,94 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.benchmark;
+
+/**
+ * Generates playbook YAML with a realistic mix of tasks: literal and expression sets, templated log messages, guards,
+ * blocks and parallel blocks
+ *
+ * @author matt rajkowski
+ */
+final class PlaybookGenerator {
+
+  private PlaybookGenerator() {
+  }
+
+  static String playbookId(int index) {
+    return "generated-" + index;
+  }
+
+  /**
+   * @param playbookCount the number of playbooks in the YAML
+   * @param tasksPerPlaybook the number of top-level tasks in each playbook
+   * @return the YAML for a list of playbooks
+   */
+  static String generate(int playbookCount, int tasksPerPlaybook) {
+    StringBuilder sb = new StringBuilder();
+    for (int p = 0; p < playbookCount; p++) {
+      sb.append("- id: ").append(playbookId(p)).append('\n');
+      sb.append("  name: Generated playbook ").append(p).append('\n');
+      sb.append("  vars:\n");
+      sb.append("    threshold: 5\n");
+      sb.append("    greeting: 'hello'\n");
+      sb.append("  workflow:\n");
+      sb.append("    - set: total = 1\n");
+      for (int i = 1; i < tasksPerPlaybook; i++) {
+        appendTask(sb, i);
+      }
+      sb.append("    - set: finished = yes\n");
+    }
+    return sb.toString();
+  }
+
+  private static void appendTask(StringBuilder sb, int i) {
+    switch (i % 6) {
+      case 0:
+        sb.append("    - set: total = total + ").append(i).append('\n');
+        break;
+      case 1:
+        sb.append("    - set: flag").append(i).append(" = yes\n");
+        break;
+      case 2:
+        sb.append("    - log: 'Step ").append(i).append(" has a total of {{ total }}'\n");
+        break;
+      case 3:
+        sb.append("    - when: total >= 1\n");
+        break;
+      case 4:
+        sb.append("    - block:\n");
+        sb.append("      - when: total > threshold\n");
+        sb.append("      - set: above").append(i).append(" = total - threshold\n");
+        sb.append("      - set: label").append(i).append(" = '{{ greeting }} ").append(i).append("'\n");
+        break;
+      default:
+        sb.append("    - parallel:\n");
+        sb.append("      threads: 2\n");
+        sb.append("      timeout: 10\n");
+        sb.append("      tasks:\n");
+        sb.append("        - set: left").append(i).append(" = total * 2\n");
+        sb.append("        - set: right").append(i).append(" = total * 3\n");
+        break;
+    }
+  }
+}
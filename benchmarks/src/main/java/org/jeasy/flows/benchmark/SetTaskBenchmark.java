@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jeasy.flows.metrics.ExecutionMetrics;
+import org.jeasy.flows.metrics.TaskTimer;
+import org.jeasy.flows.work.SetTask;
+import org.jeasy.flows.work.SymbolTable;
+import org.jeasy.flows.work.TaskContext;
+import org.jeasy.flows.work.WorkContext;
+import org.jeasy.flows.work.WorkReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Executes the set task with a literal value, an expression and a template; the literal set is also run through its
+ * TaskContext with and without a timer to show the cost of execution metrics per task. The 'slots' context is the
+ * SlotWorkContext of a compiled playbook, with the tasks compiled against its symbol table; 'map' is a WorkContext
+ *
+ * @author matt rajkowski
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SetTaskBenchmark {
+
+  @Param({"map", "slots"})
+  public String context;
+
+  private SetTask setTask;
+  private SymbolTable symbolTable;
+  private WorkContext workContext;
+  private TaskContext literalTask;
+  private TaskContext expressionTask;
+  private TaskContext templateTask;
+  private TaskContext timedLiteralTask;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    setTask = new SetTask();
+    Map<String, Object> vars = Map.of("total", 42, "name", "Jane");
+    if ("slots".equals(context)) {
+      symbolTable = new SymbolTable(List.of("total", "name", "flag", "result", "label"));
+      workContext = symbolTable.newWorkContext(vars);
+    } else {
+      workContext = new WorkContext();
+      workContext.put(vars);
+    }
+    literalTask = createTaskContext("flag = yes");
+    expressionTask = createTaskContext("result = total * 2 + 1");
+    templateTask = createTaskContext("label = {{ name }}");
+    // The same literal set, with the timer the compiler attaches when metrics are enabled
+    timedLiteralTask = createTaskContext("flag = yes");
+    timedLiteralTask.setTimer(new ExecutionMetrics().timer("benchmark", "0", "set", TaskTimer.Kind.TASK));
+  }
+
+  private TaskContext createTaskContext(String data) {
+    TaskContext taskContext = new TaskContext(setTask, data);
+    taskContext.setSymbolTable(symbolTable);
+    taskContext.compileTemplates();
+    taskContext.compileWork();
+    return taskContext;
+  }
+
+  @Benchmark
+  public WorkReport setLiteral() {
+    return setTask.execute(workContext, literalTask);
+  }
+
+  @Benchmark
+  public WorkReport setLiteralWithoutMetrics() {
+    return literalTask.execute(workContext, literalTask);
+  }
+
+  @Benchmark
+  public WorkReport setLiteralWithMetrics() {
+    return timedLiteralTask.execute(workContext, timedLiteralTask);
+  }
+
+  @Benchmark
+  public WorkReport setExpression() {
+    return setTask.execute(workContext, expressionTask);
+  }
+
+  @Benchmark
+  public WorkReport setTemplate() {
+    return setTask.execute(workContext, templateTask);
+  }
+}
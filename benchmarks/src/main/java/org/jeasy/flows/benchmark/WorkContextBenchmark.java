@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jeasy.flows.work.SlotWorkContext;
+import org.jeasy.flows.work.SymbolTable;
+import org.jeasy.flows.work.WorkContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creates a work context for a run and sets and reads each variable, with the hash map WorkContext and with the
+ * SlotWorkContext of a compiled playbook, by name and by slot
+ *
+ * @author matt rajkowski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkContextBenchmark {
+
+  @Param({"10", "50"})
+  public int variables;
+
+  private String[] names;
+  private SymbolTable symbolTable;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    List<String> nameList = new ArrayList<>();
+    for (int i = 0; i < variables; i++) {
+      nameList.add("var" + i);
+    }
+    names = nameList.toArray(new String[0]);
+    symbolTable = new SymbolTable(nameList);
+  }
+
+  @Benchmark
+  public int map() {
+    return run(new WorkContext());
+  }
+
+  @Benchmark
+  public int slotsByName() {
+    return run(new SlotWorkContext(symbolTable));
+  }
+
+  @Benchmark
+  public int slots() {
+    SlotWorkContext workContext = new SlotWorkContext(symbolTable);
+    for (int i = 0; i < names.length; i++) {
+      workContext.put(i, names[i]);
+    }
+    int found = 0;
+    for (int i = 0; i < names.length; i++) {
+      if (workContext.get(i) != null) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  private int run(WorkContext workContext) {
+    for (String name : names) {
+      workContext.put(name, name);
+    }
+    int found = 0;
+    for (String name : names) {
+      if (workContext.get(name) != null) {
+        found++;
+      }
+    }
+    return found;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jeasy.flows.playbook.Playbook;
+import org.jeasy.flows.reader.PlaybookLoader;
+import org.jeasy.flows.reader.YamlReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses a generated playbook library with YamlReader.readPlaybooks, and split across the common ForkJoinPool with
+ * PlaybookLoader
+ *
+ * @author matt rajkowski
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class YamlReaderBenchmark {
+
+  @Param({"10", "100", "1000"})
+  public int playbookCount;
+
+  @Param({"20"})
+  public int tasksPerPlaybook;
+
+  private String yaml;
+  private final PlaybookLoader playbookLoader = new PlaybookLoader();
+
+  @Setup(Level.Trial)
+  public void setup() {
+    yaml = PlaybookGenerator.generate(playbookCount, tasksPerPlaybook);
+    List<Playbook> playbooks = YamlReader.readPlaybooks(yaml);
+    if (playbooks.size() != playbookCount) {
+      throw new IllegalStateException("Expected " + playbookCount + " playbooks, read " + playbooks.size());
+    }
+  }
+
+  @Benchmark
+  public List<Playbook> readPlaybooks() {
+    return YamlReader.readPlaybooks(yaml);
+  }
+
+  @Benchmark
+  public List<Playbook> loadInParallel() {
+    return playbookLoader.load(yaml);
+  }
+}
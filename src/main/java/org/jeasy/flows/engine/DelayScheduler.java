@@ -0,0 +1,241 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.engine;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs actions after a delay, using a hashed timer wheel: scheduling is a queue insert, and each tick only visits the
+ * timeouts in one bucket, so millions of pending delays cost a small object each and no thread. Delays are rounded up
+ * to the next tick. Actions run on the scheduler's thread and should only hand work to an executor.
+ *
+ * @author matt rajkowski
+ */
+public class DelayScheduler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DelayScheduler.class.getName());
+
+  public static final long DEFAULT_TICK_MILLIS = 10;
+  public static final int DEFAULT_WHEEL_SIZE = 512;
+
+  private final long tickNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+  private final AtomicLong pending = new AtomicLong();
+  private final long startTime = System.nanoTime();
+  private final Thread thread;
+  private volatile boolean shutdown = false;
+
+  public DelayScheduler() {
+    this(DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE);
+  }
+
+  /**
+   * @param tick the precision of the delays
+   * @param wheelSize the number of buckets, rounded up to a power of 2; a delay longer than a turn of the wheel waits
+   *     for more turns
+   */
+  public DelayScheduler(long tick, TimeUnit unit, int wheelSize) {
+    if (tick <= 0 || wheelSize <= 0) {
+      throw new IllegalArgumentException("The tick and wheel size must be positive");
+    }
+    this.tickNanos = unit.toNanos(tick);
+    int size = Integer.highestOneBit(wheelSize - 1) << 1;
+    this.wheel = new Bucket[Math.max(1, size)];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = wheel.length - 1;
+    this.thread = new Thread(this::run, "easy-flows-delay-scheduler");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Schedules an action; a delay of 0 or less runs at the next tick
+   *
+   * @return the timeout, which can be cancelled
+   */
+  public Timeout schedule(long delay, TimeUnit unit, Runnable action) {
+    if (shutdown) {
+      throw new IllegalStateException("The delay scheduler has been shutdown");
+    }
+    Timeout timeout = new Timeout(System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay)), action);
+    added.add(timeout);
+    if (pending.getAndIncrement() == 0) {
+      // The scheduler thread may be waiting for work
+      LockSupport.unpark(thread);
+    }
+    return timeout;
+  }
+
+  /**
+   * @return the number of actions which have not run or been cancelled yet
+   */
+  public long getPendingCount() {
+    return pending.get();
+  }
+
+  /**
+   * Stops the scheduler; pending actions are not run
+   */
+  public void shutdown() {
+    shutdown = true;
+    LockSupport.unpark(thread);
+  }
+
+  private void run() {
+    long tick = 0;
+    while (!shutdown) {
+      if (pending.get() == 0) {
+        // Nothing to wait for, the next schedule unparks this thread
+        LockSupport.park(this);
+        tick = Math.max(tick, (System.nanoTime() - startTime) / tickNanos);
+        continue;
+      }
+      long nextTickTime = (tick + 1) * tickNanos;
+      long sleepNanos = nextTickTime - (System.nanoTime() - startTime);
+      if (sleepNanos > 0) {
+        LockSupport.parkNanos(this, sleepNanos);
+        continue;
+      }
+      transferAdded(tick);
+      expire(wheel[(int) (tick & mask)], tick);
+      tick++;
+    }
+    LOGGER.debug("Delay scheduler stopped, pending: " + pending.get());
+  }
+
+  private void transferAdded(long currentTick) {
+    Timeout timeout;
+    while ((timeout = added.poll()) != null) {
+      if (timeout.cancelled) {
+        continue;
+      }
+      // Round up, so an action never runs early; anything already due runs at this tick
+      long dueTick = Math.max(currentTick, (timeout.deadline + tickNanos - 1) / tickNanos);
+      timeout.rounds = (dueTick - currentTick) / wheel.length;
+      wheel[(int) (dueTick & mask)].add(timeout);
+    }
+  }
+
+  private void expire(Bucket bucket, long currentTick) {
+    Timeout previous = null;
+    Timeout timeout = bucket.head;
+    while (timeout != null) {
+      Timeout next = timeout.next;
+      boolean remove = false;
+      if (timeout.cancelled) {
+        remove = true;
+      } else if (timeout.rounds > 0) {
+        timeout.rounds--;
+      } else {
+        remove = true;
+        if (timeout.fire()) {
+          try {
+            timeout.action.run();
+          } catch (RuntimeException e) {
+            LOGGER.error("Delayed action failed: " + e.getMessage());
+          }
+        }
+      }
+      if (remove) {
+        if (previous == null) {
+          bucket.head = next;
+        } else {
+          previous.next = next;
+        }
+        timeout.next = null;
+      } else {
+        previous = timeout;
+      }
+      timeout = next;
+    }
+  }
+
+  private static class Bucket {
+    Timeout head = null;
+
+    void add(Timeout timeout) {
+      timeout.next = head;
+      head = timeout;
+    }
+  }
+
+  /**
+   * A scheduled action
+   */
+  public final class Timeout {
+
+    private final long deadline;
+    private final Runnable action;
+    private long rounds = 0;
+    private Timeout next = null;
+    private volatile boolean cancelled = false;
+    private boolean done = false;
+
+    private Timeout(long deadline, Runnable action) {
+      this.deadline = deadline;
+      this.action = action;
+    }
+
+    /**
+     * @return true if the action will not run
+     */
+    public boolean cancel() {
+      synchronized (this) {
+        if (done) {
+          return false;
+        }
+        done = true;
+      }
+      cancelled = true;
+      pending.decrementAndGet();
+      return true;
+    }
+
+    private boolean fire() {
+      synchronized (this) {
+        if (done) {
+          return false;
+        }
+        done = true;
+      }
+      pending.decrementAndGet();
+      return true;
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+  }
+}
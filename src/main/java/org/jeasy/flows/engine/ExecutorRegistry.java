@@ -0,0 +1,298 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.engine;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The named, bounded thread pools shared by the workflows run by an engine. Pools are created once and re-used by
+ * every parallel flow; workflows do not shut them down, the engine does when it is shutdown.
+ *
+ * Pools can use virtual threads on Java 21+, which suits work that blocks on I/O; the "virtual" pool is always
+ * available by name, and the default pool uses virtual threads when the registry is created with
+ * {@link ThreadMode#VIRTUAL}.
+ *
+ * The registry also holds the scheduler used to wait for delayed tasks without holding a thread.
+ *
+ * @author matt rajkowski
+ */
+public class ExecutorRegistry {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExecutorRegistry.class.getName());
+
+  public static final String DEFAULT_POOL = "default";
+  public static final String VIRTUAL_POOL = "virtual";
+  public static final String ASYNC_POOL = "async";
+  public static final int DEFAULT_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+  /**
+   * The kind of threads used by the default pool
+   */
+  public enum ThreadMode {
+    /**
+     * A bounded pool of platform threads
+     */
+    PLATFORM,
+    /**
+     * A new virtual thread per task, when available, otherwise platform threads
+     */
+    VIRTUAL
+  }
+
+  private final Map<String, ExecutorService> executors = new ConcurrentHashMap<>();
+  private final int defaultThreads;
+  private final ThreadMode threadMode;
+  private volatile boolean shutdown = false;
+  private DelayScheduler delayScheduler = null;
+
+  public ExecutorRegistry() {
+    this(DEFAULT_THREADS, ThreadMode.PLATFORM);
+  }
+
+  /**
+   * @param defaultThreads the number of threads in the default pool
+   */
+  public ExecutorRegistry(int defaultThreads) {
+    this(defaultThreads, ThreadMode.PLATFORM);
+  }
+
+  public ExecutorRegistry(ThreadMode threadMode) {
+    this(DEFAULT_THREADS, threadMode);
+  }
+
+  /**
+   * @param defaultThreads the number of platform threads in the default pool
+   * @param threadMode the kind of threads for the default pool
+   */
+  public ExecutorRegistry(int defaultThreads, ThreadMode threadMode) {
+    if (defaultThreads < 1) {
+      throw new IllegalArgumentException("The default pool needs at least 1 thread");
+    }
+    this.defaultThreads = defaultThreads;
+    this.threadMode = threadMode;
+    if (threadMode == ThreadMode.VIRTUAL && !VirtualThreads.isAvailable()) {
+      LOGGER.warn("Virtual threads are not available, the default pool will use platform threads");
+    }
+  }
+
+  /**
+   * Creates a named pool with a fixed maximum number of threads; idle threads are released
+   *
+   * @param name the pool name
+   * @param threads the maximum number of threads
+   * @return the pool, or the existing pool when the name is already registered
+   */
+  public ExecutorService register(String name, int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("A pool needs at least 1 thread: " + name);
+    }
+    checkShutdown();
+    return executors.computeIfAbsent(name, poolName -> newPool(poolName, threads));
+  }
+
+  /**
+   * Creates a named pool which starts a virtual thread for each task, or a bounded pool of platform threads when
+   * virtual threads are not available
+   *
+   * @param name the pool name
+   * @return the pool, or the existing pool when the name is already registered
+   */
+  public ExecutorService registerVirtual(String name) {
+    checkShutdown();
+    return executors.computeIfAbsent(name, poolName -> newVirtualPool(poolName, defaultThreads));
+  }
+
+  /**
+   * Adds an existing executor as a named pool, the registry shuts it down with the other pools
+   *
+   * @param name the pool name
+   * @param executorService the executor
+   */
+  public void register(String name, ExecutorService executorService) {
+    checkShutdown();
+    ExecutorService previous = executors.put(name, executorService);
+    if (previous != null && previous != executorService) {
+      LOGGER.info("Replaced executor pool: " + name);
+      previous.shutdown();
+    }
+  }
+
+  /**
+   * Returns the named pool, or the default pool when there is no pool with that name
+   *
+   * @param name the pool name, can be null
+   * @return the executor for the pool
+   */
+  public ExecutorService getExecutor(String name) {
+    if (name != null) {
+      ExecutorService executorService = executors.get(name);
+      if (executorService != null) {
+        return executorService;
+      }
+      if (VIRTUAL_POOL.equals(name)) {
+        return registerVirtual(VIRTUAL_POOL);
+      }
+      if (!DEFAULT_POOL.equals(name)) {
+        LOGGER.warn("Executor pool not found, using the default pool: " + name);
+      }
+    }
+    return getDefaultExecutor();
+  }
+
+  public ExecutorService getDefaultExecutor() {
+    ExecutorService executorService = executors.get(DEFAULT_POOL);
+    if (executorService != null) {
+      return executorService;
+    }
+    checkShutdown();
+    if (threadMode == ThreadMode.VIRTUAL) {
+      return executors.computeIfAbsent(DEFAULT_POOL, poolName -> newVirtualPool(poolName, defaultThreads));
+    }
+    return executors.computeIfAbsent(DEFAULT_POOL, poolName -> newPool(poolName, defaultThreads));
+  }
+
+  /**
+   * Returns the pool which runs whole workflows for {@link WorkFlowEngine#runAsync}; it is kept apart from the default
+   * pool so that a workflow waiting on its parallel tasks never holds the threads those tasks need
+   *
+   * @return the "async" pool, created like the default pool when it has not been registered
+   */
+  public ExecutorService getAsyncExecutor() {
+    ExecutorService executorService = executors.get(ASYNC_POOL);
+    if (executorService != null) {
+      return executorService;
+    }
+    checkShutdown();
+    if (threadMode == ThreadMode.VIRTUAL) {
+      return executors.computeIfAbsent(ASYNC_POOL, poolName -> newVirtualPool(poolName, defaultThreads));
+    }
+    return executors.computeIfAbsent(ASYNC_POOL, poolName -> newPool(poolName, defaultThreads));
+  }
+
+  /**
+   * Returns the scheduler which resumes asynchronous runs after a task's delay; it is started when first needed
+   */
+  public synchronized DelayScheduler getDelayScheduler() {
+    if (delayScheduler == null) {
+      checkShutdown();
+      delayScheduler = new DelayScheduler();
+    }
+    return delayScheduler;
+  }
+
+  public ThreadMode getThreadMode() {
+    return threadMode;
+  }
+
+  public boolean contains(String name) {
+    return executors.containsKey(name);
+  }
+
+  public Set<String> getNames() {
+    return Collections.unmodifiableSet(executors.keySet());
+  }
+
+  public boolean isShutdown() {
+    return shutdown;
+  }
+
+  /**
+   * Shuts down every pool, work which has been submitted is completed
+   */
+  public void shutdown() {
+    shutdown = true;
+    synchronized (this) {
+      if (delayScheduler != null) {
+        delayScheduler.shutdown();
+      }
+    }
+    for (Map.Entry<String, ExecutorService> entry : executors.entrySet()) {
+      LOGGER.debug("Shutting down executor pool: " + entry.getKey());
+      entry.getValue().shutdown();
+    }
+  }
+
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for (ExecutorService executorService : executors.values()) {
+      long remaining = deadline - System.nanoTime();
+      if (!executorService.awaitTermination(Math.max(0, remaining), TimeUnit.NANOSECONDS)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void checkShutdown() {
+    if (shutdown) {
+      throw new IllegalStateException("The executor registry has been shutdown");
+    }
+  }
+
+  private static ExecutorService newPool(String name, int threads) {
+    LOGGER.debug("Creating executor pool: " + name + " threads=" + threads);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), new NamedThreadFactory(name));
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static ExecutorService newVirtualPool(String name, int fallbackThreads) {
+    if (!VirtualThreads.isAvailable()) {
+      LOGGER.warn("Virtual threads are not available, using platform threads for pool: " + name);
+      return newPool(name, fallbackThreads);
+    }
+    LOGGER.debug("Creating virtual thread executor: " + name);
+    return VirtualThreads.newExecutor(name);
+  }
+
+  private static class NamedThreadFactory implements ThreadFactory {
+
+    private final String prefix;
+    private final AtomicInteger counter = new AtomicInteger();
+
+    NamedThreadFactory(String name) {
+      this.prefix = "easy-flows-" + name + "-";
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.engine;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A CompletableFuture for work submitted to an executor; unlike a plain CompletableFuture, cancelling it with
+ * {@code cancel(true)} interrupts the thread doing the work, and cancelling it while queued keeps the work from starting.
+ * The work can be submitted in steps, waiting on a DelayScheduler in between; cancelling then also cancels the wait.
+ *
+ * @author matt rajkowski
+ */
+class InterruptibleFuture<T> extends CompletableFuture<T> {
+
+  private volatile Future<?> task = null;
+  private volatile DelayScheduler.Timeout timeout = null;
+  private volatile boolean interrupt = false;
+
+  void submit(ExecutorService executorService, Callable<T> callable) {
+    submitStep(executorService, () -> {
+      try {
+        complete(callable.call());
+      } catch (Exception e) {
+        completeExceptionally(e);
+      }
+    });
+  }
+
+  /**
+   * Submits a step of the work; the step completes this future, or submits or schedules the next step
+   */
+  void submitStep(ExecutorService executorService, Runnable step) {
+    Future<?> submitted;
+    try {
+      submitted = executorService.submit(() -> {
+        if (isDone()) {
+          // Cancelled while queued
+          return;
+        }
+        try {
+          step.run();
+        } catch (Throwable e) {
+          completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      completeExceptionally(e);
+      return;
+    }
+    task = submitted;
+    if (isCancelled()) {
+      // Cancelled before the task was known
+      submitted.cancel(interrupt);
+    }
+  }
+
+  /**
+   * Submits the next step of the work after a delay, without holding a thread while waiting
+   */
+  void scheduleStep(DelayScheduler delayScheduler, long delayMillis, ExecutorService executorService, Runnable step) {
+    DelayScheduler.Timeout scheduled;
+    try {
+      scheduled = delayScheduler.schedule(delayMillis, TimeUnit.MILLISECONDS,
+          () -> submitStep(executorService, step));
+    } catch (IllegalStateException e) {
+      completeExceptionally(e);
+      return;
+    }
+    timeout = scheduled;
+    if (isCancelled()) {
+      scheduled.cancel();
+    }
+  }
+
+  @Override
+  public boolean cancel(boolean mayInterruptIfRunning) {
+    interrupt = mayInterruptIfRunning;
+    boolean cancelled = super.cancel(mayInterruptIfRunning);
+    if (cancelled) {
+      DelayScheduler.Timeout scheduled = timeout;
+      if (scheduled != null) {
+        scheduled.cancel();
+      }
+      Future<?> submitted = task;
+      if (submitted != null) {
+        submitted.cancel(mayInterruptIfRunning);
+      }
+    }
+    return cancelled;
+  }
+}
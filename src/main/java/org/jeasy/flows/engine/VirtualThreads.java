@@ -0,0 +1,56 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.engine;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads, which are available when running on Java 21+ with the multi-release jar (built with the
+ * jdk21 profile). On older runtimes {@link #isAvailable()} is false and platform threads are used instead.
+ *
+ * @author matt rajkowski
+ */
+public final class VirtualThreads {
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * @return true if virtual threads can be created
+   */
+  public static boolean isAvailable() {
+    return false;
+  }
+
+  /**
+   * Creates an executor which starts a new virtual thread for each task
+   *
+   * @param name the prefix for the thread names
+   * @return the executor
+   * @throws UnsupportedOperationException if virtual threads are not available
+   */
+  public static ExecutorService newExecutor(String name) {
+    throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+  }
+}
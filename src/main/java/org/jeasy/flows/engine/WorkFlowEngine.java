@@ -23,6 +23,11 @@
  */
 package org.jeasy.flows.engine;
 
+import java.util.concurrent.CompletableFuture;
+
+import org.jeasy.flows.journal.RunJournal;
+import org.jeasy.flows.journal.UnfinishedRun;
+import org.jeasy.flows.metrics.ExecutionMetrics;
 import org.jeasy.flows.work.WorkContext;
 import org.jeasy.flows.work.WorkReport;
 import org.jeasy.flows.workflow.WorkFlow;
@@ -43,4 +48,65 @@ public interface WorkFlowEngine {
      */
     WorkReport run(WorkFlow workFlow, WorkContext workContext);
 
+    /**
+     * Run the given workflow on the engine's async executor, without blocking the caller.
+     * Cancelling the returned future with {@code cancel(true)} interrupts the thread running
+     * the workflow, which stops before its next work unit. The default implementation runs the
+     * workflow on the common pool, and cancelling it does not interrupt the run.
+     *
+     * @param workFlow to run
+     * @param workContext context in which the workflow will be run
+     * @return a future completed with the workflow report, or exceptionally if the workflow throws
+     */
+    default CompletableFuture<WorkReport> runAsync(WorkFlow workFlow, WorkContext workContext) {
+        return CompletableFuture.supplyAsync(() -> run(workFlow, workContext));
+    }
+
+    /**
+     * Resume a run found in a journal, from the first top-level step it had not completed; the
+     * step which was in progress runs again.
+     *
+     * @param workFlow the workflow which was run, a sequential flow
+     * @param unfinishedRun the run, with its work context as of its last completed step
+     * @return workflow report
+     * @throws UnsupportedOperationException when the engine does not journal its runs
+     */
+    default WorkReport resume(WorkFlow workFlow, UnfinishedRun unfinishedRun) {
+        throw new UnsupportedOperationException("This engine does not resume journaled runs");
+    }
+
+    /**
+     * Get the journal which records the runs of this engine.
+     *
+     * @return the journal, or null when runs are not journaled
+     */
+    default RunJournal getJournal() {
+        return null;
+    }
+
+    /**
+     * Get the thread pools shared by the workflows run by this engine.
+     *
+     * @return the executor registry of this engine, or null when the engine does not share its pools
+     */
+    default ExecutorRegistry getExecutorRegistry() {
+        return null;
+    }
+
+    /**
+     * Get the latency histograms of the workflows compiled for this engine.
+     *
+     * @return the execution metrics, or null when metrics are not enabled
+     */
+    default ExecutionMetrics getExecutionMetrics() {
+        return null;
+    }
+
+    /**
+     * Shutdown the thread pools of this engine. Work already submitted is completed. The
+     * journal is closed.
+     */
+    default void shutdown() {
+    }
+
 }
@@ -23,6 +23,11 @@
  */
 package org.jeasy.flows.engine;
 
+import java.util.concurrent.ExecutorService;
+
+import org.jeasy.flows.journal.RunJournal;
+import org.jeasy.flows.metrics.ExecutionMetrics;
+
 /**
  * Main entry point to create {@link WorkFlowEngine} instances.
  *
@@ -39,15 +44,80 @@ public class WorkFlowEngineBuilder {
         return new WorkFlowEngineBuilder();
     }
 
+    private ExecutorRegistry executorRegistry;
+    private ExecutionMetrics executionMetrics;
+    private ExecutorService asyncExecutor;
+    private RunJournal journal;
+
     private WorkFlowEngineBuilder() {
     }
 
+    /**
+     * Set the thread pools to be shared by the workflows run by the engine.
+     *
+     * @param executorRegistry the named thread pools
+     * @return the builder instance
+     */
+    public WorkFlowEngineBuilder with(ExecutorRegistry executorRegistry) {
+        this.executorRegistry = executorRegistry;
+        return this;
+    }
+
+    /**
+     * Record latency histograms for the tasks of the workflows compiled for the engine.
+     *
+     * @return the builder instance
+     */
+    public WorkFlowEngineBuilder withMetrics() {
+        return with(new ExecutionMetrics());
+    }
+
+    /**
+     * Record latency histograms for the tasks of the workflows compiled for the engine.
+     *
+     * @param executionMetrics the metrics to record into, which can be shared by engines
+     * @return the builder instance
+     */
+    public WorkFlowEngineBuilder with(ExecutionMetrics executionMetrics) {
+        this.executionMetrics = executionMetrics;
+        return this;
+    }
+
+    /**
+     * Set the executor which runs workflows started with {@link WorkFlowEngine#runAsync}; by default
+     * the engine creates an "async" pool, separate from the pools used by parallel flows. The
+     * executor is shut down with the engine.
+     *
+     * @param asyncExecutor the executor for asynchronous runs
+     * @return the builder instance
+     */
+    public WorkFlowEngineBuilder withAsyncExecutor(ExecutorService asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+        return this;
+    }
+
+    /**
+     * Record the start, top-level steps and end of every run of a sequential flow, so that runs
+     * interrupted by a restart can be resumed. The journal is closed with the engine.
+     *
+     * @param journal the journal to append to
+     * @return the builder instance
+     */
+    public WorkFlowEngineBuilder with(RunJournal journal) {
+        this.journal = journal;
+        return this;
+    }
+
     /**
      * Create a new {@link WorkFlowEngine}.
      * 
      * @return a new {@link WorkFlowEngine}.
      */
     public WorkFlowEngine build() {
-        return new WorkFlowEngineImpl();
+        ExecutorRegistry registry = executorRegistry == null ? new ExecutorRegistry() : executorRegistry;
+        if (asyncExecutor != null) {
+            registry.register(ExecutorRegistry.ASYNC_POOL, asyncExecutor);
+        }
+        return new WorkFlowEngineImpl(registry, executionMetrics, journal);
     }
 }
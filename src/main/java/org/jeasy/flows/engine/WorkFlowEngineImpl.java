@@ -23,8 +23,18 @@
  */
 package org.jeasy.flows.engine;
 
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import org.jeasy.flows.journal.RunJournal;
+import org.jeasy.flows.journal.UnfinishedRun;
+import org.jeasy.flows.metrics.ExecutionMetrics;
+import org.jeasy.flows.work.DefaultWorkReport;
 import org.jeasy.flows.work.WorkContext;
 import org.jeasy.flows.work.WorkReport;
+import org.jeasy.flows.work.WorkStatus;
+import org.jeasy.flows.workflow.SequentialFlow;
 import org.jeasy.flows.workflow.WorkFlow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,9 +43,160 @@ class WorkFlowEngineImpl implements WorkFlowEngine {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WorkFlowEngineImpl.class);
 
+    private final ExecutorRegistry executorRegistry;
+    private final ExecutionMetrics executionMetrics;
+    private final RunJournal journal;
+
+    WorkFlowEngineImpl() {
+        this(new ExecutorRegistry());
+    }
+
+    WorkFlowEngineImpl(ExecutorRegistry executorRegistry) {
+        this(executorRegistry, null);
+    }
+
+    WorkFlowEngineImpl(ExecutorRegistry executorRegistry, ExecutionMetrics executionMetrics) {
+        this(executorRegistry, executionMetrics, null);
+    }
+
+    WorkFlowEngineImpl(ExecutorRegistry executorRegistry, ExecutionMetrics executionMetrics, RunJournal journal) {
+        this.executorRegistry = executorRegistry;
+        this.executionMetrics = executionMetrics;
+        this.journal = journal;
+    }
+
     public WorkReport run(WorkFlow workFlow, WorkContext workContext) {
-        LOGGER.info("Running workflow '{}'", workFlow.getName());
+        LOGGER.debug("Running workflow '{}'", workFlow.getName());
+        if (journal != null && workFlow instanceof SequentialFlow) {
+            SequentialFlow.Execution execution = ((SequentialFlow) workFlow).newExecution(workContext);
+            return runJournaled(execution, journal.start(workFlow.getName(), workContext));
+        }
         return workFlow.execute(workContext);
     }
 
+    @Override
+    public WorkReport resume(WorkFlow workFlow, UnfinishedRun unfinishedRun) {
+        if (!(workFlow instanceof SequentialFlow)) {
+            throw new IllegalArgumentException("Only a sequential flow can be resumed: " + workFlow.getName());
+        }
+        LOGGER.info("Resuming workflow '{}' at step {}", workFlow.getName(), unfinishedRun.getNextStep());
+        SequentialFlow.Execution execution = ((SequentialFlow) workFlow).newExecution(
+                unfinishedRun.getWorkContext(), unfinishedRun.getNextStep());
+        return runJournaled(execution, journal != null ? journal.resume(unfinishedRun) : null);
+    }
+
+    private WorkReport runJournaled(SequentialFlow.Execution execution, RunJournal.Run run) {
+        try {
+            while (execution.hasNext()) {
+                long delay = execution.takeDelay();
+                if (delay > 0) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        // The next step sees the interrupt and fails the flow
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                next(execution, run);
+            }
+        } catch (RuntimeException e) {
+            finish(run, failed(execution, e));
+            throw e;
+        }
+        WorkReport workReport = execution.getReport();
+        finish(run, workReport);
+        return workReport;
+    }
+
+    private static void next(SequentialFlow.Execution execution, RunJournal.Run run) {
+        int step = execution.getIndex();
+        execution.next();
+        // A step which is a block completes with the last work unit in the block
+        if (run != null && execution.getIndex() > step) {
+            run.stepCompleted(step, execution.getWorkContext());
+        }
+    }
+
+    private static void finish(RunJournal.Run run, WorkReport workReport) {
+        if (run != null) {
+            run.finish(workReport);
+        }
+    }
+
+    private static WorkReport failed(SequentialFlow.Execution execution, Throwable error) {
+        return new DefaultWorkReport(WorkStatus.FAILED, execution.getWorkContext(), error);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * A sequential flow is run a work unit at a time; while waiting for a work unit's delay
+     * no thread is held, and the flow resumes on the async executor.
+     */
+    @Override
+    public CompletableFuture<WorkReport> runAsync(WorkFlow workFlow, WorkContext workContext) {
+        InterruptibleFuture<WorkReport> future = new InterruptibleFuture<>();
+        ExecutorService executorService = executorRegistry.getAsyncExecutor();
+        if (workFlow instanceof SequentialFlow) {
+            LOGGER.debug("Running workflow '{}'", workFlow.getName());
+            SequentialFlow.Execution execution = ((SequentialFlow) workFlow).newExecution(workContext);
+            RunJournal.Run run = journal != null ? journal.start(workFlow.getName(), workContext) : null;
+            if (run != null) {
+                // Cancelled or failed runs are finished here; completed runs as their last step completes
+                future.whenComplete((workReport, error) -> {
+                    if (error != null) {
+                        run.finish(failed(execution, error));
+                    }
+                });
+            }
+            future.submitStep(executorService, () -> resume(execution, run, future, executorService));
+        } else {
+            future.submit(executorService, () -> run(workFlow, workContext));
+        }
+        return future;
+    }
+
+    private void resume(SequentialFlow.Execution execution, RunJournal.Run run,
+            InterruptibleFuture<WorkReport> future, ExecutorService executorService) {
+        while (execution.hasNext()) {
+            long delay = execution.takeDelay();
+            if (delay > 0) {
+                future.scheduleStep(executorRegistry.getDelayScheduler(), delay, executorService,
+                        () -> resume(execution, run, future, executorService));
+                return;
+            }
+            next(execution, run);
+        }
+        WorkReport workReport = execution.getReport();
+        finish(run, workReport);
+        future.complete(workReport);
+    }
+
+    @Override
+    public ExecutorRegistry getExecutorRegistry() {
+        return executorRegistry;
+    }
+
+    @Override
+    public ExecutionMetrics getExecutionMetrics() {
+        return executionMetrics;
+    }
+
+    @Override
+    public RunJournal getJournal() {
+        return journal;
+    }
+
+    @Override
+    public void shutdown() {
+        executorRegistry.shutdown();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                LOGGER.error("Could not close the journal {}", journal.getPath(), e);
+            }
+        }
+    }
+
 }
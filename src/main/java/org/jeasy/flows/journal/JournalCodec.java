@@ -0,0 +1,197 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Encodes the records of a RunJournal, and the work context values within them
+ *
+ * @author matt rajkowski
+ */
+final class JournalCodec {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JournalCodec.class.getName());
+
+  static final byte RUN_STARTED = 1;
+  static final byte STEP_COMPLETED = 2;
+  static final byte RUN_FINISHED = 3;
+
+  private static final byte REMOVED = 0;
+  private static final byte STRING = 1;
+  private static final byte INTEGER = 2;
+  private static final byte LONG = 3;
+  private static final byte DOUBLE = 4;
+  private static final byte BOOLEAN = 5;
+  private static final byte SERIALIZED = 6;
+
+  // The JDK types a work context usually holds, and the application classes allowed by the property
+  private static final String ALLOWED_TYPES =
+      "maxdepth=20;maxrefs=10000;maxbytes=1048576;java.lang.*;java.util.*;java.time.*;java.math.*;!*";
+  private static final ObjectInputFilter FILTER = createFilter(System.getProperty(RunJournal.SERIAL_FILTER_PROPERTY));
+
+  /**
+   * Read in place of a value which could not be decoded, such as a class which is not allowed or no longer exists
+   */
+  static final Object UNDECODABLE = new Object();
+
+  private JournalCodec() {
+  }
+
+  static ObjectInputFilter createFilter(String allowedPatterns) {
+    if (allowedPatterns == null || allowedPatterns.isBlank()) {
+      return ObjectInputFilter.Config.createFilter(ALLOWED_TYPES);
+    }
+    return ObjectInputFilter.Config.createFilter(allowedPatterns + ";" + ALLOWED_TYPES);
+  }
+
+  static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Writes the variables; a null value records a removed variable, and values which cannot be serialized are left out
+   */
+  static void writeValues(DataOutputStream out, Map<String, Object> values) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream entries = new DataOutputStream(buffer);
+    int count = 0;
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      if (writeValue(entries, entry.getKey(), entry.getValue())) {
+        count++;
+      }
+    }
+    out.writeInt(count);
+    buffer.writeTo(out);
+  }
+
+  /**
+   * Reads the variables; a value which cannot be decoded is read as {@link #UNDECODABLE}
+   */
+  static Map<String, Object> readValues(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    Map<String, Object> values = new LinkedHashMap<>();
+    for (int i = 0; i < count; i++) {
+      String key = readString(in);
+      values.put(key, readValue(in, key));
+    }
+    return values;
+  }
+
+  private static boolean writeValue(DataOutputStream out, String key, Object value) throws IOException {
+    if (value == null) {
+      writeString(out, key);
+      out.writeByte(REMOVED);
+    } else if (value instanceof String) {
+      writeString(out, key);
+      out.writeByte(STRING);
+      writeString(out, (String) value);
+    } else if (value instanceof Integer) {
+      writeString(out, key);
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      writeString(out, key);
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      writeString(out, key);
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Boolean) {
+      writeString(out, key);
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof Serializable) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+        objectOut.writeObject(value);
+      } catch (IOException e) {
+        LOGGER.debug("Not journaling '" + key + "': " + e.getMessage());
+        return false;
+      }
+      writeString(out, key);
+      out.writeByte(SERIALIZED);
+      out.writeInt(bytes.size());
+      bytes.writeTo(out);
+    } else {
+      LOGGER.debug("Not journaling '" + key + "', " + value.getClass().getName() + " is not serializable");
+      return false;
+    }
+    return true;
+  }
+
+  private static Object readValue(DataInputStream in, String key) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case REMOVED:
+        return null;
+      case STRING:
+        return readString(in);
+      case INTEGER:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case DOUBLE:
+        return in.readDouble();
+      case BOOLEAN:
+        return in.readBoolean();
+      case SERIALIZED:
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        // The value was read whole, so the next values can still be read when this one cannot be decoded
+        try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+          objectIn.setObjectInputFilter(FILTER);
+          return objectIn.readObject();
+        } catch (ClassNotFoundException | IOException e) {
+          LOGGER.warn("Unable to read the journaled value of '" + key + "': " + e);
+          return UNDECODABLE;
+        }
+      default:
+        throw new IOException("Unknown value type: " + type);
+    }
+  }
+}
@@ -0,0 +1,453 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.journal;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import org.jeasy.flows.work.WorkContext;
+import org.jeasy.flows.work.WorkReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append-only journal of workflow runs: when each run started, each top-level step it completed with the changes to
+ * its work context, and how it finished. After a restart, {@link #readUnfinishedRuns(Path)} finds the runs which did
+ * not finish so that they can be resumed from the step which was in progress; that step runs again.
+ *
+ * Records are written by one thread in groups, so that many runs share each write and sync to disk. With
+ * {@link Durability#SYNC} a step is only reported complete once its record is on disk; with {@link Durability#ASYNC}
+ * the records of the last moments before a crash can be lost, and those steps run again on resume.
+ *
+ * Work context values are journaled when they are strings, numbers, booleans, or otherwise Serializable; other values
+ * are left out, and are missing when the run is resumed. Serialized values are only read back when their classes are
+ * in java.lang, java.util, java.time or java.math, or are allowed by the {@value #SERIAL_FILTER_PROPERTY} system
+ * property; a run with a value which cannot be read is not resumed.
+ *
+ * @author matt rajkowski
+ */
+public class RunJournal implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RunJournal.class.getName());
+
+  /**
+   * Patterns of the application classes which can be read from a journal, in the syntax of
+   * {@link java.io.ObjectInputFilter.Config#createFilter(String)}, such as {@code com.example.events.*}
+   */
+  public static final String SERIAL_FILTER_PROPERTY = "easyflows.journal.serialFilter";
+
+  // How long asynchronous records collect before they are written and synced together
+  private static final long ASYNC_INTERVAL_MILLIS = 10;
+
+  /**
+   * When a run waits for its records
+   */
+  public enum Durability {
+    /**
+     * Wait until each record has been synced to disk
+     */
+    SYNC,
+    /**
+     * Do not wait, the records are written and synced in the background every 10 milliseconds
+     */
+    ASYNC
+  }
+
+  private final Path path;
+  private final FileChannel channel;
+  private final Durability durability;
+  private final Thread writer;
+
+  private final Object lock = new Object();
+  private List<byte[]> pending = new ArrayList<>();
+  private long appended = 0;
+  private long written = 0;
+  private IOException writeError = null;
+  private boolean closed = false;
+
+  public RunJournal(Path path) throws IOException {
+    this(path, Durability.SYNC);
+  }
+
+  public RunJournal(Path path, Durability durability) throws IOException {
+    this.path = path;
+    this.durability = durability;
+    // Drop a record torn by a crash, so the records appended after it can be read
+    long validLength = readRecords(path, payload -> {
+    });
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    if (channel.size() > validLength) {
+      LOGGER.warn("Truncating a damaged record at the end of " + path);
+      channel.truncate(validLength);
+    }
+    channel.position(validLength);
+    this.writer = new Thread(this::writeGroups, "easy-flows-journal");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public Durability getDurability() {
+    return durability;
+  }
+
+  /**
+   * Records the start of a run, with its work context
+   */
+  public Run start(String workflowName, WorkContext workContext) {
+    Run run = new Run(UUID.randomUUID().toString(), workContext);
+    byte[] record = encode(out -> {
+      out.writeByte(JournalCodec.RUN_STARTED);
+      JournalCodec.writeString(out, run.runId);
+      JournalCodec.writeString(out, workflowName);
+      out.writeLong(System.currentTimeMillis());
+      JournalCodec.writeValues(out, run.snapshot);
+    });
+    append(record);
+    return run;
+  }
+
+  /**
+   * Continues recording a run found by {@link #readUnfinishedRuns(Path)}
+   */
+  public Run resume(UnfinishedRun unfinishedRun) {
+    return new Run(unfinishedRun.getRunId(), unfinishedRun.getWorkContext());
+  }
+
+  /**
+   * The recorder for one run; it is used by one thread at a time
+   */
+  public class Run {
+
+    private final String runId;
+    private Map<String, Object> snapshot;
+
+    private Run(String runId, WorkContext workContext) {
+      this.runId = runId;
+      this.snapshot = new HashMap<>(workContext.getMap());
+    }
+
+    public String getRunId() {
+      return runId;
+    }
+
+    /**
+     * Records that a top-level step completed, with the variables it set or removed
+     */
+    public void stepCompleted(int step, WorkContext workContext) {
+      Map<String, Object> current = new HashMap<>(workContext.getMap());
+      Map<String, Object> changes = new LinkedHashMap<>();
+      for (Map.Entry<String, Object> entry : current.entrySet()) {
+        if (!Objects.equals(entry.getValue(), snapshot.get(entry.getKey()))) {
+          changes.put(entry.getKey(), entry.getValue());
+        }
+      }
+      for (String key : snapshot.keySet()) {
+        if (!current.containsKey(key)) {
+          changes.put(key, null);
+        }
+      }
+      snapshot = current;
+      append(encode(out -> {
+        out.writeByte(JournalCodec.STEP_COMPLETED);
+        JournalCodec.writeString(out, runId);
+        out.writeInt(step);
+        JournalCodec.writeValues(out, changes);
+      }));
+    }
+
+    /**
+     * Records the end of the run; it is no longer unfinished
+     */
+    public void finish(WorkReport workReport) {
+      String status = workReport == null || workReport.getStatus() == null ? "" : workReport.getStatus().name();
+      append(encode(out -> {
+        out.writeByte(JournalCodec.RUN_FINISHED);
+        JournalCodec.writeString(out, runId);
+        JournalCodec.writeString(out, status);
+      }));
+    }
+  }
+
+  private interface RecordWriter {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  /**
+   * Frames a record with its length and checksum, so a record torn by a crash is detected when reading
+   */
+  private static byte[] encode(RecordWriter recordWriter) {
+    try {
+      ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+      recordWriter.write(new DataOutputStream(payload));
+      byte[] bytes = payload.toByteArray();
+      CRC32 crc = new CRC32();
+      crc.update(bytes);
+      ByteBuffer record = ByteBuffer.allocate(8 + bytes.length);
+      record.putInt(bytes.length);
+      record.putInt((int) crc.getValue());
+      record.put(bytes);
+      return record.array();
+    } catch (IOException e) {
+      // Writing to memory
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void append(byte[] record) {
+    long sequence;
+    synchronized (lock) {
+      if (closed) {
+        throw new IllegalStateException("The journal is closed: " + path);
+      }
+      pending.add(record);
+      sequence = ++appended;
+      if (pending.size() == 1) {
+        // The writer only waits when there is nothing to write; records added while it writes join the next group
+        lock.notifyAll();
+      }
+      if (durability == Durability.ASYNC) {
+        return;
+      }
+      boolean interrupted = false;
+      while (written < sequence && writeError == null) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          // The record is already queued, wait for it to be written
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (writeError != null) {
+        throw new IllegalStateException("Unable to write the journal: " + path, writeError);
+      }
+    }
+  }
+
+  private void writeGroups() {
+    while (true) {
+      List<byte[]> group;
+      long sequence;
+      synchronized (lock) {
+        while (pending.isEmpty() && !closed) {
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            // Keep writing until closed
+          }
+        }
+        if (pending.isEmpty()) {
+          return;
+        }
+        if (durability == Durability.ASYNC && !closed) {
+          try {
+            lock.wait(ASYNC_INTERVAL_MILLIS);
+          } catch (InterruptedException e) {
+            // Keep writing until closed
+          }
+        }
+        group = pending;
+        pending = new ArrayList<>();
+        sequence = appended;
+      }
+      try {
+        int size = 0;
+        for (byte[] record : group) {
+          size += record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] record : group) {
+          buffer.put(record);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+        channel.force(false);
+        synchronized (lock) {
+          written = sequence;
+          lock.notifyAll();
+        }
+      } catch (IOException e) {
+        LOGGER.error("Unable to write the journal " + path + ": " + e.getMessage());
+        synchronized (lock) {
+          writeError = e;
+          lock.notifyAll();
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Writes the remaining records and closes the file
+   */
+  @Override
+  public void close() throws IOException {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      lock.notifyAll();
+    }
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    channel.close();
+  }
+
+  /**
+   * Reads a journal, stopping at a record which was not completely written
+   *
+   * @return the runs which started but did not finish, in the order they started, except those with a work context
+   *     value which could not be read
+   */
+  public static List<UnfinishedRun> readUnfinishedRuns(Path path) throws IOException {
+    Map<String, RunState> runs = new LinkedHashMap<>();
+    readRecords(path, payload -> read(new DataInputStream(new ByteArrayInputStream(payload)), runs));
+    List<UnfinishedRun> unfinishedRuns = new ArrayList<>();
+    for (Map.Entry<String, RunState> entry : runs.entrySet()) {
+      RunState state = entry.getValue();
+      if (state.values.containsValue(JournalCodec.UNDECODABLE)) {
+        LOGGER.error("Unable to resume run " + entry.getKey() + " of '" + state.workflowName
+            + "', a value of its work context could not be read");
+        continue;
+      }
+      WorkContext workContext = new WorkContext();
+      workContext.put(state.values);
+      unfinishedRuns.add(new UnfinishedRun(entry.getKey(), state.workflowName, state.startTime, state.nextStep,
+          workContext));
+    }
+    return unfinishedRuns;
+  }
+
+  private interface RecordReader {
+    void read(byte[] payload) throws IOException;
+  }
+
+  /**
+   * @return the length of the file up to the first record which was not completely written
+   */
+  private static long readRecords(Path path, RecordReader recordReader) throws IOException {
+    if (!Files.exists(path)) {
+      return 0;
+    }
+    long fileSize = Files.size(path);
+    long validLength = 0;
+    long records = 0;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      while (true) {
+        byte[] payload;
+        try {
+          int length = in.readInt();
+          int checksum = in.readInt();
+          if (length < 0 || validLength + 8 + length > fileSize) {
+            LOGGER.warn("Journal record " + records + " is damaged, ignoring the rest of " + path);
+            break;
+          }
+          payload = new byte[length];
+          in.readFully(payload);
+          CRC32 crc = new CRC32();
+          crc.update(payload);
+          if ((int) crc.getValue() != checksum) {
+            LOGGER.warn("Journal record " + records + " is damaged, ignoring the rest of " + path);
+            break;
+          }
+        } catch (EOFException e) {
+          break;
+        }
+        recordReader.read(payload);
+        validLength += 8 + payload.length;
+        records++;
+      }
+    }
+    LOGGER.debug("Read " + records + " journal records from " + path);
+    return validLength;
+  }
+
+  private static void read(DataInputStream in, Map<String, RunState> runs) throws IOException {
+    byte type = in.readByte();
+    String runId = JournalCodec.readString(in);
+    if (type == JournalCodec.RUN_STARTED) {
+      RunState state = new RunState();
+      state.workflowName = JournalCodec.readString(in);
+      state.startTime = in.readLong();
+      state.values.putAll(JournalCodec.readValues(in));
+      runs.put(runId, state);
+    } else if (type == JournalCodec.STEP_COMPLETED) {
+      RunState state = runs.get(runId);
+      int step = in.readInt();
+      if (state == null) {
+        return;
+      }
+      for (Map.Entry<String, Object> change : JournalCodec.readValues(in).entrySet()) {
+        if (change.getValue() == null) {
+          state.values.remove(change.getKey());
+        } else {
+          state.values.put(change.getKey(), change.getValue());
+        }
+      }
+      state.nextStep = Math.max(state.nextStep, step + 1);
+    } else if (type == JournalCodec.RUN_FINISHED) {
+      runs.remove(runId);
+    } else {
+      throw new IOException("Unknown journal record type: " + type);
+    }
+  }
+
+  private static class RunState {
+    String workflowName;
+    long startTime;
+    int nextStep = 0;
+    final Map<String, Object> values = new HashMap<>();
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.journal;
+
+import org.jeasy.flows.work.WorkContext;
+
+/**
+ * A run found in a journal which did not finish, with its work context as of the last completed step
+ *
+ * @author matt rajkowski
+ */
+public class UnfinishedRun {
+
+  private final String runId;
+  private final String workflowName;
+  private final long startTime;
+  private final int nextStep;
+  private final WorkContext workContext;
+
+  UnfinishedRun(String runId, String workflowName, long startTime, int nextStep, WorkContext workContext) {
+    this.runId = runId;
+    this.workflowName = workflowName;
+    this.startTime = startTime;
+    this.nextStep = nextStep;
+    this.workContext = workContext;
+  }
+
+  public String getRunId() {
+    return runId;
+  }
+
+  /**
+   * @return the name of the workflow, which is the playbook id for playbooks
+   */
+  public String getWorkflowName() {
+    return workflowName;
+  }
+
+  /**
+   * @return when the run started, in milliseconds since the epoch
+   */
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * @return the index of the first top-level step which did not complete
+   */
+  public int getNextStep() {
+    return nextStep;
+  }
+
+  public WorkContext getWorkContext() {
+    return workContext;
+  }
+
+  @Override
+  public String toString() {
+    return "UnfinishedRun{runId=" + runId +
+        ", workflowName=" + workflowName +
+        ", nextStep=" + nextStep +
+        '}';
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The latency histograms of the playbooks run by an engine, keyed by playbook id, step, task id and kind. Timers are
+ * created when a playbook is compiled, so running a playbook only records into existing histograms; recompiling a
+ * playbook keeps its history.
+ *
+ * @author matt rajkowski
+ */
+public class ExecutionMetrics {
+
+  private static final Comparator<TaskMetrics> ORDER = Comparator
+      .comparing(TaskMetrics::getPlaybookId, Comparator.nullsFirst(Comparator.naturalOrder()))
+      .thenComparing(TaskMetrics::getStep, ExecutionMetrics::compareSteps)
+      .thenComparing(TaskMetrics::getKind);
+
+  private final ConcurrentMap<String, TaskTimer> timers = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the timer for a step of a playbook, creating it if needed
+   */
+  public TaskTimer timer(String playbookId, String step, String taskId, TaskTimer.Kind kind) {
+    String key = playbookId + " " + step + " " + taskId + " " + kind;
+    return timers.computeIfAbsent(key, k -> new TaskTimer(playbookId, step, taskId, kind));
+  }
+
+  /**
+   * @return the metrics for every step, ordered by playbook and step
+   */
+  public List<TaskMetrics> getMetrics() {
+    List<TaskMetrics> metrics = new ArrayList<>(timers.size());
+    for (TaskTimer timer : timers.values()) {
+      metrics.add(timer.getMetrics());
+    }
+    metrics.sort(ORDER);
+    return metrics;
+  }
+
+  /**
+   * @return the metrics for the steps of the playbook, in step order
+   */
+  public List<TaskMetrics> getMetrics(String playbookId) {
+    List<TaskMetrics> metrics = new ArrayList<>();
+    for (TaskTimer timer : timers.values()) {
+      if (playbookId.equals(timer.getPlaybookId())) {
+        metrics.add(timer.getMetrics());
+      }
+    }
+    metrics.sort(ORDER);
+    return metrics;
+  }
+
+  /**
+   * Resets the counts, the timers stay attached to the compiled playbooks
+   */
+  public void reset() {
+    for (TaskTimer timer : timers.values()) {
+      timer.reset();
+    }
+  }
+
+  /**
+   * Compares steps like 2, 10 and 4.1 by number
+   */
+  static int compareSteps(String a, String b) {
+    String[] left = a.split("\\.");
+    String[] right = b.split("\\.");
+    for (int i = 0; i < Math.min(left.length, right.length); i++) {
+      int result = Integer.compare(Integer.parseInt(left[i]), Integer.parseInt(right[i]));
+      if (result != 0) {
+        return result;
+      }
+    }
+    return Integer.compare(left.length, right.length);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.metrics;
+
+/**
+ * The latency percentiles and counts for a step of a playbook, in nanoseconds
+ *
+ * @author matt rajkowski
+ */
+public class TaskMetrics {
+
+  private final String playbookId;
+  private final String step;
+  private final String taskId;
+  private final TaskTimer.Kind kind;
+  private final long count;
+  private final long errorCount;
+  private final long meanNanos;
+  private final long p50Nanos;
+  private final long p99Nanos;
+  private final long p999Nanos;
+  private final long maxNanos;
+
+  TaskMetrics(String playbookId, String step, String taskId, TaskTimer.Kind kind, long count, long errorCount,
+      long meanNanos, long p50Nanos, long p99Nanos, long p999Nanos, long maxNanos) {
+    this.playbookId = playbookId;
+    this.step = step;
+    this.taskId = taskId;
+    this.kind = kind;
+    this.count = count;
+    this.errorCount = errorCount;
+    this.meanNanos = meanNanos;
+    this.p50Nanos = p50Nanos;
+    this.p99Nanos = p99Nanos;
+    this.p999Nanos = p999Nanos;
+    this.maxNanos = maxNanos;
+  }
+
+  public String getPlaybookId() {
+    return playbookId;
+  }
+
+  public String getStep() {
+    return step;
+  }
+
+  public String getTaskId() {
+    return taskId;
+  }
+
+  public TaskTimer.Kind getKind() {
+    return kind;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getErrorCount() {
+    return errorCount;
+  }
+
+  public long getMeanNanos() {
+    return meanNanos;
+  }
+
+  public long getP50Nanos() {
+    return p50Nanos;
+  }
+
+  public long getP99Nanos() {
+    return p99Nanos;
+  }
+
+  public long getP999Nanos() {
+    return p999Nanos;
+  }
+
+  public long getMaxNanos() {
+    return maxNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "TaskMetrics{playbook=" + playbookId +
+        ", step=" + step +
+        ", task=" + taskId +
+        ", kind=" + kind +
+        ", count=" + count +
+        ", errors=" + errorCount +
+        ", p50=" + p50Nanos +
+        ", p99=" + p99Nanos +
+        ", p999=" + p999Nanos +
+        ", max=" + maxNanos +
+        '}';
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency and failures of one step of a playbook; the compiler attaches timers to the steps only when the
+ * engine has metrics enabled
+ *
+ * @author matt rajkowski
+ */
+public final class TaskTimer {
+
+  /**
+   * What is being timed
+   */
+  public enum Kind {
+    /** A task, block or whole repeat */
+    TASK,
+    /** The evaluation of a task's 'when' condition */
+    WHEN,
+    /** One iteration of a repeated task */
+    REPEAT,
+    /** A parallel block, from submitting the tasks until all of them have joined */
+    PARALLEL_JOIN
+  }
+
+  private final String playbookId;
+  private final String step;
+  private final String taskId;
+  private final Kind kind;
+  private final LatencyHistogram histogram = new LatencyHistogram();
+  private final LongAdder errors = new LongAdder();
+
+  TaskTimer(String playbookId, String step, String taskId, Kind kind) {
+    this.playbookId = playbookId;
+    this.step = step;
+    this.taskId = taskId;
+    this.kind = kind;
+  }
+
+  public void record(long nanos, boolean failed) {
+    histogram.record(nanos);
+    if (failed) {
+      errors.increment();
+    }
+  }
+
+  public String getPlaybookId() {
+    return playbookId;
+  }
+
+  /**
+   * @return the position of the task in the playbook, such as 3 or 4.1 for a task in a block
+   */
+  public String getStep() {
+    return step;
+  }
+
+  public String getTaskId() {
+    return taskId;
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  public LatencyHistogram getHistogram() {
+    return histogram;
+  }
+
+  /**
+   * @return a point in time copy of the counts and percentiles
+   */
+  public TaskMetrics getMetrics() {
+    long[] snapshot = histogram.snapshot();
+    long count = LatencyHistogram.sum(snapshot);
+    return new TaskMetrics(playbookId, step, taskId, kind, count, errors.sum(),
+        LatencyHistogram.mean(snapshot, count),
+        LatencyHistogram.valueAtPercentile(snapshot, count, 50),
+        LatencyHistogram.valueAtPercentile(snapshot, count, 99),
+        LatencyHistogram.valueAtPercentile(snapshot, count, 99.9),
+        LatencyHistogram.valueAtPercentile(snapshot, count, 100));
+  }
+
+  void reset() {
+    histogram.reset();
+    errors.reset();
+  }
+
+  @Override
+  public String toString() {
+    return "TaskTimer{" + playbookId + " " + step + " " + taskId + " " + kind + "}";
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.playbook;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.jeasy.flows.metrics.LatencyHistogram;
+import org.jeasy.flows.work.WorkReport;
+import org.jeasy.flows.work.WorkStatus;
+
+/**
+ * The combined result of running a playbook for each context of a batch: the number of runs by status, the reports of
+ * the failed runs, and the distribution of the run times
+ *
+ * @author matt rajkowski
+ */
+public class BatchReport {
+
+  private final String playbookId;
+  private final long count;
+  private final Map<WorkStatus, Long> statusCounts;
+  private final long failureCount;
+  private final SortedMap<Long, WorkReport> failures;
+  private final LatencyHistogram latency;
+  private final long elapsedNanos;
+
+  BatchReport(String playbookId, Map<WorkStatus, Long> statusCounts, long failureCount,
+      SortedMap<Long, WorkReport> failures, LatencyHistogram latency, long elapsedNanos) {
+    this.playbookId = playbookId;
+    this.count = latency.getCount();
+    this.statusCounts = Collections.unmodifiableMap(new EnumMap<>(statusCounts));
+    this.failureCount = failureCount;
+    this.failures = Collections.unmodifiableSortedMap(failures);
+    this.latency = latency;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  public String getPlaybookId() {
+    return playbookId;
+  }
+
+  /**
+   * @return the number of contexts which were run
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * A run whose tasks were all skipped has no report, and is counted as completed
+   *
+   * @return the number of runs with each status
+   */
+  public Map<WorkStatus, Long> getStatusCounts() {
+    return statusCounts;
+  }
+
+  public long getCount(WorkStatus status) {
+    Long statusCount = statusCounts.get(status);
+    return statusCount == null ? 0 : statusCount;
+  }
+
+  public long getFailureCount() {
+    return failureCount;
+  }
+
+  /**
+   * Only the first failures are kept, up to the limit given when the batch was run
+   *
+   * @return the reports of failed runs, by the position of the context in the batch
+   */
+  public SortedMap<Long, WorkReport> getFailures() {
+    return failures;
+  }
+
+  public long getMeanNanos() {
+    return latency.getMean();
+  }
+
+  public long getP50Nanos() {
+    return latency.getValueAtPercentile(50.0);
+  }
+
+  public long getP99Nanos() {
+    return latency.getValueAtPercentile(99.0);
+  }
+
+  public long getP999Nanos() {
+    return latency.getValueAtPercentile(99.9);
+  }
+
+  public long getMaxNanos() {
+    return latency.getValueAtPercentile(100.0);
+  }
+
+  /**
+   * @return the time from starting the batch until every run finished, in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "BatchReport{playbookId=" + playbookId +
+        ", count=" + count +
+        ", statusCounts=" + statusCounts +
+        ", p50Nanos=" + getP50Nanos() +
+        ", p99Nanos=" + getP99Nanos() +
+        ", elapsedNanos=" + elapsedNanos +
+        '}';
+  }
+}
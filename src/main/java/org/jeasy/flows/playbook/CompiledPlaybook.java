@@ -0,0 +1,195 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.playbook;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jeasy.flows.engine.WorkFlowEngine;
+import org.jeasy.flows.journal.UnfinishedRun;
+import org.jeasy.flows.work.SymbolTable;
+import org.jeasy.flows.work.WorkContext;
+import org.jeasy.flows.work.WorkReport;
+import org.jeasy.flows.workflow.SequentialFlow;
+
+/**
+ * A CompiledPlaybook is the validated and assembled workflow for a playbook; it is built once, is immutable, and can
+ * be run repeatedly and concurrently. The cost of building the workflow is tracked separately from the cost of running
+ * it.
+ *
+ * With constant folding, a second workflow is built with the constant expressions evaluated. It is only used by a run
+ * which is given no work context, since the context is then created from the playbook vars; a run with the caller's
+ * work context, a journaled run, and a resumed run use the workflow as written.
+ *
+ * @author matt rajkowski
+ */
+public class CompiledPlaybook {
+
+  private final Playbook playbook;
+  private final SequentialFlow workFlow;
+  private final SequentialFlow foldedWorkFlow;
+  private final SymbolTable symbolTable;
+  private final FoldingReport foldingReport;
+  private final long buildNanos;
+  private final LongAdder runCount = new LongAdder();
+  private final LongAdder runNanos = new LongAdder();
+
+  CompiledPlaybook(Playbook playbook, SequentialFlow workFlow, SequentialFlow foldedWorkFlow, SymbolTable symbolTable,
+      FoldingReport foldingReport, long buildNanos) {
+    this.playbook = playbook;
+    this.workFlow = workFlow;
+    this.foldedWorkFlow = foldedWorkFlow;
+    this.symbolTable = symbolTable;
+    this.foldingReport = foldingReport;
+    this.buildNanos = buildNanos;
+  }
+
+  public String getId() {
+    return playbook.getId();
+  }
+
+  public Playbook getPlaybook() {
+    return playbook;
+  }
+
+  public SequentialFlow getWorkFlow() {
+    return workFlow;
+  }
+
+  /**
+   * @return the workflow with the constant expressions evaluated, or null when nothing was folded
+   */
+  public SequentialFlow getFoldedWorkFlow() {
+    return foldedWorkFlow;
+  }
+
+  /**
+   * @return the slots of the playbook vars and the variables set by its tasks
+   */
+  public SymbolTable getSymbolTable() {
+    return symbolTable;
+  }
+
+  /**
+   * Creates a work context for a run, with the playbook vars, which keeps the variables known to the playbook in slots
+   */
+  public WorkContext newWorkContext() {
+    return symbolTable.newWorkContext(playbook.getVars());
+  }
+
+  /**
+   * @return the expressions evaluated and the tasks eliminated when the workflow was built
+   */
+  public FoldingReport getFoldingReport() {
+    return foldingReport;
+  }
+
+  /**
+   * @return the time spent validating and assembling the workflow, in nanoseconds
+   */
+  public long getBuildNanos() {
+    return buildNanos;
+  }
+
+  /**
+   * @return the number of completed runs of this workflow
+   */
+  public long getRunCount() {
+    return runCount.sum();
+  }
+
+  /**
+   * @return the total time spent running this workflow, in nanoseconds
+   */
+  public long getRunNanos() {
+    return runNanos.sum();
+  }
+
+  public long getAverageRunNanos() {
+    long count = runCount.sum();
+    return count == 0 ? 0 : runNanos.sum() / count;
+  }
+
+  WorkReport run(WorkFlowEngine workFlowEngine, WorkContext workContext) {
+    SequentialFlow flow = selectWorkFlow(workFlowEngine, workContext);
+    // Make sure workContext exists and has playbook vars
+    if (workContext == null) {
+      workContext = newWorkContext();
+    }
+    long startTime = System.nanoTime();
+    try {
+      return workFlowEngine.run(flow, workContext);
+    } finally {
+      runNanos.add(System.nanoTime() - startTime);
+      runCount.increment();
+    }
+  }
+
+  WorkReport resume(WorkFlowEngine workFlowEngine, UnfinishedRun unfinishedRun) {
+    long startTime = System.nanoTime();
+    try {
+      return workFlowEngine.resume(workFlow, unfinishedRun);
+    } finally {
+      runNanos.add(System.nanoTime() - startTime);
+      runCount.increment();
+    }
+  }
+
+  /**
+   * Runs on the engine's async executor; the run time of an asynchronous run includes any wait for a thread
+   */
+  CompletableFuture<WorkReport> runAsync(WorkFlowEngine workFlowEngine, WorkContext workContext) {
+    SequentialFlow flow = selectWorkFlow(workFlowEngine, workContext);
+    if (workContext == null) {
+      workContext = newWorkContext();
+    }
+    long startTime = System.nanoTime();
+    CompletableFuture<WorkReport> future = workFlowEngine.runAsync(flow, workContext);
+    // Return the engine's future, so that cancelling it interrupts the run
+    future.whenComplete((workReport, error) -> {
+      runNanos.add(System.nanoTime() - startTime);
+      runCount.increment();
+    });
+    return future;
+  }
+
+  /**
+   * The folded workflow assumes the playbook vars, and its steps do not match the steps a journal resumes from
+   */
+  private SequentialFlow selectWorkFlow(WorkFlowEngine workFlowEngine, WorkContext workContext) {
+    if (foldedWorkFlow != null && workContext == null && workFlowEngine.getJournal() == null) {
+      return foldedWorkFlow;
+    }
+    return workFlow;
+  }
+
+  @Override
+  public String toString() {
+    return "CompiledPlaybook{id=" + getId() +
+        ", buildNanos=" + buildNanos +
+        ", runCount=" + getRunCount() +
+        ", averageRunNanos=" + getAverageRunNanos() +
+        '}';
+  }
+}
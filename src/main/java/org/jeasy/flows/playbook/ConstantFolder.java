@@ -0,0 +1,287 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.playbook;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+import org.jeasy.flows.work.EvaluateTask;
+import org.jeasy.flows.work.Expression;
+import org.jeasy.flows.work.LogTask;
+import org.jeasy.flows.work.NoOpTask;
+import org.jeasy.flows.work.SetTask;
+import org.jeasy.flows.work.TaskContext;
+import org.jeasy.flows.work.Template;
+import org.jeasy.flows.work.WhenTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Evaluates the expressions of a playbook which only use literals and constant vars, once when the playbook is
+ * compiled. A playbook var is constant when its value is not a {{ }} expression, and no set or evaluate task of the
+ * playbook uses its name; a playbook with a task which is not built in has no constants, since that task can change
+ * any variable. Expressions which call methods or assign variables are not folded.
+ *
+ * A 'when' condition which is always met is removed, and a task whose condition is never met is left out of the
+ * workflow; in a block, so are the tasks after it. A 'when' task which is never met is kept for its failed report, and
+ * the tasks after it are left out.
+ *
+ * @author matt rajkowski
+ */
+class ConstantFolder {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConstantFolder.class.getName());
+
+  /**
+   * What the compiler does with a task
+   */
+  enum Decision {
+    /**
+     * Leave the task out of the workflow
+     */
+    ELIMINATE,
+    /**
+     * The task's 'when' condition is always met, so it is not evaluated
+     */
+    ALWAYS,
+    /**
+     * The 'when' task always passes, so it is replaced by a no-op
+     */
+    PASS
+  }
+
+  private final Map<String, Object> taskInstances;
+  private final Map<String, Object> constants;
+  private final JexlContext constantContext;
+  private final Map<Task, Decision> decisions = new IdentityHashMap<>();
+  private final FoldingReport report = new FoldingReport();
+
+  ConstantFolder(Playbook playbook, Map<String, Object> taskInstances) {
+    this.taskInstances = taskInstances;
+    this.constants = findConstants(playbook, taskInstances);
+    this.constantContext = new MapContext(constants);
+    fold(playbook.getTaskList(), "", false);
+  }
+
+  /**
+   * @return the decision for the task, or null to compile it as is
+   */
+  Decision getDecision(Task task) {
+    return decisions.get(task);
+  }
+
+  FoldingReport getReport() {
+    return report;
+  }
+
+  /**
+   * Replaces the task's data and variable templates which only use constants with their values
+   */
+  void foldTemplates(TaskContext taskContext, Task task, String step) {
+    Object work = taskInstances.get(task.getId());
+    if (work instanceof SetTask || work instanceof WhenTask || work instanceof EvaluateTask) {
+      // These read the data as an expression, not a template
+      return;
+    }
+    taskContext.foldTemplates(template -> {
+      if (!template.hasExpressions() || template.isConstant()) {
+        return template;
+      }
+      for (String expression : template.getExpressions()) {
+        if (!isConstant(expression, task)) {
+          return template;
+        }
+      }
+      try {
+        Object value = template.evaluate(constantContext);
+        if (value == null) {
+          return template;
+        }
+        report.folded(step, task, template.getSource(), value);
+        return template.toConstant(value);
+      } catch (Exception e) {
+        return template;
+      }
+    });
+  }
+
+  private static Map<String, Object> findConstants(Playbook playbook, Map<String, Object> taskInstances) {
+    Map<String, Object> constants = new HashMap<>();
+    if (playbook.getVars() == null) {
+      return constants;
+    }
+    for (Map.Entry<String, Object> var : playbook.getVars().entrySet()) {
+      Object value = var.getValue();
+      if (value != null && !(value instanceof String text && text.contains("{{"))) {
+        constants.put(var.getKey(), value);
+      }
+    }
+    removeChanged(playbook.getTaskList(), taskInstances, constants);
+    return constants;
+  }
+
+  /**
+   * Removes the vars which are set, and the vars used by evaluate tasks since their scripts can assign them; any other
+   * task may change the work context, so then no var is constant
+   */
+  private static void removeChanged(List<Task> taskList, Map<String, Object> taskInstances,
+      Map<String, Object> constants) {
+    for (Task task : taskList) {
+      if (task.hasTasks()) {
+        removeChanged(task.getTaskList(), taskInstances, constants);
+        continue;
+      }
+      Object work = taskInstances.get(task.getId());
+      if (work instanceof SetTask && task.getData() != null) {
+        int idx = task.getData().indexOf("=");
+        if (idx > 0) {
+          constants.remove(task.getData().substring(0, idx).trim());
+        }
+      } else if (work instanceof EvaluateTask && task.getData() != null) {
+        try {
+          for (List<String> variable : Expression.getScriptCache().getScript(task.getData()).getVariables()) {
+            constants.remove(variable.get(0));
+          }
+        } catch (Exception e) {
+          // Without knowing what the script changes, no var is constant
+          constants.clear();
+        }
+      } else if (!(work instanceof WhenTask || work instanceof LogTask || work instanceof NoOpTask)) {
+        constants.clear();
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return true when every task in the list is eliminated
+   */
+  private boolean fold(List<Task> taskList, String prefix, boolean inBlock) {
+    boolean stopped = false;
+    Task stoppedBy = null;
+    String stopExpression = null;
+    boolean allEliminated = true;
+    int index = 0;
+    for (Task task : taskList) {
+      String step = prefix + index++;
+      if (stopped) {
+        eliminate(step, task, stopExpression, stoppedBy);
+        continue;
+      }
+      if (task.hasTasks()) {
+        if ("block".equals(task.getId()) && fold(task.getTaskList(), step + ".", true)) {
+          decisions.put(task, Decision.ELIMINATE);
+          LOGGER.debug("Eliminated block " + step + ", none of its tasks can run");
+        } else {
+          allEliminated = false;
+        }
+        continue;
+      }
+      if (task.getWhen() != null) {
+        Object value = evaluate(task.getWhen(), task);
+        if (Boolean.TRUE.equals(value)) {
+          decisions.put(task, Decision.ALWAYS);
+          report.folded(step, task, task.getWhen(), value);
+        } else if (Boolean.FALSE.equals(value) && task.getRepeat() == 0) {
+          // A repeated task which is not run fails the flow, so it is kept
+          eliminate(step, task, task.getWhen(), null);
+          if (inBlock) {
+            // The rest of the block is skipped
+            stopped = true;
+            stoppedBy = task;
+            stopExpression = task.getWhen();
+          }
+          continue;
+        }
+      }
+      if (taskInstances.get(task.getId()) instanceof WhenTask && task.getData() != null) {
+        Object value = evaluate(task.getData(), task);
+        if (Boolean.TRUE.equals(value)) {
+          decisions.put(task, Decision.PASS);
+          report.folded(step, task, task.getData(), value);
+        } else if (Boolean.FALSE.equals(value)) {
+          // The task is kept, since its failed report ends the flow or block as it would without folding; the tasks
+          // after it are left out
+          stopped = true;
+          stoppedBy = task;
+          stopExpression = task.getData();
+          report.folded(step, task, task.getData(), value);
+        }
+      }
+      allEliminated = false;
+    }
+    return allEliminated;
+  }
+
+  private void eliminate(String step, Task task, String expression, Task stoppedBy) {
+    decisions.put(task, Decision.ELIMINATE);
+    report.eliminated(step, task, stoppedBy == null ? expression : expression + " (an earlier task)", false);
+  }
+
+  /**
+   * @return the value of a condition which only uses constants, or null
+   */
+  private Object evaluate(String source, Task task) {
+    try {
+      if (source.contains("{{") && source.contains("}}")) {
+        Template template = Template.compile(source);
+        for (String expression : template.getExpressions()) {
+          if (!isConstant(expression, task)) {
+            return null;
+          }
+        }
+        return template.evaluate(constantContext);
+      }
+      if (!isConstant(source, task)) {
+        return null;
+      }
+      return Expression.getScriptCache().getScript(source).execute(constantContext);
+    } catch (Exception e) {
+      LOGGER.debug("Not folded: " + source + "; " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * An expression is constant when it has no side effects, and each variable is a constant not hidden by a task var
+   */
+  private boolean isConstant(String expression, Task task) {
+    if (!Expression.isSideEffectFree(expression)) {
+      return false;
+    }
+    JexlScript script = Expression.getScriptCache().getScript(expression);
+    for (List<String> variable : script.getVariables()) {
+      String name = variable.get(0);
+      if (!constants.containsKey(name) || (task.getVars() != null && task.getVars().containsKey(name))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.playbook;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The expressions of a playbook which were evaluated when it was compiled, because they only use literals and
+ * playbook vars which are not changed by its tasks, and the tasks which were left out of the workflow because they
+ * could never run
+ *
+ * @author matt rajkowski
+ */
+public class FoldingReport {
+
+  /**
+   * A folded expression or an eliminated task
+   */
+  public static class Item {
+
+    private final String step;
+    private final String taskId;
+    private final String expression;
+    private final Object value;
+
+    Item(String step, Task task, String expression, Object value) {
+      this.step = step;
+      this.taskId = task.getId();
+      this.expression = expression;
+      this.value = value;
+    }
+
+    /**
+     * @return the position of the task in the playbook, such as 3 or 3.1 for a task in a block
+     */
+    public String getStep() {
+      return step;
+    }
+
+    public String getTaskId() {
+      return taskId;
+    }
+
+    /**
+     * @return the expression which was evaluated; for an eliminated task, the condition which prevents it from running
+     */
+    public String getExpression() {
+      return expression;
+    }
+
+    public Object getValue() {
+      return value;
+    }
+
+    @Override
+    public String toString() {
+      return step + " " + taskId + ": " + expression + " = " + value;
+    }
+  }
+
+  private final List<Item> folded = new ArrayList<>();
+  private final List<Item> eliminated = new ArrayList<>();
+
+  void folded(String step, Task task, String expression, Object value) {
+    folded.add(new Item(step, task, expression, value));
+  }
+
+  void eliminated(String step, Task task, String expression, Object value) {
+    eliminated.add(new Item(step, task, expression, value));
+  }
+
+  /**
+   * @return the expressions which were replaced by their value
+   */
+  public List<Item> getFolded() {
+    return Collections.unmodifiableList(folded);
+  }
+
+  /**
+   * @return the tasks which were left out of the workflow, with the condition which is never met
+   */
+  public List<Item> getEliminated() {
+    return Collections.unmodifiableList(eliminated);
+  }
+
+  public boolean isEmpty() {
+    return folded.isEmpty() && eliminated.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return "FoldingReport{folded=" + folded + ", eliminated=" + eliminated + '}';
+  }
+}
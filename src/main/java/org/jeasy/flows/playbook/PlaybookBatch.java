@@ -0,0 +1,154 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.playbook;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.jeasy.flows.engine.WorkFlowEngine;
+import org.jeasy.flows.metrics.LatencyHistogram;
+import org.jeasy.flows.work.DefaultWorkReport;
+import org.jeasy.flows.work.WorkContext;
+import org.jeasy.flows.work.WorkReport;
+import org.jeasy.flows.work.WorkStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs one compiled playbook for many contexts. Workers take the contexts a chunk at a time, so the source is only
+ * locked once per chunk; the caller's thread is one of the workers, and the others run on the engine's async pool.
+ *
+ * @author matt rajkowski
+ */
+class PlaybookBatch {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PlaybookBatch.class.getName());
+
+  private final CompiledPlaybook compiledPlaybook;
+  private final WorkFlowEngine workFlowEngine;
+  private final Iterator<WorkContext> contexts;
+  private final int chunkSize;
+  private final int maxFailures;
+
+  private long nextIndex = 0;
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final LongAdder completedCount = new LongAdder();
+  private final LongAdder failedCount = new LongAdder();
+  private final AtomicLong keptFailures = new AtomicLong();
+  private final SortedMap<Long, WorkReport> failures = new ConcurrentSkipListMap<>();
+
+  PlaybookBatch(CompiledPlaybook compiledPlaybook, WorkFlowEngine workFlowEngine, Iterator<WorkContext> contexts,
+      int chunkSize, int maxFailures) {
+    this.compiledPlaybook = compiledPlaybook;
+    this.workFlowEngine = workFlowEngine;
+    this.contexts = contexts;
+    this.chunkSize = Math.max(1, chunkSize);
+    this.maxFailures = maxFailures;
+  }
+
+  BatchReport run(int parallelism) {
+    long startTime = System.nanoTime();
+    List<Future<?>> workers = new ArrayList<>();
+    if (parallelism > 1) {
+      ExecutorService executorService = PlaybookManager.getExecutorRegistry(workFlowEngine).getAsyncExecutor();
+      for (int i = 1; i < parallelism; i++) {
+        workers.add(executorService.submit(this::work));
+      }
+    }
+    work();
+    for (Future<?> worker : workers) {
+      try {
+        worker.get();
+      } catch (InterruptedException e) {
+        workers.forEach(f -> f.cancel(true));
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("The batch for '" + compiledPlaybook.getId() + "' was interrupted", e);
+      } catch (ExecutionException e) {
+        throw new RuntimeException("Unable to run the batch for '" + compiledPlaybook.getId() + "'", e.getCause());
+      }
+    }
+    Map<WorkStatus, Long> statusCounts = new EnumMap<>(WorkStatus.class);
+    statusCounts.put(WorkStatus.COMPLETED, completedCount.sum());
+    statusCounts.put(WorkStatus.FAILED, failedCount.sum());
+    BatchReport batchReport = new BatchReport(compiledPlaybook.getId(), statusCounts, failedCount.sum(), failures,
+        latency, System.nanoTime() - startTime);
+    LOGGER.debug("Finished batch: " + batchReport);
+    return batchReport;
+  }
+
+  private void work() {
+    List<WorkContext> chunk = new ArrayList<>(chunkSize);
+    long index;
+    while ((index = nextChunk(chunk)) >= 0) {
+      for (WorkContext workContext : chunk) {
+        runOne(index++, workContext);
+      }
+      chunk.clear();
+    }
+  }
+
+  /**
+   * @return the position of the first context in the chunk, or -1 when there are no more contexts
+   */
+  private synchronized long nextChunk(List<WorkContext> chunk) {
+    while (chunk.size() < chunkSize && contexts.hasNext()) {
+      chunk.add(contexts.next());
+    }
+    if (chunk.isEmpty()) {
+      return -1;
+    }
+    long index = nextIndex;
+    nextIndex += chunk.size();
+    return index;
+  }
+
+  private void runOne(long index, WorkContext workContext) {
+    long startTime = System.nanoTime();
+    WorkReport workReport;
+    try {
+      workReport = compiledPlaybook.run(workFlowEngine, workContext);
+    } catch (RuntimeException e) {
+      workReport = new DefaultWorkReport(WorkStatus.FAILED, workContext, e);
+    }
+    latency.record(System.nanoTime() - startTime);
+    if (workReport != null && workReport.getStatus() == WorkStatus.FAILED) {
+      failedCount.increment();
+      if (keptFailures.incrementAndGet() <= maxFailures) {
+        failures.put(index, workReport);
+      }
+    } else {
+      completedCount.increment();
+    }
+  }
+}
@@ -0,0 +1,317 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.playbook;
+
+import static org.jeasy.flows.workflow.ParallelFlow.Builder.aNewParallelFlow;
+import static org.jeasy.flows.workflow.RepeatFlow.Builder.aNewRepeatFlow;
+import static org.jeasy.flows.workflow.SequentialFlow.Builder.aNewSequentialFlow;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jeasy.flows.engine.ExecutorRegistry;
+import org.jeasy.flows.metrics.ExecutionMetrics;
+import org.jeasy.flows.metrics.TaskTimer;
+import org.jeasy.flows.work.NoOpTask;
+import org.jeasy.flows.work.SetTask;
+import org.jeasy.flows.work.SymbolTable;
+import org.jeasy.flows.work.TaskContext;
+import org.jeasy.flows.work.Work;
+import org.jeasy.flows.workflow.ParallelFlow;
+import org.jeasy.flows.workflow.RepeatFlow;
+import org.jeasy.flows.workflow.SequentialFlow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the workflow for a playbook once, so that it can be re-used by every run
+ *
+ * @author matt rajkowski
+ */
+class PlaybookCompiler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PlaybookCompiler.class.getName());
+
+  private PlaybookCompiler() {
+  }
+
+  /**
+   * Verifies there is a matching work item for every task
+   *
+   * @return the first task id without a registered work item, or null when the playbook can be compiled
+   */
+  static String findUnknownTask(Playbook playbook, Map<String, Object> taskInstances) {
+    for (Task task : playbook.getTaskList()) {
+      if ("block".equals(task.getId()) || "parallel".equals(task.getId())) {
+        // Verify the referenced TaskList
+        for (Task blockTask : task.getTaskList()) {
+          if (!taskInstances.containsKey(blockTask.getId())) {
+            return blockTask.getId();
+          }
+        }
+      } else if (!taskInstances.containsKey(task.getId())) {
+        return task.getId();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param executionMetrics when not null, timers are attached to each step of the workflow
+   * @param constantFolding  when true, a second workflow is built in which expressions which only use constants are
+   *                         evaluated now instead of on each run
+   */
+  static CompiledPlaybook compile(Playbook playbook, Map<String, Object> taskInstances,
+      ExecutorRegistry executorRegistry, ExecutionMetrics executionMetrics, boolean constantFolding) {
+    long startTime = System.nanoTime();
+    LOGGER.debug("Building workflow... '" + playbook.getId() + "'");
+    Timers timers = new Timers(executionMetrics, playbook.getId());
+    // The tasks resolve their variables to slots as they are compiled
+    SymbolTable symbolTable = collectSymbols(playbook, taskInstances);
+    SequentialFlow sequentialFlow = buildFlow(playbook, taskInstances, executorRegistry, timers, null, symbolTable);
+    // The folded workflow is only run with a work context created from the playbook vars
+    SequentialFlow foldedFlow = null;
+    FoldingReport foldingReport = new FoldingReport();
+    if (constantFolding) {
+      ConstantFolder folder = new ConstantFolder(playbook, taskInstances);
+      SequentialFlow flow = buildFlow(playbook, taskInstances, executorRegistry, timers, folder, symbolTable);
+      foldingReport = folder.getReport();
+      if (!foldingReport.isEmpty()) {
+        foldedFlow = flow;
+      }
+    }
+    long buildTime = System.nanoTime() - startTime;
+    LOGGER.debug("Built workflow '" + playbook.getId() + "' in " + buildTime + "ns");
+    if (!foldingReport.isEmpty()) {
+      LOGGER.debug("Folded {} expressions and eliminated {} tasks of '{}'", foldingReport.getFolded().size(),
+          foldingReport.getEliminated().size(), playbook.getId());
+    }
+    return new CompiledPlaybook(playbook, sequentialFlow, foldedFlow, symbolTable, foldingReport, buildTime);
+  }
+
+  /**
+   * @param folder when not null, the tasks are compiled with its decisions and folded templates
+   */
+  private static SequentialFlow buildFlow(Playbook playbook, Map<String, Object> taskInstances,
+      ExecutorRegistry executorRegistry, Timers timers, ConstantFolder folder, SymbolTable symbolTable) {
+    // Frozen once every step is assembled, since the runs share them
+    List<TaskContext> taskContexts = new ArrayList<>();
+    SequentialFlow.Builder.NameStep builder = aNewSequentialFlow();
+    builder.named(playbook.getId());
+
+    SequentialFlow.Builder.ThenStep thenStep = null;
+    int index = 0;
+    for (Task task : playbook.getTaskList()) {
+      String step = String.valueOf(index++);
+      if (isEliminated(folder, task)) {
+        continue;
+      }
+      // Create a TaskContext which contains objects for the task to use
+      TaskContext taskContext = createTaskContext(task, (Work) taskInstances.get(task.getId()), step, folder,
+          symbolTable, taskContexts);
+      // Determine if the task contains sub-tasks, for conditional or parallel tasks
+      if (task.hasTasks()) {
+        if ("block".equals(task.getId())) {
+          LOGGER.debug("Creating a SequentialFlow...");
+          SequentialFlow.Builder.NameStep blockBuilder = aNewSequentialFlow();
+          blockBuilder.named("block");
+          SequentialFlow.Builder.ThenStep blockThenStep = null;
+          int blockIndex = 0;
+          for (Task blockTask : task.getTaskList()) {
+            String blockStep = step + "." + blockIndex++;
+            if (isEliminated(folder, blockTask)) {
+              continue;
+            }
+            TaskContext blockTaskContext = createTaskContext(blockTask, (Work) taskInstances.get(blockTask.getId()),
+                blockStep, folder, symbolTable, taskContexts);
+            if (blockTask.getRepeat() > 0) {
+              LOGGER.debug("Creating a RepeatFlow...");
+              timers.attach(blockTaskContext, blockStep, blockTask.getId(), TaskTimer.Kind.REPEAT);
+              RepeatFlow repeatFlow = aNewRepeatFlow()
+                  .repeat(blockTaskContext)
+                  .times(blockTask.getRepeat())
+                  .build();
+              blockThenStep = blockBuilder.execute(delayed(blockTask,
+                  timers.flowContext(repeatFlow, blockStep, blockTask.getId(), TaskTimer.Kind.TASK), taskContexts));
+            } else {
+              timers.attach(blockTaskContext, blockStep, blockTask.getId(), TaskTimer.Kind.TASK);
+              blockThenStep = blockBuilder.execute(delayed(blockTask, blockTaskContext, taskContexts));
+            }
+          }
+          SequentialFlow blockFlow = blockThenStep.build();
+          thenStep = builder.execute(
+              delayed(task, timers.flowContext(blockFlow, step, task.getId(), TaskTimer.Kind.TASK), taskContexts));
+        } else if ("parallel".equals(task.getId())) {
+          // Construct a parallel workflow and append as a thenStep
+          List<TaskContext> parallelTaskContextList = new ArrayList<>();
+          int parallelIndex = 0;
+          for (Task parallelTask : task.getTaskList()) {
+            String parallelStep = step + "." + parallelIndex++;
+            TaskContext parallelTaskContext = createTaskContext(parallelTask,
+                (Work) taskInstances.get(parallelTask.getId()), parallelStep, folder, symbolTable, taskContexts);
+            timers.attach(parallelTaskContext, parallelStep, parallelTask.getId(), TaskTimer.Kind.TASK);
+            parallelTaskContextList.add(delayed(parallelTask, parallelTaskContext, taskContexts));
+          }
+          // The pool is shared by the engine, threads limits how many of these tasks run at once
+          ExecutorService executorService = executorRegistry.getExecutor(task.getPool());
+          LOGGER.trace("Executor pool: " + task.getPool() + "; concurrency: " + task.getThreads());
+          LOGGER.debug("Creating a ParallelFlow...");
+          ParallelFlow.Builder.BuildStep parallelBuilder = aNewParallelFlow()
+              .named(task.getId())
+              .execute(parallelTaskContextList)
+              .with(executorService)
+              .timeout(task.getTimeout(), TimeUnit.SECONDS)
+              .concurrency(task.getThreads());
+          if (task.getTaskList().stream().anyMatch(parallelTask -> parallelTask.getDelay() > 0)) {
+            // Delayed tasks wait on the engine's scheduler, not on a pool thread
+            parallelBuilder.delays(executorRegistry.getDelayScheduler());
+          }
+          ParallelFlow parallelFlow = parallelBuilder.build();
+          thenStep = builder.execute(delayed(task,
+              timers.flowContext(parallelFlow, step, task.getId(), TaskTimer.Kind.PARALLEL_JOIN), taskContexts));
+        } else {
+          LOGGER.error("Unknown '" + task.getId() + "': This TASK has hanging TASKS!!");
+        }
+      } else {
+        // Just a task to be added
+        if (task.getRepeat() > 0) {
+          LOGGER.debug("Creating a RepeatFlow...");
+          timers.attach(taskContext, step, task.getId(), TaskTimer.Kind.REPEAT);
+          RepeatFlow repeatFlow = aNewRepeatFlow()
+              .repeat(taskContext)
+              .times(task.getRepeat())
+              .build();
+          thenStep = builder.execute(
+              delayed(task, timers.flowContext(repeatFlow, step, task.getId(), TaskTimer.Kind.TASK), taskContexts));
+        } else {
+          timers.attach(taskContext, step, task.getId(), TaskTimer.Kind.TASK);
+          thenStep = builder.execute(delayed(task, taskContext, taskContexts));
+        }
+      }
+    }
+    if (thenStep == null) {
+      // Every task was eliminated; like a run which skips every task, nothing runs and there is no report
+      thenStep = builder.execute(List.of());
+    }
+    for (TaskContext taskContext : taskContexts) {
+      taskContext.freeze();
+    }
+    return thenStep.build();
+  }
+
+  private static boolean isEliminated(ConstantFolder folder, Task task) {
+    return folder != null && folder.getDecision(task) == ConstantFolder.Decision.ELIMINATE;
+  }
+
+  /**
+   * Finds the work context variables known before running: the playbook vars and the variables assigned by set tasks
+   */
+  static SymbolTable collectSymbols(Playbook playbook, Map<String, Object> taskInstances) {
+    Set<String> names = new LinkedHashSet<>();
+    if (playbook.getVars() != null) {
+      names.addAll(playbook.getVars().keySet());
+    }
+    collectSymbols(playbook.getTaskList(), taskInstances, names);
+    return new SymbolTable(names);
+  }
+
+  private static void collectSymbols(List<Task> taskList, Map<String, Object> taskInstances, Set<String> names) {
+    for (Task task : taskList) {
+      if (task.hasTasks()) {
+        collectSymbols(task.getTaskList(), taskInstances, names);
+      } else if (taskInstances.get(task.getId()) instanceof SetTask && task.getData() != null) {
+        int idx = task.getData().indexOf("=");
+        if (idx > 0) {
+          names.add(task.getData().substring(0, idx).trim());
+        }
+      }
+    }
+  }
+
+  private static TaskContext createTaskContext(Task task, Work work, String step, ConstantFolder folder,
+      SymbolTable symbolTable, List<TaskContext> taskContexts) {
+    ConstantFolder.Decision decision = folder != null ? folder.getDecision(task) : null;
+    TaskContext taskContext = new TaskContext(decision == ConstantFolder.Decision.PASS ? new NoOpTask() : work);
+    taskContext.setName(task.getId());
+    taskContext.setData(task.getData());
+    taskContext.put(task.getVars());
+    taskContext.setWhen(decision == ConstantFolder.Decision.ALWAYS ? null : task.getWhen());
+    taskContext.setSymbolTable(symbolTable);
+    taskContext.compileTemplates();
+    if (folder != null) {
+      folder.foldTemplates(taskContext, task, step);
+    }
+    taskContext.compileWork();
+    taskContexts.add(taskContext);
+    return taskContext;
+  }
+
+  /**
+   * Sets the task's delay, in seconds, on the context which runs the whole task, so a repeated task or a block waits
+   * once; the context is a step of the workflow, so it is frozen with the others
+   */
+  private static TaskContext delayed(Task task, TaskContext taskContext, List<TaskContext> taskContexts) {
+    taskContext.setDelay(TimeUnit.SECONDS.toMillis(task.getDelay()));
+    taskContexts.add(taskContext);
+    return taskContext;
+  }
+
+  /**
+   * Attaches timers to the steps of a workflow; without metrics nothing is attached, so running costs nothing extra
+   */
+  private static class Timers {
+
+    private final ExecutionMetrics executionMetrics;
+    private final String playbookId;
+
+    Timers(ExecutionMetrics executionMetrics, String playbookId) {
+      this.executionMetrics = executionMetrics;
+      this.playbookId = playbookId;
+    }
+
+    void attach(TaskContext taskContext, String step, String taskId, TaskTimer.Kind kind) {
+      if (executionMetrics == null) {
+        return;
+      }
+      taskContext.setTimer(executionMetrics.timer(playbookId, step, taskId, kind));
+      if (taskContext.getWhen() != null) {
+        taskContext.setWhenTimer(executionMetrics.timer(playbookId, step, taskId, TaskTimer.Kind.WHEN));
+      }
+    }
+
+    TaskContext flowContext(Work flow, String step, String taskId, TaskTimer.Kind kind) {
+      TaskContext taskContext = new TaskContext(flow);
+      taskContext.setName(taskId);
+      if (executionMetrics != null) {
+        taskContext.setTimer(executionMetrics.timer(playbookId, step, taskId, kind));
+      }
+      return taskContext;
+    }
+  }
+}
@@ -23,36 +23,36 @@
  */
 package org.jeasy.flows.playbook;
 
-import static org.jeasy.flows.workflow.ParallelFlow.Builder.aNewParallelFlow;
-import static org.jeasy.flows.workflow.RepeatFlow.Builder.aNewRepeatFlow;
-import static org.jeasy.flows.workflow.SequentialFlow.Builder.aNewSequentialFlow;
-
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import org.apache.commons.jexl3.introspection.JexlPermissions;
+import org.jeasy.flows.engine.ExecutorRegistry;
+import org.jeasy.flows.engine.WorkFlowEngine;
+import org.jeasy.flows.engine.WorkFlowEngineBuilder;
+import org.jeasy.flows.journal.RunJournal;
+import org.jeasy.flows.journal.UnfinishedRun;
+import org.jeasy.flows.metrics.ExecutionMetrics;
 import org.jeasy.flows.work.EvaluateTask;
 import org.jeasy.flows.work.LogTask;
 import org.jeasy.flows.work.NoOpTask;
 import org.jeasy.flows.work.SetTask;
-import org.jeasy.flows.work.TaskContext;
 import org.jeasy.flows.work.WhenTask;
-import org.jeasy.flows.work.Work;
 import org.jeasy.flows.work.WorkContext;
 import org.jeasy.flows.work.WorkReport;
-import org.jeasy.flows.workflow.ParallelFlow;
-import org.jeasy.flows.workflow.RepeatFlow;
-import org.jeasy.flows.workflow.SequentialFlow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * The PlaybookManager initializes workflows from playbooks, and uses the WorkflowEngine to run them
+ * The PlaybookManager initializes workflows from playbooks, and uses the WorkflowEngine to run them; the registered
+ * playbooks are held in an immutable snapshot so playbooks can be added or reloaded while other threads are running them
  *
  * @author matt rajkowski
  */
@@ -62,11 +62,33 @@ public class PlaybookManager {
   final static long serialVersionUID = 8345648404174283570L;
   private static final Logger LOGGER = LoggerFactory.getLogger(PlaybookManager.class.getName());
 
-  private static Map<String, Playbook> playbooks = new HashMap<>();
-  private static Map<String, Object> taskInstances = new HashMap<>();
-  private static JexlPermissions jexlPermissions = JexlPermissions.UNRESTRICTED;
+  private static final int DEFAULT_BATCH_PARALLELISM = Runtime.getRuntime().availableProcessors();
+  private static final int DEFAULT_BATCH_CHUNK_SIZE = 64;
+  private static final int MAX_BATCH_FAILURES = 100;
+
+  private static final Object writeLock = new Object();
+  private static volatile PlaybookRegistry registry = PlaybookRegistry.EMPTY;
+  private static volatile JexlPermissions jexlPermissions = JexlPermissions.UNRESTRICTED;
+  private static volatile WorkFlowEngine workFlowEngine = WorkFlowEngineBuilder.aNewWorkFlowEngine().build();
+  private static volatile boolean constantFolding = false;
+  // The pools of the playbooks when the engine does not share its own
+  private static volatile ExecutorRegistry fallbackExecutorRegistry = null;
 
   public static void register(Map<String, String> taskLibrary) {
+    synchronized (writeLock) {
+      PlaybookRegistry.Builder next = registry.toBuilder();
+      registerTasks(next, taskLibrary);
+      // Compile the playbooks which were waiting on these tasks
+      for (Playbook playbook : next.playbooks.values()) {
+        if (!next.compiledPlaybooks.containsKey(playbook.getId())) {
+          precompile(next, playbook);
+        }
+      }
+      registry = next.build();
+    }
+  }
+
+  private static void registerTasks(PlaybookRegistry.Builder next, Map<String, String> taskLibrary) {
     LOGGER.info("Registering classes...");
     if (!taskLibrary.containsKey("set")) {
       taskLibrary.put("set", SetTask.class.getName());
@@ -85,10 +107,10 @@ public class PlaybookManager {
     }
     for (String className : taskLibrary.keySet()) {
       try {
-        if (!taskInstances.containsKey(className)) {
+        if (!next.taskInstances.containsKey(className)) {
           String taskClass = taskLibrary.get(className);
           Object classRef = Class.forName(taskClass).getDeclaredConstructor().newInstance();
-          taskInstances.put(className, classRef);
+          next.taskInstances.put(className, classRef);
           LOGGER.info("Added class: " + className + " = " + taskClass);
         }
       } catch (Exception e) {
@@ -98,7 +120,29 @@ public class PlaybookManager {
   }
 
   public static Playbook getPlaybook(String id) {
-    return playbooks.get(id);
+    return registry.getPlaybook(id);
+  }
+
+  /**
+   * Returns the compiled workflow for the playbook id, compiling it if it has not been compiled yet
+   *
+   * @param id the playbook id
+   * @return the compiled playbook, or null if the playbook is not found or cannot be compiled
+   */
+  public static CompiledPlaybook getCompiledPlaybook(String id) {
+    if (id == null) {
+      return null;
+    }
+    PlaybookRegistry current = registry;
+    CompiledPlaybook compiledPlaybook = current.getCompiledPlaybook(id);
+    if (compiledPlaybook != null) {
+      return compiledPlaybook;
+    }
+    Playbook playbook = current.getPlaybook(id);
+    if (playbook == null) {
+      return null;
+    }
+    return compile(playbook);
   }
 
   public static void add(Playbook playbook) {
@@ -106,27 +150,75 @@ public class PlaybookManager {
       LOGGER.error("Playbook is null");
       return;
     }
-    playbooks.put(playbook.getId(), playbook);
+    synchronized (writeLock) {
+      PlaybookRegistry.Builder next = registry.toBuilder();
+      next.playbooks.put(playbook.getId(), playbook);
+      precompile(next, playbook);
+      registry = next.build();
+    }
   }
 
+  /**
+   * Adds the playbooks as a single change; concurrent runs see either all of the previous playbooks or all of these
+   */
   public static void add(List<Playbook> playbookList) {
     if (playbookList == null) {
       LOGGER.error("Playbook list is null");
       return;
     }
-    for (Playbook playbook : playbookList) {
-      LOGGER.info("Adding playbook: " + playbook.getId());
-      playbooks.put(playbook.getId(), playbook);
+    synchronized (writeLock) {
+      PlaybookRegistry.Builder next = registry.toBuilder();
+      for (Playbook playbook : playbookList) {
+        LOGGER.info("Adding playbook: " + playbook.getId());
+        next.playbooks.put(playbook.getId(), playbook);
+        precompile(next, playbook);
+      }
+      registry = next.build();
     }
   }
 
+  /**
+   * Adds, replaces and removes playbooks as a single change; playbooks which are not named keep their compiled
+   * workflows
+   *
+   * @param playbookList the playbooks to add or replace
+   * @param removedIds the ids of the playbooks to remove
+   */
+  public static void update(Collection<Playbook> playbookList, Collection<String> removedIds) {
+    synchronized (writeLock) {
+      PlaybookRegistry.Builder next = registry.toBuilder();
+      if (removedIds != null) {
+        for (String id : removedIds) {
+          LOGGER.info("Removing playbook: " + id);
+          next.playbooks.remove(id);
+          next.compiledPlaybooks.remove(id);
+        }
+      }
+      if (playbookList != null) {
+        for (Playbook playbook : playbookList) {
+          LOGGER.info("Adding playbook: " + playbook.getId());
+          next.playbooks.put(playbook.getId(), playbook);
+          precompile(next, playbook);
+        }
+      }
+      registry = next.build();
+    }
+  }
+
+  public static void remove(String id) {
+    update(null, Collections.singletonList(id));
+  }
+
   public static WorkReport run(String playbookName) {
     return run(playbookName, null);
   }
 
   public static WorkReport run(String playbookName, WorkContext workContext) {
-    Playbook playbook = playbooks.get(playbookName);
-    return run(playbook, workContext);
+    CompiledPlaybook compiledPlaybook = resolve(playbookName);
+    if (compiledPlaybook == null) {
+      return null;
+    }
+    return compiledPlaybook.run(workFlowEngine, workContext);
   }
 
   public static WorkReport run(Playbook playbook) {
@@ -134,113 +226,198 @@ public class PlaybookManager {
   }
 
   public static WorkReport run(Playbook playbook, WorkContext workContext) {
-    if (playbook == null || playbook.getTaskList().isEmpty()) {
+    CompiledPlaybook compiledPlaybook = resolve(playbook);
+    if (compiledPlaybook == null) {
+      return null;
+    }
+    return compiledPlaybook.run(workFlowEngine, workContext);
+  }
+
+  public static CompletableFuture<WorkReport> runAsync(String playbookName) {
+    return runAsync(playbookName, null);
+  }
+
+  /**
+   * Runs the playbook on the engine's async executor, so the caller does not wait for the tasks to finish. The
+   * playbook is found, and compiled if needed, before returning. Cancelling the future with {@code cancel(true)}
+   * interrupts the run.
+   *
+   * @return a future for the report; the future is completed with null when the playbook cannot be run
+   */
+  public static CompletableFuture<WorkReport> runAsync(String playbookName, WorkContext workContext) {
+    CompiledPlaybook compiledPlaybook = resolve(playbookName);
+    if (compiledPlaybook == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return compiledPlaybook.runAsync(workFlowEngine, workContext);
+  }
+
+  public static CompletableFuture<WorkReport> runAsync(Playbook playbook, WorkContext workContext) {
+    CompiledPlaybook compiledPlaybook = resolve(playbook);
+    if (compiledPlaybook == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return compiledPlaybook.runAsync(workFlowEngine, workContext);
+  }
+
+  /**
+   * Runs the playbook for each context, with a worker per available processor
+   *
+   * @see #runBatch(String, Stream, int, int)
+   */
+  public static BatchReport runBatch(String playbookName, List<WorkContext> workContexts) {
+    return runBatch(playbookName, workContexts.stream(), DEFAULT_BATCH_PARALLELISM, DEFAULT_BATCH_CHUNK_SIZE);
+  }
+
+  /**
+   * Runs the playbook for each context of a batch; the playbook is found and compiled once for the whole batch. The
+   * caller's thread runs contexts too, and the other workers use the engine's async pool. Each worker takes a chunk
+   * of contexts at a time, so the stream is read as the batch progresses.
+   *
+   * @param parallelism the number of workers, including the caller's thread
+   * @param chunkSize the number of contexts a worker takes at once
+   * @return the counts by status, up to 100 failed reports, and the run time distribution; null when the playbook
+   *     cannot be run
+   */
+  public static BatchReport runBatch(String playbookName, Stream<WorkContext> workContexts, int parallelism,
+      int chunkSize) {
+    CompiledPlaybook compiledPlaybook = resolve(playbookName);
+    if (compiledPlaybook == null) {
+      return null;
+    }
+    PlaybookBatch batch = new PlaybookBatch(compiledPlaybook, workFlowEngine, workContexts.iterator(), chunkSize,
+        MAX_BATCH_FAILURES);
+    return batch.run(parallelism);
+  }
+
+  /**
+   * Resumes a run found in the engine's journal from its first step which had not completed, with the work context
+   * recorded after its last completed step; the playbook is found by the run's workflow name, which is the playbook id
+   *
+   * @return the report, or null when the playbook cannot be run
+   */
+  public static WorkReport resume(UnfinishedRun unfinishedRun) {
+    CompiledPlaybook compiledPlaybook = resolve(unfinishedRun.getWorkflowName());
+    if (compiledPlaybook == null) {
+      return null;
+    }
+    return compiledPlaybook.resume(workFlowEngine, unfinishedRun);
+  }
+
+  /**
+   * Resumes each run in the engine's journal which did not finish, such as when the application stopped while they
+   * were in progress. Call at startup, once the playbooks are added and before new runs are started.
+   *
+   * @return the reports of the resumed runs, by run id
+   */
+  public static Map<String, WorkReport> resumeUnfinishedRuns() throws IOException {
+    Map<String, WorkReport> reports = new LinkedHashMap<>();
+    RunJournal journal = workFlowEngine.getJournal();
+    if (journal == null) {
+      return reports;
+    }
+    for (UnfinishedRun unfinishedRun : RunJournal.readUnfinishedRuns(journal.getPath())) {
+      LOGGER.info("Resuming " + unfinishedRun);
+      reports.put(unfinishedRun.getRunId(), resume(unfinishedRun));
+    }
+    return reports;
+  }
+
+  private static CompiledPlaybook resolve(String playbookName) {
+    PlaybookRegistry current = registry;
+    CompiledPlaybook compiledPlaybook = current.getCompiledPlaybook(playbookName);
+    if (compiledPlaybook != null) {
+      return compiledPlaybook;
+    }
+    return resolve(current.getPlaybook(playbookName));
+  }
+
+  private static CompiledPlaybook resolve(Playbook playbook) {
+    if (playbook == null || playbook.getTaskList() == null || playbook.getTaskList().isEmpty()) {
       LOGGER.error("Playbook is null or empty...");
       return null;
     }
-    if (taskInstances == null || taskInstances.isEmpty()) {
+    // Use the cached workflow when this is the added playbook
+    PlaybookRegistry current = registry;
+    CompiledPlaybook compiledPlaybook = current.getCompiledPlaybook(playbook.getId());
+    if (compiledPlaybook != null && compiledPlaybook.getPlaybook() == playbook) {
+      return compiledPlaybook;
+    }
+    if (current.getPlaybook(playbook.getId()) == playbook) {
+      return compile(playbook);
+    }
+    // A playbook which has not been added is compiled for this run only
+    if (current.getTaskInstances().isEmpty()) {
       register(new HashMap<>());
+      current = registry;
     }
-    // Verify there is a matching work item and set the work item specific variables
-    LOGGER.debug("Verifying playbook... '" + playbook.getId() + "'");
-    for (Task task : playbook.getTaskList()) {
-      LOGGER.debug("Checking: " + task.getId());
-      if ("block".equals(task.getId()) || "parallel".equals(task.getId())) {
-        // Verify the referenced TaskList
-        for (Task blockTask : task.getTaskList()) {
-          LOGGER.debug("  Checking: " + blockTask.getId());
-          if (!taskInstances.containsKey(blockTask.getId())) {
-            LOGGER.error("Block Task id not found: " + blockTask.getId());
-            return null;
-          }
-        }
-      } else if (!taskInstances.containsKey(task.getId())) {
-        LOGGER.error("Task id not found: " + task.getId());
-        return null;
-      }
+    return verifyAndCompile(playbook, current.getTaskInstances());
+  }
+
+  /**
+   * Compiles the playbook when it is added, if the tasks are already registered; otherwise compiling is deferred until
+   * the tasks are registered or the first run
+   */
+  private static void precompile(PlaybookRegistry.Builder next, Playbook playbook) {
+    CompiledPlaybook previous = next.compiledPlaybooks.remove(playbook.getId());
+    if (previous != null) {
+      LOGGER.debug("Invalidated compiled playbook: " + previous);
     }
-    // Make sure workContext exists and has playbook vars
-    if (workContext == null) {
-      workContext = new WorkContext(playbook);
-    }
-
-    LOGGER.debug("Building workflow...");
-    SequentialFlow.Builder.NameStep builder = aNewSequentialFlow();
-    builder.named(playbook.getId());
-
-    SequentialFlow.Builder.ThenStep thenStep = null;
-    for (Task task : playbook.getTaskList()) {
-      // Create a TaskContext which contains objects for the task to use
-      TaskContext taskContext = createTaskContext(task, (Work) taskInstances.get(task.getId()));
-      // Determine if the task contains sub-tasks, for conditional or parallel tasks
-      if (task.hasTasks()) {
-        if ("block".equals(task.getId())) {
-          LOGGER.debug("Creating a SequentialFlow...");
-          SequentialFlow.Builder.NameStep blockBuilder = aNewSequentialFlow();
-          blockBuilder.named("block");
-          SequentialFlow.Builder.ThenStep blockThenStep = null;
-          for (Task blockTask : task.getTaskList()) {
-            TaskContext blockTaskContext = createTaskContext(blockTask, (Work) taskInstances.get(blockTask.getId()));
-            if (blockTask.getRepeat() > 0) {
-              LOGGER.debug("Creating a RepeatFlow...");
-              RepeatFlow repeatFlow = aNewRepeatFlow()
-                  .repeat(blockTaskContext)
-                  .times(blockTask.getRepeat())
-                  .build();
-              blockThenStep = blockBuilder.execute(repeatFlow);
-            } else {
-              blockThenStep = blockBuilder.execute(blockTaskContext);
-            }
-          }
-          SequentialFlow blockFlow = blockThenStep.build();
-          thenStep = builder.execute(blockFlow);
-        } else if ("parallel".equals(task.getId())) {
-          // Construct a parallel workflow and append as a thenStep
-          List<TaskContext> parallelTaskContextList = new ArrayList<>();
-          for (Task parallelTask : task.getTaskList()) {
-            TaskContext parallelTaskContext = createTaskContext(parallelTask,
-                (Work) taskInstances.get(parallelTask.getId()));
-            parallelTaskContextList.add(parallelTaskContext);
-          }
-          ExecutorService executorService = Executors.newFixedThreadPool(task.getThreads());
-          LOGGER.trace("Executor thread count: " + task.getThreads());
-          LOGGER.debug("Creating a ParallelFlow...");
-          ParallelFlow parallelFlow = aNewParallelFlow()
-              .named(task.getId())
-              .execute(parallelTaskContextList)
-              .with(executorService)
-              .timeout(task.getTimeout(), TimeUnit.SECONDS)
-              .build();
-          thenStep = builder.execute(parallelFlow);
-        } else {
-          LOGGER.error("Unknown '" + task.getId() + "': This TASK has hanging TASKS!!");
-        }
-      } else {
-        // Just a task to be added
-        if (task.getRepeat() > 0) {
-          LOGGER.debug("Creating a RepeatFlow...");
-          RepeatFlow repeatFlow = aNewRepeatFlow()
-              .repeat(taskContext)
-              .times(task.getRepeat())
-              .build();
-          thenStep = builder.execute(repeatFlow);
-        } else {
-          thenStep = builder.execute(taskContext);
-        }
+    if (playbook.getTaskList() == null || playbook.getTaskList().isEmpty()) {
+      return;
+    }
+    if (next.taskInstances.isEmpty()) {
+      registerTasks(next, new HashMap<>());
+    }
+    String unknownTaskId = PlaybookCompiler.findUnknownTask(playbook, next.taskInstances);
+    if (unknownTaskId != null) {
+      LOGGER.debug("Deferring compile of '" + playbook.getId() + "', task id not registered yet: " + unknownTaskId);
+      return;
+    }
+    CompiledPlaybook compiledPlaybook = verifyAndCompile(playbook, next.taskInstances);
+    if (compiledPlaybook != null) {
+      next.compiledPlaybooks.put(playbook.getId(), compiledPlaybook);
+    }
+  }
+
+  /**
+   * Compiles an added playbook on demand and publishes it, unless the playbook was replaced in the meantime
+   */
+  private static CompiledPlaybook compile(Playbook playbook) {
+    synchronized (writeLock) {
+      PlaybookRegistry current = registry;
+      CompiledPlaybook compiledPlaybook = current.getCompiledPlaybook(playbook.getId());
+      if (compiledPlaybook != null && compiledPlaybook.getPlaybook() == playbook) {
+        return compiledPlaybook;
+      }
+      PlaybookRegistry.Builder next = current.toBuilder();
+      if (next.taskInstances.isEmpty()) {
+        registerTasks(next, new HashMap<>());
       }
+      compiledPlaybook = verifyAndCompile(playbook, next.taskInstances);
+      if (compiledPlaybook != null && next.playbooks.get(playbook.getId()) == playbook) {
+        next.compiledPlaybooks.put(playbook.getId(), compiledPlaybook);
+      }
+      registry = next.build();
+      return compiledPlaybook;
     }
-    // Ready to execute...
-    SequentialFlow sequentialFlow = thenStep.build();
-    LOGGER.info("Executing workflow... " + sequentialFlow.getName());
-    return sequentialFlow.execute(workContext);
   }
 
-  private static TaskContext createTaskContext(Task task, Work work) {
-    TaskContext taskContext = new TaskContext(work);
-    taskContext.setData(task.getData());
-    taskContext.put(task.getVars());
-    taskContext.setWhen(task.getWhen());
-    return taskContext;
+  private static CompiledPlaybook verifyAndCompile(Playbook playbook, Map<String, Object> taskInstances) {
+    if (playbook.getTaskList() == null || playbook.getTaskList().isEmpty()) {
+      LOGGER.error("Playbook is null or empty...");
+      return null;
+    }
+    // Verify there is a matching work item for each task
+    LOGGER.debug("Verifying playbook... '" + playbook.getId() + "'");
+    String unknownTaskId = PlaybookCompiler.findUnknownTask(playbook, taskInstances);
+    if (unknownTaskId != null) {
+      LOGGER.error("Task id not found: " + unknownTaskId);
+      return null;
+    }
+    WorkFlowEngine engine = workFlowEngine;
+    return PlaybookCompiler.compile(playbook, taskInstances, getExecutorRegistry(engine),
+        engine.getExecutionMetrics(), constantFolding);
   }
 
   public static JexlPermissions getJexlPermissions() {
@@ -250,4 +427,88 @@ public class PlaybookManager {
   public static void setJexlPermissions(JexlPermissions permissions) {
     jexlPermissions = permissions;
   }
+
+  public static WorkFlowEngine getWorkFlowEngine() {
+    return workFlowEngine;
+  }
+
+  /**
+   * Sets the engine which runs the playbooks; compiled playbooks are rebuilt to use the engine's thread pools
+   */
+  public static void setWorkFlowEngine(WorkFlowEngine engine) {
+    synchronized (writeLock) {
+      workFlowEngine = engine;
+      PlaybookRegistry.Builder next = registry.toBuilder();
+      next.compiledPlaybooks.clear();
+      for (Playbook playbook : next.playbooks.values()) {
+        precompile(next, playbook);
+      }
+      registry = next.build();
+    }
+  }
+
+  public static boolean isConstantFolding() {
+    return constantFolding;
+  }
+
+  /**
+   * Turns on or off the evaluation of constant expressions when playbooks are compiled, which is off by default;
+   * compiled playbooks are rebuilt. When on, the playbook vars which are not changed by a set or evaluate task are
+   * constants, unless the playbook has a task which is not built in. The folded workflow is only used by runs which
+   * are not given a work context, so a caller's context always sees its own values.
+   */
+  public static void setConstantFolding(boolean enabled) {
+    synchronized (writeLock) {
+      constantFolding = enabled;
+      PlaybookRegistry.Builder next = registry.toBuilder();
+      next.compiledPlaybooks.clear();
+      for (Playbook playbook : next.playbooks.values()) {
+        precompile(next, playbook);
+      }
+      registry = next.build();
+    }
+  }
+
+  public static ExecutorRegistry getExecutorRegistry() {
+    return getExecutorRegistry(workFlowEngine);
+  }
+
+  /**
+   * @return the engine's pools, or pools shared by the playbooks when the engine does not have any
+   */
+  static ExecutorRegistry getExecutorRegistry(WorkFlowEngine engine) {
+    ExecutorRegistry executorRegistry = engine.getExecutorRegistry();
+    if (executorRegistry != null) {
+      return executorRegistry;
+    }
+    synchronized (writeLock) {
+      if (fallbackExecutorRegistry == null) {
+        fallbackExecutorRegistry = new ExecutorRegistry();
+      }
+      return fallbackExecutorRegistry;
+    }
+  }
+
+  /**
+   * Returns the latency histograms of the playbooks; enable them with
+   * {@code setWorkFlowEngine(aNewWorkFlowEngine().withMetrics().build())}
+   *
+   * @return the execution metrics, or null when the engine does not have metrics enabled
+   */
+  public static ExecutionMetrics getExecutionMetrics() {
+    return workFlowEngine.getExecutionMetrics();
+  }
+
+  /**
+   * Shuts down the thread pools used by the playbooks
+   */
+  public static void shutdown() {
+    workFlowEngine.shutdown();
+    synchronized (writeLock) {
+      if (fallbackExecutorRegistry != null) {
+        fallbackExecutorRegistry.shutdown();
+        fallbackExecutorRegistry = null;
+      }
+    }
+  }
 }
@@ -0,0 +1,224 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.playbook;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.jeasy.flows.work.DefaultWorkReport;
+import org.jeasy.flows.work.Expression;
+import org.jeasy.flows.work.WorkContext;
+import org.jeasy.flows.work.WorkReport;
+import org.jeasy.flows.work.WorkStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a playbook for each event received from a {@link Flow.Publisher}, and publishes the reports to its own
+ * subscribers. At most maxInFlight events are requested from upstream at a time; another event is requested only when
+ * a run has finished and its report has been accepted downstream, so a burst of events waits upstream instead of
+ * queueing here or taking more threads. Runs use the engine's async pool, see {@link PlaybookManager#runAsync}; the
+ * reports are handed to the processor's own thread, which waits while the subscribers fall behind, so a slow
+ * subscriber never holds an engine thread.
+ *
+ * <pre>
+ * PlaybookProcessor&lt;UserEvent&gt; processor = new PlaybookProcessor&lt;&gt;("user-registered", 16);
+ * eventPublisher.subscribe(processor);
+ * processor.subscribe(reportSubscriber);
+ * </pre>
+ *
+ * @author matt rajkowski
+ */
+public class PlaybookProcessor<T> extends SubmissionPublisher<WorkReport> implements Flow.Processor<T, WorkReport> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PlaybookProcessor.class.getName());
+
+  private final Function<? super T, String> playbookIdMapper;
+  private final Function<? super T, WorkContext> workContextMapper;
+  private final int maxInFlight;
+  // Publishes the reports one at a time; waiting here for subscribers holds back the next upstream request
+  private final ExecutorService reportPublisher = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "easy-flows-processor");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private Flow.Subscription subscription = null;
+  // The runs in flight, plus one until upstream completes or is cancelled
+  private final AtomicInteger pending = new AtomicInteger(1);
+  private final AtomicBoolean upstreamDone = new AtomicBoolean(false);
+  private volatile Throwable upstreamError = null;
+
+  /**
+   * Runs the playbook for every event; each run has the event as the "event" variable, with the playbook vars, whose
+   * {{ }} expressions can read the event
+   *
+   * @param playbookId the playbook to run
+   * @param maxInFlight the most events to run, or to wait for their reports to be accepted, at once
+   */
+  public PlaybookProcessor(String playbookId, int maxInFlight) {
+    this(event -> playbookId, event -> eventContext(playbookId, event), maxInFlight, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param playbookIdMapper chooses the playbook to run for an event
+   * @param workContextMapper creates the work context for an event
+   * @param maxInFlight the most events to run, or to wait for their reports to be accepted, at once
+   * @param executor delivers reports to subscribers
+   */
+  public PlaybookProcessor(Function<? super T, String> playbookIdMapper,
+      Function<? super T, WorkContext> workContextMapper, int maxInFlight, Executor executor) {
+    super(executor, Math.max(1, maxInFlight));
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be at least 1");
+    }
+    this.playbookIdMapper = playbookIdMapper;
+    this.workContextMapper = workContextMapper;
+    this.maxInFlight = maxInFlight;
+  }
+
+  @Override
+  public void onSubscribe(Flow.Subscription subscription) {
+    if (this.subscription != null) {
+      subscription.cancel();
+      return;
+    }
+    this.subscription = subscription;
+    subscription.request(maxInFlight);
+  }
+
+  @Override
+  public void onNext(T event) {
+    pending.incrementAndGet();
+    if (upstreamDone.get()) {
+      // Sent before upstream saw the cancel
+      finishOne();
+      return;
+    }
+    String playbookId = null;
+    WorkContext workContext = null;
+    CompletableFuture<WorkReport> future;
+    try {
+      playbookId = playbookIdMapper.apply(event);
+      workContext = workContextMapper.apply(event);
+      future = PlaybookManager.runAsync(playbookId, workContext);
+    } catch (RuntimeException e) {
+      future = CompletableFuture.failedFuture(e);
+    }
+    String id = playbookId;
+    WorkContext context = workContext;
+    future.whenCompleteAsync((workReport, error) -> publish(id, context, workReport, error), reportPublisher);
+  }
+
+  private void publish(String playbookId, WorkContext workContext, WorkReport workReport, Throwable error) {
+    if (error != null) {
+      workReport = new DefaultWorkReport(WorkStatus.FAILED, workContext, error);
+    } else if (workReport == null) {
+      if (PlaybookManager.getPlaybook(playbookId) == null) {
+        workReport = new DefaultWorkReport(WorkStatus.FAILED, workContext,
+            new IllegalArgumentException("Playbook not found: " + playbookId));
+      } else {
+        // Every task was skipped
+        workReport = new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+      }
+    }
+    boolean closed = isClosed();
+    try {
+      // Blocks while the subscribers' buffers are full, which holds back the next request upstream
+      submit(workReport);
+    } catch (IllegalStateException e) {
+      LOGGER.warn("Report dropped, the processor is closed: " + playbookId);
+      closed = true;
+    }
+    if (closed || isClosed()) {
+      cancelUpstream();
+    } else if (upstreamError == null) {
+      subscription.request(1);
+    }
+    finishOne();
+  }
+
+  /**
+   * Stops the events once the processor is closed, so upstream does not wait for requests which never come
+   */
+  private void cancelUpstream() {
+    if (upstreamDone.compareAndSet(false, true)) {
+      LOGGER.debug("The processor is closed, cancelling the event subscription");
+      subscription.cancel();
+      finishOne();
+    }
+  }
+
+  @Override
+  public void onError(Throwable throwable) {
+    LOGGER.error("Event publisher failed: " + throwable.getMessage());
+    upstreamError = throwable;
+    if (upstreamDone.compareAndSet(false, true)) {
+      finishOne();
+    }
+  }
+
+  @Override
+  public void onComplete() {
+    if (upstreamDone.compareAndSet(false, true)) {
+      finishOne();
+    }
+  }
+
+  /**
+   * Closes this publisher once upstream is done and the last report has been submitted
+   */
+  private void finishOne() {
+    if (pending.decrementAndGet() == 0) {
+      Throwable error = upstreamError;
+      if (error == null) {
+        close();
+      } else {
+        closeExceptionally(error);
+      }
+      reportPublisher.shutdown();
+    }
+  }
+
+  private static WorkContext eventContext(String playbookId, Object event) {
+    CompiledPlaybook compiledPlaybook = PlaybookManager.getCompiledPlaybook(playbookId);
+    WorkContext workContext = compiledPlaybook != null ? compiledPlaybook.getSymbolTable().newWorkContext(null)
+        : new WorkContext();
+    workContext.put("event", event);
+    Playbook playbook = PlaybookManager.getPlaybook(playbookId);
+    if (playbook != null && playbook.getVars() != null) {
+      Expression.applyVarExpressionsToWorkContext(playbook, workContext, Map.of("event", event));
+    }
+    return workContext;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.playbook;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the registered playbooks, task instances and compiled workflows; a new snapshot is published
+ * for every change so readers never see a partially applied update
+ *
+ * @author matt rajkowski
+ */
+final class PlaybookRegistry {
+
+  static final PlaybookRegistry EMPTY = new PlaybookRegistry(new HashMap<>(), new HashMap<>(), new HashMap<>());
+
+  private final Map<String, Playbook> playbooks;
+  private final Map<String, Object> taskInstances;
+  private final Map<String, CompiledPlaybook> compiledPlaybooks;
+
+  private PlaybookRegistry(Map<String, Playbook> playbooks, Map<String, Object> taskInstances,
+      Map<String, CompiledPlaybook> compiledPlaybooks) {
+    this.playbooks = Collections.unmodifiableMap(playbooks);
+    this.taskInstances = Collections.unmodifiableMap(taskInstances);
+    this.compiledPlaybooks = Collections.unmodifiableMap(compiledPlaybooks);
+  }
+
+  Playbook getPlaybook(String id) {
+    return playbooks.get(id);
+  }
+
+  CompiledPlaybook getCompiledPlaybook(String id) {
+    return compiledPlaybooks.get(id);
+  }
+
+  Map<String, Playbook> getPlaybooks() {
+    return playbooks;
+  }
+
+  Map<String, Object> getTaskInstances() {
+    return taskInstances;
+  }
+
+  Map<String, CompiledPlaybook> getCompiledPlaybooks() {
+    return compiledPlaybooks;
+  }
+
+  /**
+   * Returns a builder seeded with a copy of this snapshot
+   */
+  Builder toBuilder() {
+    return new Builder(this);
+  }
+
+  /**
+   * Collects the changes for the next snapshot; only used by a single writer
+   */
+  static final class Builder {
+
+    final Map<String, Playbook> playbooks;
+    final Map<String, Object> taskInstances;
+    final Map<String, CompiledPlaybook> compiledPlaybooks;
+
+    private Builder(PlaybookRegistry registry) {
+      this.playbooks = new HashMap<>(registry.playbooks);
+      this.taskInstances = new HashMap<>(registry.taskInstances);
+      this.compiledPlaybooks = new HashMap<>(registry.compiledPlaybooks);
+    }
+
+    PlaybookRegistry build() {
+      return new PlaybookRegistry(playbooks, taskInstances, compiledPlaybooks);
+    }
+  }
+}
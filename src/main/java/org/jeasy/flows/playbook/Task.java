@@ -51,6 +51,7 @@ public class Task {
   private long repeat = 0;
   private long timeout = 10;
   private int threads = 2;
+  private String pool = null;
 
   // Tasks which have sub-tasks
   private TaskList taskList = null;
@@ -127,6 +128,14 @@ public class Task {
     this.threads = threads;
   }
 
+  public String getPool() {
+    return pool;
+  }
+
+  public void setPool(String pool) {
+    this.pool = pool;
+  }
+
   public TaskList getTaskList() {
     return taskList;
   }
@@ -0,0 +1,246 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.reader;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jeasy.flows.playbook.Playbook;
+import org.jeasy.flows.playbook.PlaybookManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the PlaybookManager in step with a directory of YAML playbook files. Only the files whose content changed are
+ * read again, and their playbooks are added and removed as a single change, so the other playbooks keep their
+ * compiled workflows. Call {@link #scan()} to load the directory, and {@link #start()} to reload files as they change.
+ *
+ * @author matt rajkowski
+ */
+public class PlaybookDirectory implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PlaybookDirectory.class.getName());
+
+  // Editors save a file in several steps, so wait for the changes to settle
+  private static final long SETTLE_MILLIS = 100;
+
+  private final Path directory;
+  private final Map<Path, LoadedFile> loadedFiles = new HashMap<>();
+  private WatchService watchService = null;
+  private Thread watcher = null;
+
+  public PlaybookDirectory(Path directory) {
+    this.directory = directory;
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Reads the files which are new or changed since the last scan, and removes the playbooks of deleted files
+   *
+   * @return the number of files which were read or removed
+   */
+  public synchronized int scan() throws IOException {
+    Set<Path> paths = new HashSet<>(loadedFiles.keySet());
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path path : files) {
+        if (isPlaybookFile(path)) {
+          paths.add(path);
+        }
+      }
+    }
+    return scan(paths);
+  }
+
+  private synchronized int scan(Collection<Path> paths) {
+    List<Playbook> added = new ArrayList<>();
+    Set<String> removed = new LinkedHashSet<>();
+    int changedFiles = 0;
+    for (Path path : paths) {
+      LoadedFile loadedFile = loadedFiles.get(path);
+      if (!Files.isRegularFile(path)) {
+        if (loadedFile != null) {
+          LOGGER.info("Playbook file removed: " + path);
+          removed.addAll(loadedFile.ids);
+          loadedFiles.remove(path);
+          changedFiles++;
+        }
+        continue;
+      }
+      byte[] hash;
+      try {
+        hash = PlaybookLibrary.hash(path, null);
+      } catch (IOException e) {
+        LOGGER.warn("Unable to read " + path + ": " + e.getMessage());
+        continue;
+      }
+      if (loadedFile != null && Arrays.equals(hash, loadedFile.hash)) {
+        continue;
+      }
+      List<Playbook> playbooks = YamlReader.readPlaybooks(path);
+      if (playbooks == null) {
+        // Keep the previous playbooks until the file can be read
+        continue;
+      }
+      LOGGER.info("Playbook file " + (loadedFile == null ? "added: " : "changed: ") + path);
+      Set<String> ids = new LinkedHashSet<>();
+      for (Playbook playbook : playbooks) {
+        ids.add(playbook.getId());
+      }
+      if (loadedFile != null) {
+        removed.addAll(loadedFile.ids);
+      }
+      added.addAll(playbooks);
+      loadedFiles.put(path, new LoadedFile(hash, ids));
+      changedFiles++;
+    }
+    if (changedFiles > 0) {
+      // A playbook which moved to another file is replaced, not removed
+      for (Playbook playbook : added) {
+        removed.remove(playbook.getId());
+      }
+      PlaybookManager.update(added, removed);
+    }
+    return changedFiles;
+  }
+
+  /**
+   * @return the ids of the playbooks loaded from the file
+   */
+  public synchronized Set<String> getPlaybookIds(Path path) {
+    LoadedFile loadedFile = loadedFiles.get(path);
+    return loadedFile == null ? Set.of() : Set.copyOf(loadedFile.ids);
+  }
+
+  /**
+   * Watches the directory on a daemon thread and scans when files change
+   */
+  public synchronized void start() throws IOException {
+    if (watcher != null) {
+      return;
+    }
+    watchService = directory.getFileSystem().newWatchService();
+    directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+    watcher = new Thread(this::watch, "easy-flows-playbook-watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+    LOGGER.info("Watching playbook directory: " + directory);
+  }
+
+  private void watch() {
+    WatchService service = watchService;
+    try {
+      while (true) {
+        WatchKey key = service.take();
+        Set<Path> changed = new LinkedHashSet<>();
+        boolean overflow = false;
+        // Gather the events until the directory has been quiet for a moment
+        while (key != null) {
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+              overflow = true;
+            } else {
+              Path path = directory.resolve((Path) event.context());
+              if (isPlaybookFile(path)) {
+                changed.add(path);
+              }
+            }
+          }
+          if (!key.reset()) {
+            LOGGER.warn("Playbook directory is no longer accessible: " + directory);
+            return;
+          }
+          key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        try {
+          if (overflow) {
+            scan();
+          } else if (!changed.isEmpty()) {
+            scan(changed);
+          }
+        } catch (IOException | RuntimeException e) {
+          LOGGER.error("Unable to reload playbooks from " + directory + ": " + e.getMessage());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      // Closed
+    }
+  }
+
+  /**
+   * Stops watching the directory; the loaded playbooks stay in the PlaybookManager
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (watchService != null) {
+      watchService.close();
+      watchService = null;
+    }
+    if (watcher != null) {
+      watcher.interrupt();
+      watcher = null;
+    }
+  }
+
+  private static boolean isPlaybookFile(Path path) {
+    String name = path.getFileName().toString();
+    return name.endsWith(".yml") || name.endsWith(".yaml");
+  }
+
+  private static class LoadedFile {
+    final byte[] hash;
+    final Set<String> ids;
+
+    LoadedFile(byte[] hash, Set<String> ids) {
+      this.hash = hash;
+      this.ids = ids;
+    }
+  }
+}
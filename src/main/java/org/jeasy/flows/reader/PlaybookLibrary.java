@@ -0,0 +1,355 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jeasy.flows.playbook.Playbook;
+import org.jeasy.flows.playbook.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A playbook library in a compact binary format, memory mapped from a file; playbooks are only turned into Playbook
+ * and Task objects when they are requested. The file records a hash of the YAML and task library it was converted from,
+ * and {@link #load(Path, Path, Map)} falls back to the YAML when the file is stale.
+ *
+ * @author matt rajkowski
+ */
+public class PlaybookLibrary {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PlaybookLibrary.class.getName());
+
+  static final int MAGIC = 0x45465042;
+  static final int VERSION = 1;
+  static final int HASH_SIZE = 32;
+  static final int HEADER_SIZE = 4 + 4 + HASH_SIZE + 11 * 4;
+  static final int PLAYBOOK_SIZE = 6 * 4;
+  static final int TASK_SIZE = 5 * 4 + 3 * 8 + 5 * 4;
+  static final int VAR_SIZE = 2 * 4;
+  static final int NULL_STRING = -1;
+
+  // Task ids which are part of the playbook syntax or registered by the PlaybookManager
+  private static final Set<String> BUILT_IN_TASK_IDS = Set.of("block", "parallel", "set", "when", "evaluate", "log",
+      "noop");
+
+  private final Path path;
+  private final ByteBuffer buffer;
+  private final byte[] sourceHash;
+  private final int playbookCount;
+  private final int stringOffsetsPosition;
+  private final int playbooksPosition;
+  private final int tasksPosition;
+  private final int varsPosition;
+  private final int taskIdsPosition;
+  private final int taskIdCount;
+  private final int stringDataPosition;
+  private final String[] strings;
+  private final Map<String, Integer> playbookIndex;
+  private final Map<Integer, Playbook> playbooks = new ConcurrentHashMap<>();
+
+  private PlaybookLibrary(Path path, ByteBuffer buffer) throws IOException {
+    this.path = path;
+    this.buffer = buffer;
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a playbook library: " + path);
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported playbook library version " + buffer.getInt(4) + ": " + path);
+    }
+    sourceHash = new byte[HASH_SIZE];
+    buffer.get(8, sourceHash);
+    int position = 8 + HASH_SIZE;
+    int stringCount = buffer.getInt(position);
+    playbookCount = buffer.getInt(position + 4);
+    taskIdCount = buffer.getInt(position + 16);
+    stringOffsetsPosition = buffer.getInt(position + 20);
+    playbooksPosition = buffer.getInt(position + 24);
+    tasksPosition = buffer.getInt(position + 28);
+    varsPosition = buffer.getInt(position + 32);
+    taskIdsPosition = buffer.getInt(position + 36);
+    stringDataPosition = buffer.getInt(position + 40);
+    if (stringCount < 0 || playbookCount < 0 || stringDataPosition > buffer.capacity()
+        || stringDataPosition + buffer.getInt(stringOffsetsPosition + stringCount * 4) != buffer.capacity()) {
+      throw new IOException("Truncated playbook library: " + path);
+    }
+    strings = new String[stringCount];
+
+    // Only the ids are read up front, the playbooks are read when requested
+    Map<String, Integer> index = new LinkedHashMap<>();
+    for (int i = 0; i < playbookCount; i++) {
+      index.put(string(buffer.getInt(playbooksPosition + i * PLAYBOOK_SIZE)), i);
+    }
+    playbookIndex = Collections.unmodifiableMap(index);
+  }
+
+  /**
+   * Maps the binary playbook library file
+   *
+   * @throws IOException if the file cannot be read, or is not a library of this version
+   */
+  public static PlaybookLibrary open(Path binary) throws IOException {
+    try (FileChannel channel = FileChannel.open(binary, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new PlaybookLibrary(binary, buffer);
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Truncated playbook library: " + binary, e);
+    }
+  }
+
+  /**
+   * Loads the binary library when it is current for the YAML and task library; otherwise the YAML is read, checked,
+   * and converted to the binary file for the next startup
+   *
+   * @param yaml the playbook library source
+   * @param binary the compiled playbook library, which does not need to exist yet
+   * @param taskLibrary the task ids and classes the playbooks use
+   * @return the library, or null if the YAML cannot be read or uses unknown task ids
+   */
+  public static PlaybookLibrary load(Path yaml, Path binary, Map<String, String> taskLibrary) {
+    byte[] hash;
+    try {
+      hash = hash(yaml, taskLibrary);
+    } catch (IOException e) {
+      LOGGER.error("Unable to read " + yaml + ": " + e.getMessage());
+      return null;
+    }
+    if (Files.exists(binary)) {
+      try {
+        PlaybookLibrary library = open(binary);
+        if (Arrays.equals(hash, library.getSourceHash())) {
+          LOGGER.debug("Using compiled playbook library " + binary);
+          return library;
+        }
+        LOGGER.info("Compiled playbook library is stale, reading " + yaml);
+      } catch (IOException e) {
+        LOGGER.warn("Compiled playbook library cannot be used, reading " + yaml + ": " + e.getMessage());
+      }
+    }
+    try {
+      if (!PlaybookLibraryWriter.convert(yaml, binary, taskLibrary)) {
+        return null;
+      }
+      return open(binary);
+    } catch (IOException e) {
+      LOGGER.error("Unable to write compiled playbook library " + binary + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * A SHA-256 hash of the format version, the YAML file and the task library
+   */
+  public static byte[] hash(Path yaml, Map<String, String> taskLibrary) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    digest.update(ByteBuffer.allocate(4).putInt(0, VERSION));
+    byte[] chunk = new byte[8192];
+    try (InputStream in = Files.newInputStream(yaml)) {
+      int read;
+      while ((read = in.read(chunk)) != -1) {
+        digest.update(chunk, 0, read);
+      }
+    }
+    if (taskLibrary != null) {
+      for (Map.Entry<String, String> entry : new TreeMap<>(taskLibrary).entrySet()) {
+        digest.update(("\n" + entry.getKey() + "=" + entry.getValue()).getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    return digest.digest();
+  }
+
+  static Set<String> findUnknownTaskIds(List<Playbook> playbooks, Map<String, String> taskLibrary) {
+    Set<String> unknownTaskIds = new LinkedHashSet<>();
+    for (Playbook playbook : playbooks) {
+      if (playbook.getTaskList() != null) {
+        findUnknownTaskIds(playbook.getTaskList(), taskLibrary, unknownTaskIds);
+      }
+    }
+    return unknownTaskIds;
+  }
+
+  private static void findUnknownTaskIds(List<Task> tasks, Map<String, String> taskLibrary, Set<String> unknown) {
+    for (Task task : tasks) {
+      String id = task.getId();
+      if (!BUILT_IN_TASK_IDS.contains(id) && (taskLibrary == null || !taskLibrary.containsKey(id))) {
+        unknown.add(id);
+      }
+      if (task.getTaskList() != null) {
+        findUnknownTaskIds(task.getTaskList(), taskLibrary, unknown);
+      }
+    }
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public byte[] getSourceHash() {
+    return sourceHash.clone();
+  }
+
+  public int size() {
+    return playbookCount;
+  }
+
+  /**
+   * @return the playbook ids, in the order of the YAML
+   */
+  public Set<String> getIds() {
+    return playbookIndex.keySet();
+  }
+
+  /**
+   * @return every task id used by the playbooks, which were checked against the task library when converted
+   */
+  public Set<String> getTaskIds() {
+    Set<String> taskIds = new LinkedHashSet<>();
+    for (int i = 0; i < taskIdCount; i++) {
+      taskIds.add(string(buffer.getInt(taskIdsPosition + i * 4)));
+    }
+    return taskIds;
+  }
+
+  /**
+   * @return the playbook, read from the file on first use, or null if there is no playbook with the id
+   */
+  public Playbook getPlaybook(String id) {
+    Integer index = playbookIndex.get(id);
+    if (index == null) {
+      return null;
+    }
+    return playbooks.computeIfAbsent(index, this::readPlaybook);
+  }
+
+  /**
+   * @return all of the playbooks, in the order of the YAML
+   */
+  public List<Playbook> getPlaybooks() {
+    List<Playbook> playbookList = new ArrayList<>(playbookCount);
+    for (int i = 0; i < playbookCount; i++) {
+      playbookList.add(playbooks.computeIfAbsent(i, this::readPlaybook));
+    }
+    return playbookList;
+  }
+
+  private Playbook readPlaybook(int index) {
+    int position = playbooksPosition + index * PLAYBOOK_SIZE;
+    Playbook playbook = new Playbook();
+    playbook.setId(string(buffer.getInt(position)));
+    playbook.setName(string(buffer.getInt(position + 4)));
+    int firstVar = buffer.getInt(position + 8);
+    int varCount = buffer.getInt(position + 12);
+    for (int i = 0; i < varCount; i++) {
+      int varPosition = varsPosition + (firstVar + i) * VAR_SIZE;
+      playbook.addVar(string(buffer.getInt(varPosition)), string(buffer.getInt(varPosition + 4)));
+    }
+    int taskIndex = buffer.getInt(position + 16);
+    int taskCount = buffer.getInt(position + 20);
+    for (int i = 0; i < taskCount; i++) {
+      playbook.add(readTask(taskIndex));
+      taskIndex += subtreeSize(taskIndex);
+    }
+    return playbook;
+  }
+
+  private Task readTask(int index) {
+    int position = tasksPosition + index * TASK_SIZE;
+    Task task = new Task(string(buffer.getInt(position)));
+    task.setName(string(buffer.getInt(position + 4)));
+    task.setData(string(buffer.getInt(position + 8)));
+    task.setWhen(string(buffer.getInt(position + 12)));
+    task.setPool(string(buffer.getInt(position + 16)));
+    task.setRepeat(buffer.getLong(position + 20));
+    task.setTimeout(buffer.getLong(position + 28));
+    task.setDelay(buffer.getLong(position + 36));
+    task.setThreads(buffer.getInt(position + 44));
+    int firstVar = buffer.getInt(position + 48);
+    int varCount = buffer.getInt(position + 52);
+    if (varCount >= 0) {
+      task.setVars(new LinkedHashMap<>());
+      for (int i = 0; i < varCount; i++) {
+        int varPosition = varsPosition + (firstVar + i) * VAR_SIZE;
+        task.addVar(string(buffer.getInt(varPosition)), string(buffer.getInt(varPosition + 4)));
+      }
+    }
+    int childCount = buffer.getInt(position + 56);
+    int childIndex = index + 1;
+    for (int i = 0; i < childCount; i++) {
+      task.add(readTask(childIndex));
+      childIndex += subtreeSize(childIndex);
+    }
+    return task;
+  }
+
+  private int subtreeSize(int taskIndex) {
+    return buffer.getInt(tasksPosition + taskIndex * TASK_SIZE + 60);
+  }
+
+  private String string(int index) {
+    if (index == NULL_STRING) {
+      return null;
+    }
+    // Each string is decoded once and shared by every playbook which uses it
+    String value = strings[index];
+    if (value == null) {
+      int start = buffer.getInt(stringOffsetsPosition + index * 4);
+      int end = buffer.getInt(stringOffsetsPosition + (index + 1) * 4);
+      byte[] bytes = new byte[end - start];
+      buffer.get(stringDataPosition + start, bytes);
+      value = new String(bytes, StandardCharsets.UTF_8);
+      strings[index] = value;
+    }
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return "PlaybookLibrary{path=" + path + ", playbooks=" + playbookCount + "}";
+  }
+}
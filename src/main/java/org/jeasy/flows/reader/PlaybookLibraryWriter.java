@@ -0,0 +1,275 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.reader;
+
+import static org.jeasy.flows.reader.PlaybookLibrary.HEADER_SIZE;
+import static org.jeasy.flows.reader.PlaybookLibrary.HASH_SIZE;
+import static org.jeasy.flows.reader.PlaybookLibrary.MAGIC;
+import static org.jeasy.flows.reader.PlaybookLibrary.NULL_STRING;
+import static org.jeasy.flows.reader.PlaybookLibrary.PLAYBOOK_SIZE;
+import static org.jeasy.flows.reader.PlaybookLibrary.TASK_SIZE;
+import static org.jeasy.flows.reader.PlaybookLibrary.VAR_SIZE;
+import static org.jeasy.flows.reader.PlaybookLibrary.VERSION;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jeasy.flows.playbook.Playbook;
+import org.jeasy.flows.playbook.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes parsed playbooks in the binary format read by {@link PlaybookLibrary}: each string is stored once, and the
+ * task tree of each playbook is flattened into fixed size records
+ *
+ * @author matt rajkowski
+ */
+public class PlaybookLibraryWriter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PlaybookLibraryWriter.class.getName());
+
+  private final Map<String, Integer> stringIndex = new HashMap<>();
+  private final List<byte[]> strings = new ArrayList<>();
+  private final List<int[]> playbookRecords = new ArrayList<>();
+  private final List<TaskRecord> taskRecords = new ArrayList<>();
+  private final List<int[]> varRecords = new ArrayList<>();
+  private final Set<Integer> taskIds = new LinkedHashSet<>();
+
+  private PlaybookLibraryWriter() {
+  }
+
+  /**
+   * Writes the playbooks to the file, replacing it in a single step so readers never see a partial file
+   *
+   * @param sourceHash identifies the YAML and task library the playbooks came from, see {@link PlaybookLibrary#hash}
+   */
+  public static void write(List<Playbook> playbooks, byte[] sourceHash, Path binary) throws IOException {
+    if (sourceHash == null || sourceHash.length != HASH_SIZE) {
+      throw new IllegalArgumentException("The source hash must be " + HASH_SIZE + " bytes");
+    }
+    PlaybookLibraryWriter writer = new PlaybookLibraryWriter();
+    for (Playbook playbook : playbooks) {
+      writer.addPlaybook(playbook);
+    }
+    Path temp = binary.resolveSibling(binary.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      writer.writeTo(out, sourceHash);
+    }
+    try {
+      Files.move(temp, binary, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, binary, StandardCopyOption.REPLACE_EXISTING);
+    }
+    LOGGER.info("Wrote " + playbooks.size() + " playbooks to " + binary + " (" + writer.strings.size() + " strings, "
+        + writer.taskRecords.size() + " tasks)");
+  }
+
+  /**
+   * Converts a YAML playbook library to the binary format
+   *
+   * @param taskLibrary the task ids and classes the playbooks use, the task ids are checked before writing
+   * @return true if the file was written, false if the YAML cannot be read or uses unknown task ids
+   */
+  public static boolean convert(Path yaml, Path binary, Map<String, String> taskLibrary) throws IOException {
+    List<Playbook> playbooks = YamlReader.readPlaybooks(yaml);
+    if (playbooks == null) {
+      return false;
+    }
+    Set<String> unknownTaskIds = PlaybookLibrary.findUnknownTaskIds(playbooks, taskLibrary);
+    if (!unknownTaskIds.isEmpty()) {
+      LOGGER.error("Not converting " + yaml + ", task ids not found: " + unknownTaskIds);
+      return false;
+    }
+    write(playbooks, PlaybookLibrary.hash(yaml, taskLibrary), binary);
+    return true;
+  }
+
+  private void addPlaybook(Playbook playbook) {
+    int[] record = new int[PLAYBOOK_SIZE / 4];
+    record[0] = intern(playbook.getId());
+    record[1] = intern(playbook.getName());
+    record[2] = varRecords.size();
+    record[3] = addVars(playbook.getVars());
+    record[4] = taskRecords.size();
+    record[5] = 0;
+    if (playbook.getTaskList() != null) {
+      for (Task task : playbook.getTaskList()) {
+        addTask(task);
+        record[5]++;
+      }
+    }
+    playbookRecords.add(record);
+  }
+
+  /**
+   * Adds the task and its sub-tasks in depth first order
+   *
+   * @return the number of records for the task and its sub-tasks
+   */
+  private int addTask(Task task) {
+    TaskRecord record = new TaskRecord();
+    taskRecords.add(record);
+    record.id = intern(task.getId());
+    taskIds.add(record.id);
+    record.name = intern(task.getName());
+    record.data = intern(task.getData());
+    record.when = intern(task.getWhen());
+    record.pool = intern(task.getPool());
+    record.repeat = task.getRepeat();
+    record.timeout = task.getTimeout();
+    record.delay = task.getDelay();
+    record.threads = task.getThreads();
+    record.firstVar = varRecords.size();
+    record.varCount = task.getVars() == null ? -1 : addVars(task.getVars());
+    int subtreeSize = 1;
+    if (task.getTaskList() != null) {
+      for (Task child : task.getTaskList()) {
+        subtreeSize += addTask(child);
+        record.childCount++;
+      }
+    }
+    record.subtreeSize = subtreeSize;
+    return subtreeSize;
+  }
+
+  private int addVars(Map<String, Object> vars) {
+    if (vars == null) {
+      return 0;
+    }
+    for (Map.Entry<String, Object> entry : vars.entrySet()) {
+      Object value = entry.getValue();
+      if (value != null && !(value instanceof String)) {
+        LOGGER.warn("Storing var '" + entry.getKey() + "' as a string: " + value.getClass().getName());
+      }
+      varRecords.add(new int[] { intern(entry.getKey()), intern(value == null ? null : String.valueOf(value)) });
+    }
+    return vars.size();
+  }
+
+  private int intern(String value) {
+    if (value == null) {
+      return NULL_STRING;
+    }
+    Integer index = stringIndex.get(value);
+    if (index == null) {
+      index = strings.size();
+      strings.add(value.getBytes(StandardCharsets.UTF_8));
+      stringIndex.put(value, index);
+    }
+    return index;
+  }
+
+  private void writeTo(DataOutputStream out, byte[] sourceHash) throws IOException {
+    int stringOffsetsPosition = HEADER_SIZE;
+    int playbooksPosition = stringOffsetsPosition + (strings.size() + 1) * 4;
+    int tasksPosition = playbooksPosition + playbookRecords.size() * PLAYBOOK_SIZE;
+    int varsPosition = tasksPosition + taskRecords.size() * TASK_SIZE;
+    int taskIdsPosition = varsPosition + varRecords.size() * VAR_SIZE;
+    int stringDataPosition = taskIdsPosition + taskIds.size() * 4;
+
+    // Header
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.write(sourceHash);
+    out.writeInt(strings.size());
+    out.writeInt(playbookRecords.size());
+    out.writeInt(taskRecords.size());
+    out.writeInt(varRecords.size());
+    out.writeInt(taskIds.size());
+    out.writeInt(stringOffsetsPosition);
+    out.writeInt(playbooksPosition);
+    out.writeInt(tasksPosition);
+    out.writeInt(varsPosition);
+    out.writeInt(taskIdsPosition);
+    out.writeInt(stringDataPosition);
+
+    // String offsets, relative to the string data, with the end of the last string
+    int offset = 0;
+    for (byte[] string : strings) {
+      out.writeInt(offset);
+      offset += string.length;
+    }
+    out.writeInt(offset);
+
+    for (int[] record : playbookRecords) {
+      for (int value : record) {
+        out.writeInt(value);
+      }
+    }
+    for (TaskRecord record : taskRecords) {
+      out.writeInt(record.id);
+      out.writeInt(record.name);
+      out.writeInt(record.data);
+      out.writeInt(record.when);
+      out.writeInt(record.pool);
+      out.writeLong(record.repeat);
+      out.writeLong(record.timeout);
+      out.writeLong(record.delay);
+      out.writeInt(record.threads);
+      out.writeInt(record.firstVar);
+      out.writeInt(record.varCount);
+      out.writeInt(record.childCount);
+      out.writeInt(record.subtreeSize);
+    }
+    for (int[] record : varRecords) {
+      out.writeInt(record[0]);
+      out.writeInt(record[1]);
+    }
+    for (int taskId : taskIds) {
+      out.writeInt(taskId);
+    }
+    for (byte[] string : strings) {
+      out.write(string);
+    }
+  }
+
+  private static class TaskRecord {
+    int id;
+    int name;
+    int data;
+    int when;
+    int pool;
+    long repeat;
+    long timeout;
+    long delay;
+    int threads;
+    int firstVar;
+    int varCount;
+    int childCount;
+    int subtreeSize;
+  }
+}
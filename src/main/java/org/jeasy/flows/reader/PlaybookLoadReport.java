@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.reader;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.jeasy.flows.playbook.Playbook;
+
+/**
+ * The playbooks read by a PlaybookLoader, in the order of the files and of the playbooks within each file, with the
+ * time taken to read each file
+ *
+ * @author matt rajkowski
+ */
+public class PlaybookLoadReport {
+
+  private final List<Playbook> playbooks;
+  private final Map<Path, Long> parseTimes;
+  private final List<Path> failedFiles;
+
+  PlaybookLoadReport(List<Playbook> playbooks, Map<Path, Long> parseTimes, List<Path> failedFiles) {
+    this.playbooks = Collections.unmodifiableList(playbooks);
+    this.parseTimes = Collections.unmodifiableMap(parseTimes);
+    this.failedFiles = Collections.unmodifiableList(failedFiles);
+  }
+
+  public List<Playbook> getPlaybooks() {
+    return playbooks;
+  }
+
+  /**
+   * @return the time in nanoseconds to read and parse each file, in the order the files were given
+   */
+  public Map<Path, Long> getParseTimes() {
+    return parseTimes;
+  }
+
+  public long getParseTime(Path path) {
+    Long nanos = parseTimes.get(path);
+    return nanos == null ? -1 : nanos;
+  }
+
+  /**
+   * @return the files which could not be read; none of their playbooks are included
+   */
+  public List<Path> getFailedFiles() {
+    return failedFiles;
+  }
+
+  public boolean hasFailures() {
+    return !failedFiles.isEmpty();
+  }
+}
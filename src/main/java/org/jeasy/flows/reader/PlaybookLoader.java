@@ -0,0 +1,234 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.reader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.jeasy.flows.playbook.Playbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads large playbook libraries on a ForkJoinPool. Files are read concurrently, and a library with many playbooks is
+ * split at its top-level "- id:" entries so the playbooks are parsed concurrently too; the results are merged in the
+ * original order, so the playbooks are the same as reading each file with YamlReader.
+ *
+ * @author matt rajkowski
+ */
+public class PlaybookLoader {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PlaybookLoader.class.getName());
+
+  // Below this many playbooks, parsing is quicker than handing the work to another thread
+  private static final int PLAYBOOKS_PER_TASK = 8;
+
+  private final ForkJoinPool pool;
+
+  public PlaybookLoader() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  public PlaybookLoader(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Reads the playbooks from a YAML library held in memory
+   *
+   * @return the playbooks, or null if the YAML cannot be read
+   */
+  public List<Playbook> load(String yaml) {
+    if (yaml == null) {
+      LOGGER.error("YAML is null");
+      return null;
+    }
+    return pool.invoke(newChunkTask(yaml, pool));
+  }
+
+  /**
+   * Reads the files as UTF-8; a file which cannot be read is listed in the report and the other files are still loaded
+   */
+  public PlaybookLoadReport load(Collection<Path> paths) {
+    List<FileTask> fileTasks = new ArrayList<>(paths.size());
+    for (Path path : paths) {
+      fileTasks.add(new FileTask(path, pool));
+    }
+    // Fork every file, then join them in order
+    pool.invoke(new RecursiveTask<Void>() {
+      @Override
+      protected Void compute() {
+        invokeAll(fileTasks);
+        return null;
+      }
+    });
+
+    List<Playbook> playbooks = new ArrayList<>();
+    Map<Path, Long> parseTimes = new LinkedHashMap<>();
+    List<Path> failedFiles = new ArrayList<>();
+    for (FileTask fileTask : fileTasks) {
+      List<Playbook> filePlaybooks = fileTask.join();
+      parseTimes.put(fileTask.path, fileTask.parseTime);
+      if (filePlaybooks == null) {
+        failedFiles.add(fileTask.path);
+        continue;
+      }
+      LOGGER.debug("Read " + filePlaybooks.size() + " playbooks from " + fileTask.path + " in " +
+          (fileTask.parseTime / 1_000_000) + "ms");
+      playbooks.addAll(filePlaybooks);
+    }
+    return new PlaybookLoadReport(playbooks, parseTimes, failedFiles);
+  }
+
+  /**
+   * Finds where each top-level playbook starts; top-level entries share the indent of the first "- id:" line, and end
+   * any section of the playbook before them, so each one can be parsed on its own
+   *
+   * @return the offsets of the top-level "- id:" lines, after any text before the first one
+   */
+  static int[] findPlaybookOffsets(String yaml) {
+    int[] offsets = new int[16];
+    int count = 0;
+    int topIndent = -1;
+    int lineStart = 0;
+    int length = yaml.length();
+    while (lineStart < length) {
+      int lineEnd = lineStart;
+      while (lineEnd < length && yaml.charAt(lineEnd) != '\n' && yaml.charAt(lineEnd) != '\r') {
+        lineEnd++;
+      }
+      int indent = lineStart;
+      while (indent < lineEnd && Character.isWhitespace(yaml.charAt(indent))) {
+        indent++;
+      }
+      if (yaml.startsWith("- id:", indent) && (topIndent == -1 || indent - lineStart == topIndent)) {
+        if (topIndent == -1) {
+          topIndent = indent - lineStart;
+        }
+        if (count == offsets.length) {
+          int[] larger = new int[count * 2];
+          System.arraycopy(offsets, 0, larger, 0, count);
+          offsets = larger;
+        }
+        offsets[count++] = lineStart;
+      }
+      lineStart = lineEnd + 1;
+    }
+    int[] result = new int[count];
+    System.arraycopy(offsets, 0, result, 0, count);
+    return result;
+  }
+
+  private static ChunkTask newChunkTask(String yaml, ForkJoinPool pool) {
+    if (pool.getParallelism() < 2) {
+      // With a single thread, splitting only adds work
+      return new ChunkTask(yaml, new int[0], 0, -1);
+    }
+    return new ChunkTask(yaml, findPlaybookOffsets(yaml), 0, -1);
+  }
+
+  private static List<Playbook> parse(String yaml) {
+    return YamlReader.readPlaybooks(new StringReader(yaml));
+  }
+
+  /**
+   * Reads and parses one file, recording how long it took
+   */
+  private static class FileTask extends RecursiveTask<List<Playbook>> {
+
+    private final Path path;
+    private final ForkJoinPool pool;
+    private long parseTime;
+
+    FileTask(Path path, ForkJoinPool pool) {
+      this.path = path;
+      this.pool = pool;
+    }
+
+    @Override
+    protected List<Playbook> compute() {
+      long startTime = System.nanoTime();
+      try {
+        String yaml = Files.readString(path, StandardCharsets.UTF_8);
+        return newChunkTask(yaml, pool).compute();
+      } catch (IOException e) {
+        LOGGER.error("Unable to read " + path + ": " + e.getMessage());
+        return null;
+      } finally {
+        parseTime = System.nanoTime() - startTime;
+      }
+    }
+  }
+
+  /**
+   * Parses the playbooks from one offset up to another, splitting in half until the chunks are small; the first chunk
+   * also holds any text before the first playbook
+   */
+  private static class ChunkTask extends RecursiveTask<List<Playbook>> {
+
+    private final String yaml;
+    private final int[] offsets;
+    private final int from;
+    private final int to;
+
+    /**
+     * @param to the index of the offset to stop at, or -1 for the whole of the YAML
+     */
+    ChunkTask(String yaml, int[] offsets, int from, int to) {
+      this.yaml = yaml;
+      this.offsets = offsets;
+      this.from = from;
+      this.to = to == -1 ? offsets.length : to;
+    }
+
+    @Override
+    protected List<Playbook> compute() {
+      if (to - from <= PLAYBOOKS_PER_TASK) {
+        int start = from == 0 ? 0 : offsets[from];
+        int end = to == offsets.length ? yaml.length() : offsets[to];
+        return parse(yaml.substring(start, end));
+      }
+      int middle = (from + to) >>> 1;
+      ChunkTask second = new ChunkTask(yaml, offsets, middle, to);
+      second.fork();
+      List<Playbook> playbooks = new ChunkTask(yaml, offsets, from, middle).compute();
+      List<Playbook> secondPlaybooks = second.join();
+      if (playbooks == null || secondPlaybooks == null) {
+        return null;
+      }
+      playbooks.addAll(secondPlaybooks);
+      return playbooks;
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.reader;
+
+/**
+ * A line of YAML with its indent and trimmed content worked out once, so the reader does not trim and search each line
+ * repeatedly
+ *
+ * @author matt rajkowski
+ */
+final class YamlLine {
+
+  private final String text;
+  private final String content;
+  private final int indent;
+
+  YamlLine(String text) {
+    this.text = text;
+    this.content = text.trim();
+    this.indent = content.isEmpty() ? 0 : text.indexOf(content.charAt(0));
+  }
+
+  /**
+   * @return the line as read
+   */
+  String getText() {
+    return text;
+  }
+
+  /**
+   * @return the line without leading and trailing whitespace
+   */
+  String getContent() {
+    return content;
+  }
+
+  int getIndent() {
+    return indent;
+  }
+
+  boolean isBlank() {
+    return content.isEmpty();
+  }
+
+  boolean isComment() {
+    return content.startsWith("#");
+  }
+
+  boolean isListItem() {
+    return content.startsWith("- ");
+  }
+
+  boolean hasValueSeparator() {
+    return content.indexOf(':') > -1;
+  }
+
+  /**
+   * @return the name before the colon, without a list marker
+   */
+  String getTerm() {
+    return termOf(content);
+  }
+
+  /**
+   * @return the value after the colon, without one set of quotes, or null if there is no value
+   */
+  String getValue() {
+    return valueOf(content);
+  }
+
+  static String termOf(String wholeLine) {
+    if (wholeLine == null) {
+      return null;
+    }
+    String term = wholeLine.trim();
+    int colon = term.indexOf(':');
+    if (colon > -1) {
+      term = term.substring(0, colon).trim();
+    }
+    if (term.startsWith("- ")) {
+      return term.substring(2).trim();
+    }
+    return term;
+  }
+
+  static String valueOf(String wholeLine) {
+    if (wholeLine == null) {
+      return null;
+    }
+    int colon = wholeLine.indexOf(':');
+    if (colon == -1) {
+      return null;
+    }
+    String value = wholeLine.substring(colon + 1).trim();
+    if (value.length() == 0) {
+      return null;
+    }
+    // Strip one occurrence of quotes
+    if (value.length() > 1 &&
+        ((value.startsWith("'") && value.endsWith("'")) ||
+            (value.startsWith("\"") && value.endsWith("\"")))) {
+      return value.substring(1, value.length() - 1);
+    }
+    return value;
+  }
+
+  @Override
+  public String toString() {
+    return text;
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.reader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads YAML a line at a time with one line of lookahead, so a document of any size is parsed in a single pass while
+ * holding only the current and next line
+ *
+ * @author matt rajkowski
+ */
+final class YamlLineReader {
+
+  private final BufferedReader reader;
+  private YamlLine next;
+  private boolean peeked;
+  private long lineNumber;
+
+  YamlLineReader(Reader reader) {
+    this.reader = (reader instanceof BufferedReader) ? (BufferedReader) reader : new BufferedReader(reader);
+  }
+
+  /**
+   * @return the next line without consuming it, or null at the end of the input
+   */
+  YamlLine peek() throws IOException {
+    if (!peeked) {
+      String text = reader.readLine();
+      next = (text == null) ? null : new YamlLine(text);
+      peeked = true;
+    }
+    return next;
+  }
+
+  /**
+   * @return the next line, or null at the end of the input
+   */
+  YamlLine next() throws IOException {
+    YamlLine line = peek();
+    peeked = false;
+    next = null;
+    if (line != null) {
+      lineNumber++;
+    }
+    return line;
+  }
+
+  /**
+   * @return the number of lines consumed so far
+   */
+  long getLineNumber() {
+    return lineNumber;
+  }
+}
@@ -23,10 +23,18 @@
  */
 package org.jeasy.flows.reader;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -36,7 +44,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * YamlReader reads and parses Yaml workflows
+ * YamlReader reads and parses Yaml workflows; playbooks are read as a stream, a line at a time, so large libraries can be
+ * loaded from a Reader, InputStream or Path without holding the whole document
  *
  * @author matt rajkowski
  */
@@ -148,30 +157,81 @@ public class YamlReader {
       LOGGER.error("Missing --- or id:");
       return null;
     }
+    return readPlaybooks(new StringReader(yaml));
+  }
 
-    List<Playbook> playbookList = new ArrayList<>();
+  /**
+   * Reads the playbooks from a file, as UTF-8
+   *
+   * @return the playbooks, or null if the file cannot be read
+   */
+  public static List<Playbook> readPlaybooks(Path path) {
+    if (path == null) {
+      LOGGER.error("Path is null");
+      return null;
+    }
+    try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      return readPlaybooks(reader);
+    } catch (IOException e) {
+      LOGGER.error("Unable to read " + path + ": " + e.getMessage());
+      return null;
+    }
+  }
 
-    // Use an array to move forward and back
-    String[] lines = yaml.split("\n\r|\r|\n");
+  /**
+   * Reads the playbooks from a UTF-8 stream; the stream is not closed
+   *
+   * @return the playbooks, or null if the stream cannot be read
+   */
+  public static List<Playbook> readPlaybooks(InputStream inputStream) {
+    if (inputStream == null) {
+      LOGGER.error("InputStream is null");
+      return null;
+    }
+    return readPlaybooks(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads the playbooks in a single pass, holding one line of lookahead; the reader is not closed
+   *
+   * @return the playbooks, or null if the reader cannot be read
+   */
+  public static List<Playbook> readPlaybooks(Reader reader) {
+    if (reader == null) {
+      LOGGER.error("Reader is null");
+      return null;
+    }
+    YamlLineReader lines = new YamlLineReader(reader);
+    try {
+      return readPlaybooks(lines);
+    } catch (IOException e) {
+      LOGGER.error("Unable to read YAML at line " + lines.getLineNumber() + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  private static List<Playbook> readPlaybooks(YamlLineReader lines) throws IOException {
+    List<Playbook> playbookList = new ArrayList<>();
 
     Playbook playbook = null;
     boolean foundStart = false;
     int lineIndent = 0;
 
-    for (int i = 0; i < lines.length; i++) {
-      String line = lines[i];
-      if ("---".equals(line)) {
+    YamlLine line;
+    while ((line = lines.next()) != null) {
+      String text = line.getText();
+      if ("---".equals(text)) {
         foundStart = true;
         continue;
       }
-      if (line.trim().length() == 0) {
+      if (line.isBlank()) {
         continue;
       }
-      if (line.startsWith("#")) {
+      if (text.startsWith("#")) {
         continue;
       }
       if (!foundStart) {
-        if (line.trim().startsWith("- id:") || line.trim().startsWith("id:")) {
+        if (line.getContent().startsWith("- id:") || line.getContent().startsWith("id:")) {
           foundStart = true;
         }
       }
@@ -180,10 +240,10 @@ public class YamlReader {
       }
 
       // Start a new playbook
-      if (line.contains("- id:") || line.startsWith("id:")) {
+      if (text.contains("- id:") || text.startsWith("id:")) {
         playbook = new Playbook();
-        lineIndent = line.indexOf("id:");
-        String value = valueOf(line);
+        lineIndent = text.indexOf("id:");
+        String value = line.getValue();
         playbook.setId(value);
         playbookList.add(playbook);
         LOGGER.debug("Found new playbook... " + value);
@@ -194,17 +254,17 @@ public class YamlReader {
         continue;
       }
 
-      int thisIndent = line.indexOf(line.trim());
+      int thisIndent = line.getIndent();
       if (thisIndent != lineIndent) {
         continue;
       }
 
       // Start processing the children terms...
-      String term = termOf(line);
-      String value = valueOf(line);
+      String term = line.getTerm();
+      String value = line.getValue();
 
       if ("name".equals(term)) {
-        if (value.length() > 0) {
+        if (value != null) {
           LOGGER.debug("Found name... " + value);
           playbook.setName(value);
         }
@@ -213,223 +273,208 @@ public class YamlReader {
 
       if ("vars".equals(term)) {
         LOGGER.debug("Found vars...");
-        while (true) {
-          if (i + 1 == lines.length) {
-            break;
-          }
-          // Grab the next line
-          String nextLine = lines[i + 1];
-          // Verify the next line is further indented
-          int nextIndent = nextLine.indexOf(nextLine.trim());
-          if (nextIndent <= thisIndent) {
-            break;
-          }
-          // It is so grab the variable and mark the line processed
-          if (nextLine.contains(":")) {
-            String varName = termOf(nextLine);
-            String varValue = valueOf(nextLine);
-            playbook.addVar(varName, varValue);
-            LOGGER.debug(" Added var: " + varName + "=" + varValue);
-          }
-          i++;
-        }
-
+        readVars(lines, playbook, thisIndent);
       } else if ("workflow".equals(term)) {
-
         LOGGER.debug("Found workflow...");
-        boolean inBlock = false;
-        int blockIndent = -1;
-        Task task = null;
-        Task blockTask = null;
+        readWorkflow(lines, playbook, thisIndent);
+      }
+    }
+    return playbookList;
+  }
 
-        Deque<Task> blockTaskQueue = new LinkedList<>();
-        Deque<Integer> blockIndentQueue = new LinkedList<>();
+  private static void readVars(YamlLineReader lines, Playbook playbook, int thisIndent) throws IOException {
+    YamlLine nextLine;
+    while ((nextLine = lines.peek()) != null) {
+      if (nextLine.isBlank() || nextLine.isComment()) {
+        lines.next();
+        continue;
+      }
+      // Verify the next line is further indented
+      if (nextLine.getIndent() <= thisIndent) {
+        break;
+      }
+      // It is so grab the variable and mark the line processed
+      if (nextLine.hasValueSeparator()) {
+        String varName = nextLine.getTerm();
+        String varValue = nextLine.getValue();
+        playbook.addVar(varName, varValue);
+        LOGGER.debug(" Added var: " + varName + "=" + varValue);
+      }
+      lines.next();
+    }
+  }
 
-        while (true) {
-          if (i + 1 == lines.length) {
-            break;
-          }
-          // Grab the next line
-          String nextLine = lines[i + 1];
-          // Verify the next line is further indented
-          int nextIndent = nextLine.indexOf(nextLine.trim());
-          if (nextIndent < thisIndent) {
-            break;
-          }
+  private static void readWorkflow(YamlLineReader lines, Playbook playbook, int thisIndent) throws IOException {
+    boolean inBlock = false;
+    int blockIndent = -1;
+    Task task = null;
+    Task blockTask = null;
+
+    Deque<Task> blockTaskQueue = new ArrayDeque<>();
+    Deque<Integer> blockIndentQueue = new ArrayDeque<>();
+
+    YamlLine nextLine;
+    while ((nextLine = lines.peek()) != null) {
+      if (nextLine.isBlank() || nextLine.isComment()) {
+        lines.next();
+        continue;
+      }
+      // Verify the next line is further indented
+      int nextIndent = nextLine.getIndent();
+      if (nextIndent < thisIndent) {
+        break;
+      }
+      lines.next();
 
-          if (nextLine.trim().startsWith("- ")) {
-
-            if (inBlock) {
-              while (nextIndent <= blockIndent) {
-                blockIndentQueue.removeLast();
-                Integer previousLevel = blockIndentQueue.peekLast();
-                if (previousLevel == null) {
-                  blockIndent = -1;
-                } else {
-                  blockIndent = previousLevel;
-                }
-
-                blockTaskQueue.removeLast();
-                blockTask = blockTaskQueue.peekLast();
-                inBlock = (blockTask != null);
-              }
+      if (nextLine.isListItem()) {
+
+        if (inBlock) {
+          while (nextIndent <= blockIndent) {
+            blockIndentQueue.removeLast();
+            Integer previousLevel = blockIndentQueue.peekLast();
+            if (previousLevel == null) {
+              blockIndent = -1;
+            } else {
+              blockIndent = previousLevel;
             }
 
-            // It's a new task or block
-            String taskName = termOf(nextLine);
+            blockTaskQueue.removeLast();
+            blockTask = blockTaskQueue.peekLast();
+            inBlock = (blockTask != null);
+          }
+        }
 
-            if ("parallel".equals(taskName)) {
+        // It's a new task or block
+        String taskName = nextLine.getTerm();
 
-              task = new Task("parallel");
-              task.setName("parallel");
-              playbook.add(task);
+        if ("parallel".equals(taskName)) {
 
-              inBlock = true;
-              blockIndent = nextIndent;
-              blockIndentQueue.addLast(blockIndent);
-              blockTask = task;
-              blockTaskQueue.addLast(blockTask);
+          task = new Task("parallel");
+          task.setName("parallel");
+          playbook.add(task);
 
-              LOGGER.debug("Added new 'parallel block' to playbook: " + taskName);
+          inBlock = true;
+          blockIndent = nextIndent;
+          blockIndentQueue.addLast(blockIndent);
+          blockTask = task;
+          blockTaskQueue.addLast(blockTask);
 
-            } else if ("block".equals(taskName)) {
+          LOGGER.debug("Added new 'parallel block' to playbook: " + taskName);
 
-              // A new block was found
-              task = new Task("block");
-              task.setName("block");
+        } else if ("block".equals(taskName)) {
 
-              if (inBlock) {
-                blockTask.add(task);
-                LOGGER.debug("Added new 'block' to existing block: " + blockTask.getName());
-              } else {
-                playbook.add(task);
-                LOGGER.debug("Added new 'block' to playbook: " + taskName);
-              }
+          // A new block was found
+          task = new Task("block");
+          task.setName("block");
 
-              inBlock = true;
-              blockIndent = nextIndent;
-              blockIndentQueue.addLast(blockIndent);
-              blockTask = task;
-              blockTaskQueue.addLast(blockTask);
+          if (inBlock) {
+            blockTask.add(task);
+            LOGGER.debug("Added new 'block' to existing block: " + blockTask.getName());
+          } else {
+            playbook.add(task);
+            LOGGER.debug("Added new 'block' to playbook: " + taskName);
+          }
 
-            } else {
+          inBlock = true;
+          blockIndent = nextIndent;
+          blockIndentQueue.addLast(blockIndent);
+          blockTask = task;
+          blockTaskQueue.addLast(blockTask);
 
-              // A new task was found
-              task = new Task(taskName);
-              String taskValue = valueOf(nextLine);
-              if (taskValue != null) {
-                task.setData(taskValue);
-              }
-              if (inBlock) {
-                LOGGER.debug("Added new 'task' to block: " + taskName);
-                blockTask.add(task);
-              } else {
-                LOGGER.debug("Added new 'task' to playbook: " + taskName);
-                playbook.add(task);
-              }
-            }
+        } else {
 
-          } else if (task != null) {
-            // It's a property for the current task
-            String propertyName = termOf(nextLine);
-            String propertyValue = valueOf(nextLine);
-
-            // Apply special parameters
-            if ("repeat".equals(propertyName)) {
-              task.setRepeat(Long.parseLong(propertyValue));
-            } else if ("threads".equals(propertyName)) {
-              task.setThreads(Integer.parseInt(propertyValue));
-            } else if ("timeout".equals(propertyName)) {
-              task.setTimeout(Long.parseLong(propertyValue));
-            } else if ("delay".equals(propertyName)) {
-              task.setDelay(Long.parseLong(propertyValue));
-            } else if ("tasks".equals(propertyName)) {
-              // These are the tasks for a parallel task
-              // grab them on the next pass
-            } else {
-              if ("when".equals(propertyName)) {
-                LOGGER.debug("Set '" + task.getId() + "' when: " + propertyValue);
-                if (inBlock &&
-                    ("block".equals(task.getId()) || "parallel".equals(task.getId()))) {
-                  Task noop = new Task("noop");
-                  noop.setWhen(propertyValue);
-                  blockTask.add(noop);
-                } else {
-                  task.setWhen(propertyValue);
-                }
-              } else {
-
-                // Check if this is a multi-line value (uses \n or " ")
-                if (nextLine.endsWith("|") || nextLine.endsWith(">")) {
-                  // Lines must be indented OR blank to be added
-                  boolean useSpace = false;
-                  if (nextLine.endsWith(">")) {
-                    useSpace = true;
-                  }
-                  StringBuilder sb = new StringBuilder();
-                  for (int j = i + 2; j < lines.length; ++j) {
-                    String testLine = lines[j];
-                    int testIndent = testLine.indexOf(testLine.trim());
-                    if (testIndent == 0 || testIndent > nextIndent) {
-                      i++;
-                      if (sb.length() > 0) {
-                        sb.append(useSpace ? " " : "\n");
-                      }
-                      sb.append(testLine.trim());
-                    }
-                  }
-                  propertyValue = sb.toString();
-                  LOGGER.debug("Adding '" + task.getId() + "' property: " + propertyName + "=" + propertyValue);
-                  task.addVar(propertyName, propertyValue);
-                  break;
-
-                } else {
-                  // Add as a property as a variable
-                  LOGGER.debug("Adding '" + task.getId() + "' property: " + propertyName + "=" + propertyValue);
-                  task.addVar(propertyName, propertyValue);
-                }
-              }
-            }
+          // A new task was found
+          task = new Task(taskName);
+          String taskValue = nextLine.getValue();
+          if (taskValue != null) {
+            task.setData(taskValue);
+          }
+          if (inBlock) {
+            LOGGER.debug("Added new 'task' to block: " + taskName);
+            blockTask.add(task);
+          } else {
+            LOGGER.debug("Added new 'task' to playbook: " + taskName);
+            playbook.add(task);
           }
-          i++;
+        }
+
+      } else if (task != null) {
+        // It's a property for the current task
+        String propertyName = nextLine.getTerm();
+        String propertyValue = nextLine.getValue();
+
+        // Apply special parameters
+        if ("repeat".equals(propertyName)) {
+          task.setRepeat(Long.parseLong(propertyValue));
+        } else if ("threads".equals(propertyName)) {
+          task.setThreads(Integer.parseInt(propertyValue));
+        } else if ("timeout".equals(propertyName)) {
+          task.setTimeout(Long.parseLong(propertyValue));
+        } else if ("delay".equals(propertyName)) {
+          task.setDelay(Long.parseLong(propertyValue));
+        } else if ("pool".equals(propertyName)) {
+          task.setPool(propertyValue);
+        } else if ("tasks".equals(propertyName)) {
+          // These are the tasks for a parallel task
+          // grab them on the next pass
+        } else if ("when".equals(propertyName)) {
+          LOGGER.debug("Set '" + task.getId() + "' when: " + propertyValue);
+          if (inBlock &&
+              ("block".equals(task.getId()) || "parallel".equals(task.getId()))) {
+            Task noop = new Task("noop");
+            noop.setWhen(propertyValue);
+            blockTask.add(noop);
+          } else {
+            task.setWhen(propertyValue);
+          }
+        } else {
+          // Check if this is a multi-line value (uses \n or " ")
+          String text = nextLine.getText();
+          if (text.endsWith("|") || text.endsWith(">")) {
+            propertyValue = readMultiLineValue(lines, nextIndent, text.endsWith(">"));
+          }
+          // Add as a property as a variable
+          LOGGER.debug("Adding '" + task.getId() + "' property: " + propertyName + "=" + propertyValue);
+          task.addVar(propertyName, propertyValue);
         }
       }
+    }
+  }
 
+  /**
+   * Joins the following lines which are blank or indented past the property, trimming each line
+   */
+  private static String readMultiLineValue(YamlLineReader lines, int propertyIndent, boolean useSpace)
+      throws IOException {
+    StringBuilder sb = new StringBuilder();
+    int blankLines = 0;
+    YamlLine testLine;
+    while ((testLine = lines.peek()) != null) {
+      if (testLine.isBlank()) {
+        // Blank lines are kept only when followed by more of the value
+        blankLines++;
+      } else if (testLine.getIndent() > propertyIndent) {
+        if (sb.length() > 0) {
+          for (int i = 0; i < blankLines; i++) {
+            sb.append(useSpace ? " " : "\n");
+          }
+          sb.append(useSpace ? " " : "\n");
+        }
+        sb.append(testLine.getContent());
+        blankLines = 0;
+      } else {
+        break;
+      }
+      lines.next();
     }
-    return playbookList;
+    return sb.toString();
   }
 
   private static String termOf(String wholeLine) {
-    if (wholeLine == null) {
-      return null;
-    }
-    String term = wholeLine.trim();
-    if (term.contains(":")) {
-      term = term.substring(0, term.indexOf(":")).trim();
-    }
-    if (term.startsWith("- ")) {
-      return term.substring(2).trim();
-    }
-    return term;
+    return YamlLine.termOf(wholeLine);
   }
 
   private static String valueOf(String wholeLine) {
-    if (wholeLine == null) {
-      return null;
-    }
-    if (!wholeLine.contains(":")) {
-      return null;
-    }
-    String value = wholeLine.substring(wholeLine.indexOf(":") + 1).trim();
-    if (value.length() == 0) {
-      return null;
-    }
-    // Strip one occurrence of quotes
-    if (value.length() > 1 &&
-        (value.startsWith("'") && value.endsWith("'")) ||
-        (value.startsWith("\"") && value.endsWith("\""))) {
-      return value.substring(1, value.length() - 1);
-    }
-    return value;
+    return YamlLine.valueOf(wholeLine);
   }
 }
@@ -32,7 +32,7 @@ public class DefaultWorkReport implements WorkReport {
 
     private final WorkStatus status;
     private final WorkContext workContext;
-    private Throwable error;
+    private final Throwable error;
 
     /**
      * Create a new {@link DefaultWorkReport}.
@@ -40,8 +40,7 @@ public class DefaultWorkReport implements WorkReport {
      * @param status of work
      */
     public DefaultWorkReport(WorkStatus status, WorkContext workContext) {
-        this.status = status;
-        this.workContext = workContext;
+        this(status, workContext, null);
     }
 
     /**
@@ -51,7 +50,8 @@ public class DefaultWorkReport implements WorkReport {
      * @param error if any
      */
     public DefaultWorkReport(WorkStatus status, WorkContext workContext, Throwable error) {
-        this(status, workContext);
+        this.status = status;
+        this.workContext = workContext;
         this.error = error;
     }
 
@@ -35,12 +35,17 @@ public class EvaluateTask implements Work {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(EvaluateTask.class.getName());
 
+  @Override
+  public String getName() {
+    return "evaluate";
+  }
+
   @Override
   public WorkReport execute(WorkContext workContext, TaskContext taskContext) {
     if (taskContext.getData() != null) {
       Expression.evaluate(workContext, taskContext, taskContext.getData());
-      return new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+      return workContext.getStatusReport(WorkStatus.COMPLETED);
     }
-    return new DefaultWorkReport(WorkStatus.FAILED, workContext);
+    return workContext.getStatusReport(WorkStatus.FAILED);
   }
 }
@@ -24,7 +24,6 @@
 package org.jeasy.flows.work;
 
 import java.util.Map;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.commons.jexl3.JexlBuilder;
@@ -47,6 +46,28 @@ public class Expression {
   private static final Logger LOGGER = LoggerFactory.getLogger(Expression.class.getName());
 
   private static final JexlEngine jexl = new JexlBuilder().permissions(PlaybookManager.getJexlPermissions()).create();
+  private static final ScriptCache scriptCache = new ScriptCache(jexl, ScriptCache.DEFAULT_MAX_SIZE);
+
+  // A single = which is not part of ==, !=, <=, >=, =~ or !~
+  private static final Pattern ASSIGNMENT = Pattern.compile("(?<![=!<>~])=(?![=~])");
+
+  /**
+   * @return the compiled script cache shared by the expression tasks
+   */
+  public static ScriptCache getScriptCache() {
+    return scriptCache;
+  }
+
+  /**
+   * Checks an expression for method calls, assignments and increments, so its value only depends on the variables
+   * it reads
+   *
+   * @return true when the expression only reads variables
+   */
+  public static boolean isSideEffectFree(String expression) {
+    return expression.indexOf('(') < 0 && expression.indexOf(';') < 0 && !expression.contains("++")
+        && !expression.contains("--") && !ASSIGNMENT.matcher(expression).find();
+  }
 
   public static void applyVarExpressionsToWorkContext(Playbook playbook, WorkContext workContext,
       Map<String, Object> starterObjectMap) {
@@ -63,23 +84,23 @@ public class Expression {
       // Determine the var values
       for (Map.Entry<String, Object> varEntry : vars.entrySet()) {
 
-        LOGGER.debug("Check var: " + varEntry.getKey() + "=" + varEntry.getValue());
+        LOGGER.debug("Check var: {}={}", varEntry.getKey(), varEntry.getValue());
         String name = varEntry.getKey();
         String value = (String) varEntry.getValue();
 
         if (value != null && value.contains("{{") && value.contains("}}")) {
           // This is an expression
-          LOGGER.debug("Use expression: " + name + "=" + value);
+          LOGGER.debug("Use expression: {}={}", name, value);
           Object result = Expression.evaluate(mapContext, value);
           if (result != null) {
-            LOGGER.debug("Setting expression result: " + name + "=" + result.getClass().getName());
+            LOGGER.debug("Setting expression result: {}={}", name, result.getClass().getName());
           } else {
-            LOGGER.debug("Setting null expression result: " + name);
+            LOGGER.debug("Setting null expression result: {}", name);
           }
           workContext.put(name, result);
         } else {
           // This is a simple value
-          LOGGER.debug("Setting: " + name + "=" + value);
+          LOGGER.debug("Setting: {}={}", name, value);
           workContext.put(name, value);
         }
       }
@@ -91,25 +112,17 @@ public class Expression {
       return false;
     }
     boolean result = (Boolean) evaluate(workContext, taskContext, expression);
-    LOGGER.debug("Result is: " + result);
+    LOGGER.debug("Result is: {}", result);
     return result;
   }
 
   public static Object evaluate(WorkContext workContext, TaskContext taskContext, String expression) {
-    LOGGER.debug("Evaluate: " + expression);
+    LOGGER.debug("Evaluate: {}", expression);
     if (expression == null || expression.length() == 0) {
       return expression;
     }
 
-    JexlContext mapContext = new MapContext();
-    for (Map.Entry<String, Object> entry : workContext.getEntrySet()) {
-      mapContext.set(entry.getKey(), entry.getValue());
-    }
-    for (Map.Entry<String, Object> entry : taskContext.getEntrySet()) {
-      mapContext.set(entry.getKey(), entry.getValue());
-    }
-
-    return evaluate(mapContext, expression);
+    return evaluate(new WorkJexlContext(workContext, taskContext), expression);
   }
 
   public static Object evaluate(JexlContext mapContext, String expression) {
@@ -117,55 +130,30 @@ public class Expression {
       return expression;
     }
     if (expression.contains("{{") && expression.contains("}}")) {
-      int startIdx = expression.indexOf("{{");
-      int endIdx = expression.indexOf("}}");
-      int checkIdx2 = expression.indexOf("{{", startIdx + 2);
-      if (startIdx > 0 || checkIdx2 > -1 || endIdx < expression.length() - 2) {
-        // Combine multiple expressions into a string, and expressions within a string
-        // {{ Hello }} {{ there }}
-        // {{ Hello }} there
-        // Hello {{ there }}
-        return evaluateAll(mapContext, expression);
-      } else {
-        // Strip off the {{ }}
-        // {{ Hello there }}
-        expression = expression.substring(startIdx + 2, endIdx).trim();
-      }
+      // {{ Hello there }} is an object, while these combine into a string:
+      // {{ Hello }} {{ there }}
+      // {{ Hello }} there
+      // Hello {{ there }}
+      return Template.compile(expression).evaluate(mapContext);
     }
 
     // Treat as an object
-    LOGGER.debug("Compiling script for expression: " + expression);
-    JexlScript compiledScript = jexl.createScript(expression);
+    JexlScript compiledScript = scriptCache.getScript(expression);
 
-    LOGGER.debug("Executing script: " + expression);
+    LOGGER.debug("Executing script: {}", expression);
     return compiledScript.execute(mapContext);
   }
 
-  private static Object evaluateAll(JexlContext mapContext, String property) {
-    // Find all of the expressions
-    Pattern pattern = Pattern.compile("\\{\\{(.*?)\\}\\}", Pattern.DOTALL);
-    Matcher matcher = pattern.matcher(property);
-
-    // Evaluate and replace the expressions with a result
-    StringBuilder sb = new StringBuilder();
-    while (matcher.find()) {
-      String expression = matcher.group(1).trim();
-      LOGGER.debug("Expression found: " + expression);
-      try {
-        JexlScript compiledScript = jexl.createScript(expression);
-        Object result = compiledScript.execute(mapContext);
-        if (result != null) {
-          String replacement = String.valueOf(result);
-          matcher.appendReplacement(sb, replacement);
-        } else {
-          LOGGER.error("Expression not replaced: " + expression);
-        }
-      } catch (Exception e) {
-        LOGGER.error("Expression error: " + expression, e);
-      }
+  public static Object evaluate(WorkContext workContext, TaskContext taskContext, Template template) {
+    return evaluate(new WorkJexlContext(workContext, taskContext), template);
+  }
+
+  public static Object evaluate(JexlContext mapContext, Template template) {
+    if (template == null) {
+      return null;
     }
-    matcher.appendTail(sb);
-    return sb.toString();
+    LOGGER.debug("Evaluate template: {}", template);
+    return template.evaluate(mapContext);
   }
 
 }
@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.work;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A 'when' condition which remembers its last result in each work context. The variables the condition reads are
+ * found when it is created, and the result is re-used until the version of one of them changes in the work context.
+ * The results are kept by the work contexts, so concurrent runs of a shared task do not replace each other's.
+ *
+ * Only conditions without method calls or assignments, which read variables holding immutable values such as strings
+ * and numbers, are remembered; the others are evaluated every time.
+ *
+ * @author matt rajkowski
+ */
+class Guard {
+
+  private final String when;
+  // The variables the condition reads, or null when the result cannot be re-used
+  private final String[] dependencies;
+  // The slots of the variables in the compiled playbook, read instead of the names in its work contexts
+  private final SymbolTable symbolTable;
+  private final int[] slots;
+
+  /**
+   * The result of an evaluation, and the versions of the variables it was computed from
+   */
+  private static class Result {
+
+    private final long[] versions;
+    private final boolean value;
+
+    Result(long[] versions, boolean value) {
+      this.versions = versions;
+      this.value = value;
+    }
+  }
+
+  Guard(String when, TaskContext taskContext) {
+    this.when = when;
+    this.dependencies = findDependencies(when, taskContext);
+    this.symbolTable = taskContext.getSymbolTable();
+    if (dependencies != null && symbolTable != null) {
+      slots = new int[dependencies.length];
+      for (int i = 0; i < dependencies.length; i++) {
+        slots[i] = symbolTable.slot(dependencies[i]);
+      }
+    } else {
+      slots = null;
+    }
+  }
+
+  String[] getDependencies() {
+    return dependencies;
+  }
+
+  boolean evaluate(WorkContext workContext, TaskContext taskContext) {
+    if (dependencies == null) {
+      return Expression.validate(workContext, taskContext, when);
+    }
+    SlotWorkContext slotContext = slots != null && workContext instanceof SlotWorkContext slotWorkContext
+        && slotWorkContext.getSymbolTable() == symbolTable ? slotWorkContext : null;
+    if (workContext.getMemo(this) instanceof Result result && isCurrent(result, workContext, slotContext)) {
+      return result.value;
+    }
+    // Read the versions first, so a change made while evaluating is seen by the next check
+    long[] versions = new long[dependencies.length];
+    for (int i = 0; i < dependencies.length; i++) {
+      versions[i] = version(i, workContext, slotContext);
+    }
+    boolean value = Expression.validate(workContext, taskContext, when);
+    if (isImmutable(workContext, slotContext)) {
+      workContext.putMemo(this, new Result(versions, value));
+    }
+    return value;
+  }
+
+  private long version(int i, WorkContext workContext, SlotWorkContext slotContext) {
+    if (slotContext != null && slots[i] != SymbolTable.UNKNOWN) {
+      return slotContext.getVersion(slots[i]);
+    }
+    return workContext.getVersion(dependencies[i]);
+  }
+
+  private boolean isCurrent(Result result, WorkContext workContext, SlotWorkContext slotContext) {
+    for (int i = 0; i < dependencies.length; i++) {
+      if (version(i, workContext, slotContext) != result.versions[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * A mutable object, such as a bean, can change without being put in the context again
+   */
+  private boolean isImmutable(WorkContext workContext, SlotWorkContext slotContext) {
+    for (int i = 0; i < dependencies.length; i++) {
+      Object value = slotContext != null && slots[i] != SymbolTable.UNKNOWN ? slotContext.get(slots[i])
+          : workContext.get(dependencies[i]);
+      if (value != null && !(value instanceof String || value instanceof Boolean || value instanceof Integer
+          || value instanceof Long || value instanceof Double || value instanceof Float || value instanceof Short
+          || value instanceof Byte || value instanceof Character || value instanceof BigDecimal
+          || value instanceof BigInteger || value instanceof Enum)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the variables of the condition, or null when its result cannot be re-used
+   */
+  private static String[] findDependencies(String when, TaskContext taskContext) {
+    try {
+      List<String> expressions = new ArrayList<>();
+      if (when.contains("{{") && when.contains("}}")) {
+        expressions.addAll(Template.compile(when).getExpressions());
+      } else {
+        expressions.add(when);
+      }
+      Set<String> names = new LinkedHashSet<>();
+      for (String expression : expressions) {
+        if (!Expression.isSideEffectFree(expression)) {
+          return null;
+        }
+        for (List<String> variable : Expression.getScriptCache().getScript(expression).getVariables()) {
+          // Task variables can be templates of other variables
+          if (taskContext.containsKey(variable.get(0))) {
+            return null;
+          }
+          names.add(variable.get(0));
+          if (variable.size() > 1) {
+            // An undefined a.b is looked up by its full name
+            names.add(String.join(".", variable));
+          }
+        }
+      }
+      return names.toArray(new String[0]);
+    } catch (Exception e) {
+      // Evaluating reports the error
+      return null;
+    }
+  }
+}
@@ -38,28 +38,34 @@ public class LogTask implements Work {
   public static final String GLOBAL_MESSAGE_VAR = "log-message";
   public static final String MESSAGE_VAR = "message";
 
+  @Override
+  public String getName() {
+    return "log";
+  }
+
   @Override
   public WorkReport execute(WorkContext workContext, TaskContext taskContext) {
     // Find the message
-    String message = null;
+    Template template = null;
     if (taskContext.getData() != null) {
-      message = taskContext.getData();
+      template = taskContext.getDataTemplate();
     } else if (taskContext.containsKey(MESSAGE_VAR)) {
-      message = (String) taskContext.get(MESSAGE_VAR);
+      template = taskContext.getTemplate(MESSAGE_VAR);
     } else if (workContext.containsKey(GLOBAL_MESSAGE_VAR)) {
-      message = (String) workContext.get(GLOBAL_MESSAGE_VAR);
+      template = Template.compile((String) workContext.get(GLOBAL_MESSAGE_VAR));
     }
-    if (message == null) {
+    if (template == null) {
       LOGGER.warn("A message was not found");
-      return new DefaultWorkReport(WorkStatus.FAILED, workContext);
+      return workContext.getStatusReport(WorkStatus.FAILED);
     }
 
     // Evaluate values within the message
-    if (message.contains("{{") && message.contains("}}")) {
-      message = String.valueOf(Expression.evaluate(workContext, taskContext, message));
+    String message = template.getSource();
+    if (template.hasExpressions()) {
+      message = String.valueOf(Expression.evaluate(workContext, taskContext, template));
     }
 
     LOGGER.debug(message);
-    return new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+    return workContext.getStatusReport(WorkStatus.COMPLETED);
   }
 }
@@ -30,8 +30,13 @@ package org.jeasy.flows.work;
  */
 public class NoOpTask implements Work {
 
+    @Override
+    public String getName() {
+        return "noop";
+    }
+
     @Override
     public WorkReport execute(WorkContext workContext, TaskContext taskContext) {
-        return new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+        return workContext.getStatusReport(WorkStatus.COMPLETED);
     }
 }
@@ -0,0 +1,185 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.work;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.jexl3.JexlEngine;
+import org.apache.commons.jexl3.JexlScript;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded cache of compiled scripts, keyed by the expression text. Finding a cached script does not lock, so
+ * concurrent runs do not wait on each other. When the cache is full, the scripts which were not used since the most
+ * misses are evicted, an approximation of least recently used. Compiled scripts are immutable and can be executed
+ * concurrently.
+ *
+ * @author matt rajkowski
+ */
+public class ScriptCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ScriptCache.class.getName());
+
+  public static final String MAX_SIZE_PROPERTY = "easyflows.scriptCache.maxSize";
+  public static final int DEFAULT_MAX_SIZE = Integer.getInteger(MAX_SIZE_PROPERTY, 1024);
+
+  private final JexlEngine jexl;
+  private final ConcurrentHashMap<String, Entry> scripts = new ConcurrentHashMap<>(64);
+  // Advances on each miss; a hit stamps its entry with the current value, so the clock is only written by misses
+  private final AtomicLong clock = new AtomicLong();
+  private final Object evictionLock = new Object();
+  private volatile int maxSize;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  private static class Entry {
+
+    private final JexlScript script;
+    private volatile long lastUsed;
+
+    Entry(JexlScript script, long lastUsed) {
+      this.script = script;
+      this.lastUsed = lastUsed;
+    }
+  }
+
+  public ScriptCache(JexlEngine jexl, int maxSize) {
+    this.jexl = jexl;
+    setMaxSize(maxSize);
+  }
+
+  /**
+   * Returns the compiled script for the expression, compiling and caching it when it is not in the cache
+   *
+   * @param expression the script text
+   * @return the compiled script
+   */
+  public JexlScript getScript(String expression) {
+    Entry entry = scripts.get(expression);
+    if (entry != null) {
+      long now = clock.get();
+      // Only write when the stamp changes, so a script used by many threads is not written by each of them
+      if (entry.lastUsed != now) {
+        entry.lastUsed = now;
+      }
+      hits.increment();
+      return entry.script;
+    }
+    misses.increment();
+    LOGGER.debug("Compiling script for expression: {}", expression);
+    JexlScript script = jexl.createScript(expression);
+    if (maxSize > 0) {
+      Entry existing = scripts.putIfAbsent(expression, new Entry(script, clock.getAndIncrement()));
+      if (existing != null) {
+        // Compiled at the same time by another thread
+        return existing.script;
+      }
+      if (scripts.size() > maxSize) {
+        synchronized (evictionLock) {
+          evict();
+        }
+      }
+    }
+    return script;
+  }
+
+  public JexlEngine getJexlEngine() {
+    return jexl;
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Sets the number of scripts to keep, a size of 0 disables caching
+   */
+  public void setMaxSize(int maxSize) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("The script cache size must not be negative: " + maxSize);
+    }
+    synchronized (evictionLock) {
+      this.maxSize = maxSize;
+      evict();
+    }
+  }
+
+  public int size() {
+    return scripts.size();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  public void clear() {
+    scripts.clear();
+  }
+
+  /**
+   * Removes the scripts with the oldest stamps until the cache fits, with room for a few more so that each miss of a
+   * full cache does not sort the scripts; called with the eviction lock held
+   */
+  private void evict() {
+    if (scripts.size() <= maxSize) {
+      return;
+    }
+    int excess = scripts.size() - (maxSize - maxSize / 16);
+    List<Map.Entry<String, Entry>> entries = new ArrayList<>(scripts.entrySet());
+    entries.sort(Comparator.comparingLong(e -> e.getValue().lastUsed));
+    for (int i = 0; i < excess && i < entries.size(); i++) {
+      Map.Entry<String, Entry> eldest = entries.get(i);
+      if (scripts.remove(eldest.getKey(), eldest.getValue())) {
+        evictions.increment();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ScriptCache{size=" + size() +
+        ", maxSize=" + maxSize +
+        ", hits=" + getHits() +
+        ", misses=" + getMisses() +
+        ", evictions=" + getEvictions() +
+        '}';
+  }
+}
@@ -23,72 +23,158 @@
  */
 package org.jeasy.flows.work;
 
-import java.util.Map;
-
-import org.apache.commons.jexl3.JexlBuilder;
-import org.apache.commons.jexl3.JexlContext;
-import org.apache.commons.jexl3.JexlEngine;
 import org.apache.commons.jexl3.JexlScript;
-import org.apache.commons.jexl3.MapContext;
-import org.jeasy.flows.playbook.PlaybookManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Task for putting an object into the work context
+ * Task for putting an object into the work context. The data, such as {@code counter = counter + 1}, is parsed once
+ * into an {@link Assignment} when the playbook is compiled.
  *
  * @author matt rajkowski
  */
-public class SetTask implements Work {
+public class SetTask implements CompilableWork {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SetTask.class.getName());
 
-  private static final JexlEngine jexl = new JexlBuilder().permissions(PlaybookManager.getJexlPermissions()).create();
+  @Override
+  public String getName() {
+    return "set";
+  }
+
+  @Override
+  public Assignment compile(TaskContext taskContext) {
+    return Assignment.parse(taskContext.getData(), taskContext.getSymbolTable());
+  }
 
   @Override
   public WorkReport execute(WorkContext workContext, TaskContext taskContext) {
-    if (taskContext.getData() == null) {
-      return new DefaultWorkReport(WorkStatus.FAILED, workContext);
-    }
-    // Determine the strings before and after the =
-    int idx = taskContext.getData().indexOf("=");
-    String property = taskContext.getData().substring(0, idx).trim();
-    String value = taskContext.getData().substring(idx + 1).trim();
-
-    // See if the value is an expression
-    boolean isExpression = false;
-    if (value.startsWith("{{") && value.endsWith("}}")) {
-      // Found an expression
-      isExpression = true;
-      value = value.substring(2, value.length() - 2);
+    Assignment assignment;
+    if (taskContext.getCompiledWork() instanceof Assignment compiled) {
+      assignment = compiled;
     } else {
-      int sz = value.length();
-      for (int i = 0; i < sz; ++i) {
-        if (!Character.isLetterOrDigit(value.charAt(i))) {
-          isExpression = true;
+      // The task was not compiled with a playbook, or its data is not an assignment
+      assignment = compile(taskContext);
+      if (!taskContext.isFrozen()) {
+        taskContext.setCompiledWork(assignment);
+      }
+    }
+    if (assignment == null) {
+      return workContext.getStatusReport(WorkStatus.FAILED);
+    }
+    Object value = assignment.evaluate(workContext, taskContext);
+    LOGGER.debug("Setting field: {}={}", assignment.getProperty(), value);
+    assignment.assign(workContext, value);
+    return workContext.getStatusReport(WorkStatus.COMPLETED);
+  }
+
+  /**
+   * The parsed data of a set task: the variable to set, and how its value is found. A value in {{ }}, or with any
+   * character which is not a letter or digit, is an expression; otherwise the value is used as is. The variable's slot
+   * is resolved when the task is compiled with a playbook.
+   */
+  public static final class Assignment {
+
+    private final String property;
+    private final String value;
+    private final boolean expression;
+    private final JexlScript script;
+    private final SymbolTable symbolTable;
+    private final int slot;
+
+    private Assignment(String property, String value, boolean expression, JexlScript script,
+        SymbolTable symbolTable) {
+      this.property = property;
+      this.value = value;
+      this.expression = expression;
+      this.script = script;
+      this.symbolTable = symbolTable;
+      this.slot = symbolTable != null ? symbolTable.slot(property) : SymbolTable.UNKNOWN;
+    }
+
+    /**
+     * @param symbolTable the slots of the compiled playbook, or null
+     * @return the assignment, or null when the data is not a 'name = value'
+     */
+    static Assignment parse(String data, SymbolTable symbolTable) {
+      if (data == null) {
+        return null;
+      }
+      // Determine the strings before and after the =
+      int idx = data.indexOf("=");
+      if (idx == -1) {
+        LOGGER.error("Set requires a 'name = value': " + data);
+        return null;
+      }
+      String property = data.substring(0, idx).trim();
+      String value = data.substring(idx + 1).trim();
+
+      // See if the value is an expression
+      boolean isExpression = false;
+      if (value.startsWith("{{") && value.endsWith("}}")) {
+        // Found an expression
+        isExpression = true;
+        value = value.substring(2, value.length() - 2);
+      } else {
+        int sz = value.length();
+        for (int i = 0; i < sz; ++i) {
+          if (!Character.isLetterOrDigit(value.charAt(i))) {
+            isExpression = true;
+            break;
+          }
         }
       }
+      if (!isExpression) {
+        return new Assignment(property, value, false, null, symbolTable);
+      }
+      JexlScript script = null;
+      try {
+        script = Expression.getScriptCache().getScript(value);
+      } catch (Exception e) {
+        // Reported when the task runs
+        LOGGER.warn("Set expression not compiled: " + value + "; " + e.getMessage());
+      }
+      return new Assignment(property, value, true, script, symbolTable);
+    }
+
+    Object evaluate(WorkContext workContext, TaskContext taskContext) {
+      if (!expression) {
+        return value;
+      }
+      JexlScript compiledScript = script != null ? script : Expression.getScriptCache().getScript(value);
+      return compiledScript.execute(new WorkJexlContext(workContext, taskContext));
     }
 
-    if (!isExpression) {
-      LOGGER.debug("Setting field: " + property + "=" + value);
-      workContext.put(property, value);
-      return new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+    /**
+     * Sets the variable, by its slot when the work context has the slots of the compiled playbook
+     */
+    void assign(WorkContext workContext, Object result) {
+      if (slot != SymbolTable.UNKNOWN && workContext instanceof SlotWorkContext slots
+          && slots.getSymbolTable() == symbolTable) {
+        slots.put(slot, result);
+      } else {
+        workContext.put(property, result);
+      }
     }
 
-    // Evaluate the expression
-    JexlContext mapContext = new MapContext();
-    for (Map.Entry<String, Object> entry : workContext.getEntrySet()) {
-      mapContext.set(entry.getKey(), entry.getValue());
+    public String getProperty() {
+      return property;
     }
-    for (Map.Entry<String, Object> entry : taskContext.getEntrySet()) {
-      mapContext.set(entry.getKey(), entry.getValue());
+
+    /**
+     * @return the literal value, or the source of the expression
+     */
+    public String getValue() {
+      return value;
     }
-    JexlScript compiledScript = jexl.createScript(value);
-    Object result = compiledScript.execute(mapContext);
-    LOGGER.debug("Setting field: " + property + "=" + result);
-    workContext.put(property, result);
 
-    return new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+    public boolean isExpression() {
+      return expression;
+    }
+
+    @Override
+    public String toString() {
+      return property + (expression ? " = {{ " + value + " }}" : " = " + value);
+    }
   }
 }
@@ -0,0 +1,319 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.work;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A work context which keeps the variables of a {@link SymbolTable} in an array, so a variable can be read and written
+ * by its slot without hashing its name or allocating a map entry. Other variables are kept in a map. Like the map, a
+ * slot never holds null; a null slot is a variable which is not set.
+ *
+ * @author matt rajkowski
+ */
+public class SlotWorkContext extends WorkContext {
+
+  private final SymbolTable symbolTable;
+  private final AtomicReferenceArray<Object> values;
+  private final AtomicLongArray versions;
+  private final Map<String, Object> others;
+  private final Map<String, Object> map = new SlotMap();
+
+  public SlotWorkContext(SymbolTable symbolTable) {
+    this(symbolTable, new ConcurrentHashMap<>());
+  }
+
+  private SlotWorkContext(SymbolTable symbolTable, Map<String, Object> others) {
+    super(others);
+    this.symbolTable = symbolTable;
+    this.values = new AtomicReferenceArray<>(symbolTable.size());
+    this.versions = new AtomicLongArray(symbolTable.size());
+    this.others = others;
+  }
+
+  public SymbolTable getSymbolTable() {
+    return symbolTable;
+  }
+
+  public Object get(int slot) {
+    return values.get(slot);
+  }
+
+  public void put(int slot, Object value) {
+    if (value != null) {
+      values.set(slot, value);
+      changed(slot);
+    }
+  }
+
+  @Override
+  public Object get(String key) {
+    int slot = symbolTable.slot(key);
+    return slot == SymbolTable.UNKNOWN ? others.get(key) : values.get(slot);
+  }
+
+  @Override
+  public void put(String key, Object value) {
+    if (value == null) {
+      return;
+    }
+    int slot = symbolTable.slot(key);
+    if (slot == SymbolTable.UNKNOWN) {
+      others.put(key, value);
+      changed(key);
+    } else {
+      values.set(slot, value);
+      changed(slot);
+    }
+  }
+
+  @Override
+  public void put(Map<String, Object> vars) {
+    if (vars == null || vars.isEmpty()) {
+      return;
+    }
+    for (Map.Entry<String, Object> var : vars.entrySet()) {
+      if (var.getValue() == null) {
+        continue;
+      }
+      int slot = symbolTable.slot(var.getKey());
+      if (slot == SymbolTable.UNKNOWN) {
+        if (others.putIfAbsent(var.getKey(), var.getValue()) == null) {
+          changed(var.getKey());
+        }
+      } else if (values.compareAndSet(slot, null, var.getValue())) {
+        changed(slot);
+      }
+    }
+  }
+
+  @Override
+  public boolean containsKey(String key) {
+    int slot = symbolTable.slot(key);
+    return slot == SymbolTable.UNKNOWN ? others.containsKey(key) : values.get(slot) != null;
+  }
+
+  /**
+   * Returns the number of times a variable was put in this context, including changes made through {@link #getMap()}
+   */
+  public long getVersion(int slot) {
+    return versions.get(slot);
+  }
+
+  /**
+   * Increments the version of a slot, after its value is written
+   */
+  protected void changed(int slot) {
+    versions.incrementAndGet(slot);
+  }
+
+  @Override
+  public long getVersion(String key) {
+    int slot = symbolTable.slot(key);
+    return slot == SymbolTable.UNKNOWN ? super.getVersion(key) : versions.get(slot);
+  }
+
+  @Override
+  public Set<Map.Entry<String, Object>> getEntrySet() {
+    return map.entrySet();
+  }
+
+  /**
+   * @return a live view of the slots and the other variables
+   */
+  @Override
+  public Map<String, Object> getMap() {
+    return map;
+  }
+
+  private class SlotMap extends AbstractMap<String, Object> {
+
+    private final Set<Map.Entry<String, Object>> entrySet = new AbstractSet<>() {
+      @Override
+      public Iterator<Map.Entry<String, Object>> iterator() {
+        return new SlotIterator();
+      }
+
+      @Override
+      public int size() {
+        return SlotMap.this.size();
+      }
+    };
+
+    @Override
+    public Object get(Object key) {
+      return key instanceof String ? SlotWorkContext.this.get((String) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof String && SlotWorkContext.this.containsKey((String) key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+      if (key == null || value == null) {
+        throw new NullPointerException();
+      }
+      int slot = symbolTable.slot(key);
+      // Written before the version is incremented, so a reader of the new version sees the new value
+      if (slot == SymbolTable.UNKNOWN) {
+        Object previous = others.put(key, value);
+        changed(key);
+        return previous;
+      }
+      Object previous = values.getAndSet(slot, value);
+      changed(slot);
+      return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+      if (!(key instanceof String)) {
+        return null;
+      }
+      int slot = symbolTable.slot((String) key);
+      if (slot == SymbolTable.UNKNOWN) {
+        Object previous = others.remove(key);
+        if (previous != null) {
+          changed((String) key);
+        }
+        return previous;
+      }
+      Object previous = values.getAndSet(slot, null);
+      if (previous != null) {
+        changed(slot);
+      }
+      return previous;
+    }
+
+    @Override
+    public int size() {
+      int size = others.size();
+      for (int i = 0; i < values.length(); i++) {
+        if (values.get(i) != null) {
+          size++;
+        }
+      }
+      return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+      return entrySet;
+    }
+  }
+
+  /**
+   * Iterates over the slots which are set, then the other variables
+   */
+  private class SlotIterator implements Iterator<Map.Entry<String, Object>> {
+
+    private final Iterator<Map.Entry<String, Object>> othersIterator = others.entrySet().iterator();
+    private int nextSlot = -1;
+    private Object nextValue = null;
+    private int lastSlot = -1;
+    private String lastOther = null;
+
+    SlotIterator() {
+      advance();
+    }
+
+    private void advance() {
+      nextValue = null;
+      while (nextValue == null && ++nextSlot < values.length()) {
+        nextValue = values.get(nextSlot);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return nextValue != null || othersIterator.hasNext();
+    }
+
+    @Override
+    public Map.Entry<String, Object> next() {
+      if (nextValue != null) {
+        SlotEntry entry = new SlotEntry(nextSlot, nextValue);
+        lastSlot = nextSlot;
+        advance();
+        return entry;
+      }
+      if (!othersIterator.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Map.Entry<String, Object> entry = othersIterator.next();
+      lastOther = entry.getKey();
+      return new AbstractMap.SimpleEntry<>(entry) {
+        @Override
+        public Object setValue(Object value) {
+          map.put(getKey(), value);
+          return super.setValue(value);
+        }
+      };
+    }
+
+    @Override
+    public void remove() {
+      if (lastOther != null) {
+        othersIterator.remove();
+        changed(lastOther);
+      } else if (lastSlot >= 0) {
+        values.set(lastSlot, null);
+        changed(lastSlot);
+        lastSlot = -1;
+      } else {
+        throw new IllegalStateException();
+      }
+    }
+  }
+
+  private class SlotEntry extends AbstractMap.SimpleEntry<String, Object> {
+
+    private final int slot;
+
+    SlotEntry(int slot, Object value) {
+      super(symbolTable.name(slot), value);
+      this.slot = slot;
+    }
+
+    @Override
+    public Object setValue(Object value) {
+      if (value == null) {
+        throw new NullPointerException();
+      }
+      values.set(slot, value);
+      changed(slot);
+      return super.setValue(value);
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.work;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The work context variables known when a playbook is compiled, each with a slot number; a {@link SlotWorkContext}
+ * keeps their values in an array instead of a hash map. A symbol table is immutable and shared by every run of the
+ * playbook.
+ *
+ * Tasks resolve their variables to slots when they are compiled. Names only known at run time, such as those read by
+ * expressions, are found in an open addressing table, without boxing the slot.
+ *
+ * @author matt rajkowski
+ */
+public class SymbolTable {
+
+  public static final int UNKNOWN = -1;
+
+  private final String[] names;
+  // Open addressing: the name and slot at each position, with a power of two size at most half full
+  private final String[] keys;
+  private final int[] slots;
+  private final int mask;
+
+  public SymbolTable(Collection<String> names) {
+    this.names = names.stream().distinct().toArray(String[]::new);
+    int capacity = Integer.highestOneBit(Math.max(8, this.names.length * 2) - 1) << 1;
+    this.keys = new String[capacity];
+    this.slots = new int[capacity];
+    this.mask = capacity - 1;
+    for (int i = 0; i < this.names.length; i++) {
+      int index = spread(this.names[i].hashCode()) & mask;
+      while (keys[index] != null) {
+        index = (index + 1) & mask;
+      }
+      keys[index] = this.names[i];
+      slots[index] = i;
+    }
+  }
+
+  /**
+   * @return the slot of the variable, or {@link #UNKNOWN}
+   */
+  public int slot(String name) {
+    if (name == null) {
+      return UNKNOWN;
+    }
+    int index = spread(name.hashCode()) & mask;
+    String key;
+    while ((key = keys[index]) != null) {
+      if (key == name || key.equals(name)) {
+        return slots[index];
+      }
+      index = (index + 1) & mask;
+    }
+    return UNKNOWN;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  public String name(int slot) {
+    return names[slot];
+  }
+
+  public int size() {
+    return names.length;
+  }
+
+  public List<String> getNames() {
+    return Collections.unmodifiableList(Arrays.asList(names));
+  }
+
+  /**
+   * Creates a work context with these slots
+   *
+   * @param vars initial values, such as the playbook vars; may be null
+   */
+  public SlotWorkContext newWorkContext(Map<String, Object> vars) {
+    SlotWorkContext workContext = new SlotWorkContext(this);
+    workContext.put(vars);
+    return workContext;
+  }
+
+  @Override
+  public String toString() {
+    return "SymbolTable" + Arrays.toString(names);
+  }
+}
@@ -23,15 +23,20 @@
  */
 package org.jeasy.flows.work;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 
+import org.jeasy.flows.metrics.TaskTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * The configuration and variables specific to the unit of work to execute. The TaskContext should not be re-used.
+ * The configuration and variables specific to the unit of work to execute. A compiled playbook shares its
+ * TaskContexts with every run, including concurrent runs, so they are frozen when compiled: work reads them, and
+ * keeps the state of a run in the WorkContext.
  *
  * @author matt rajkowski
  */
@@ -40,9 +45,19 @@ public class TaskContext {
   private static final Logger LOGGER = LoggerFactory.getLogger(TaskContext.class.getName());
 
   private Work work = null;
+  private String name = null;
   private String data = null;
   private Map<String, Object> vars = new HashMap<>();
   private String when = null;
+  private volatile Guard guard = null;
+  private SymbolTable symbolTable = null;
+  private long delay = 0;
+  private Template dataTemplate = null;
+  private Map<String, Template> templates = null;
+  private volatile Object compiledWork = null;
+  private TaskTimer timer = null;
+  private TaskTimer whenTimer = null;
+  private boolean frozen = false;
 
   public TaskContext(Work work) {
     this.work = work;
@@ -58,7 +73,21 @@ public class TaskContext {
   }
 
   public void setWork(Work work) {
+    checkNotFrozen();
     this.work = work;
+    this.compiledWork = null;
+  }
+
+  /**
+   * @return the name used to identify this task in logs and reports, such as the playbook task id
+   */
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    checkNotFrozen();
+    this.name = name;
   }
 
   public String getData() {
@@ -66,7 +95,59 @@ public class TaskContext {
   }
 
   public void setData(String data) {
+    checkNotFrozen();
     this.data = data;
+    this.dataTemplate = null;
+    this.compiledWork = null;
+  }
+
+  /**
+   * @return the data as a template, pre-parsed when the playbook was loaded
+   */
+  public Template getDataTemplate() {
+    if (dataTemplate != null) {
+      return dataTemplate;
+    }
+    return Template.compile(data);
+  }
+
+  /**
+   * @return the variable as a template, pre-parsed when the playbook was loaded
+   */
+  public Template getTemplate(String key) {
+    if (templates != null) {
+      Template template = templates.get(key);
+      if (template != null) {
+        return template;
+      }
+    }
+    return Template.compile((String) vars.get(key));
+  }
+
+  /**
+   * Parses the data and string variables, including those without {{ }} expressions, so that they are not parsed on
+   * every execution
+   */
+  public void compileTemplates() {
+    checkNotFrozen();
+    if (data != null) {
+      try {
+        dataTemplate = Template.compile(data);
+      } catch (Exception e) {
+        LOGGER.warn("Template not compiled: " + data + "; " + e.getMessage());
+      }
+    }
+    Map<String, Template> compiledTemplates = new HashMap<>();
+    for (Map.Entry<String, Object> entry : vars.entrySet()) {
+      if (entry.getValue() instanceof String value) {
+        try {
+          compiledTemplates.put(entry.getKey(), Template.compile(value));
+        } catch (Exception e) {
+          LOGGER.warn("Template not compiled: " + value + "; " + e.getMessage());
+        }
+      }
+    }
+    templates = compiledTemplates.isEmpty() ? null : compiledTemplates;
   }
 
   public Set<Map.Entry<String, Object>> getEntrySet() {
@@ -82,33 +163,199 @@ public class TaskContext {
   }
 
   public void put(String key, Object value) {
+    checkNotFrozen();
     vars.put(key, value);
+    this.guard = null;
+    if (templates != null) {
+      templates.remove(key);
+    }
+  }
+
+  /**
+   * Replaces the pre-parsed data and variable templates, such as with templates whose expressions were evaluated when
+   * the playbook was compiled
+   */
+  public void foldTemplates(UnaryOperator<Template> folder) {
+    checkNotFrozen();
+    if (dataTemplate != null) {
+      dataTemplate = folder.apply(dataTemplate);
+    }
+    if (templates != null) {
+      templates.replaceAll((key, template) -> folder.apply(template));
+    }
+  }
+
+  /**
+   * Lets a {@link CompilableWork} prepare this task once, such as when the playbook is compiled
+   */
+  public void compileWork() {
+    checkNotFrozen();
+    if (work instanceof CompilableWork) {
+      compiledWork = ((CompilableWork) work).compile(this);
+    }
+  }
+
+  /**
+   * @return the form of this task prepared by its {@link CompilableWork}, or null when it has not been prepared
+   */
+  public Object getCompiledWork() {
+    return compiledWork;
+  }
+
+  /**
+   * Keeps the prepared form of this task, for work which prepares a task on its first execution
+   */
+  public void setCompiledWork(Object compiledWork) {
+    checkNotFrozen();
+    this.compiledWork = compiledWork;
   }
 
   public void put(Map<String, Object> vars) {
     if (vars == null) {
       return;
     }
+    checkNotFrozen();
     this.vars.putAll(vars);
+    this.compiledWork = null;
+    this.guard = null;
+    if (templates != null) {
+      templates.keySet().removeAll(vars.keySet());
+    }
   }
 
   public boolean containsKey(String key) {
     return vars.containsKey(key);
   }
 
+  /**
+   * Makes the task read-only, once it is compiled and assembled into a workflow which is shared by concurrent runs;
+   * every setter then throws an IllegalStateException
+   */
+  public void freeze() {
+    if (frozen) {
+      return;
+    }
+    vars = Collections.unmodifiableMap(vars);
+    frozen = true;
+  }
+
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  private void checkNotFrozen() {
+    if (frozen) {
+      throw new IllegalStateException("The task '" + name + "' is shared by runs and cannot be changed");
+    }
+  }
+
   public WorkReport execute(WorkContext workContext, TaskContext taskContext) {
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("Executing work: " + taskContext.getWork().getClass().getSimpleName());
     }
-    return work.execute(workContext, taskContext);
+    if (timer == null) {
+      return work.execute(workContext, taskContext);
+    }
+    long startTime = System.nanoTime();
+    WorkReport workReport = null;
+    boolean returned = false;
+    try {
+      workReport = work.execute(workContext, taskContext);
+      returned = true;
+      return workReport;
+    } finally {
+      timer.record(System.nanoTime() - startTime,
+          !returned || (workReport != null && workReport.getStatus() == WorkStatus.FAILED));
+    }
+  }
+
+  /**
+   * Evaluates the 'when' condition against the work context; the last result is re-used while the variables the
+   * condition reads are unchanged in the work context
+   *
+   * @return true when there is no condition or the condition is met
+   */
+  public boolean evaluateWhen(WorkContext workContext) {
+    if (when == null) {
+      return true;
+    }
+    Guard current = guard;
+    if (current == null) {
+      current = new Guard(when, this);
+      guard = current;
+    }
+    if (whenTimer == null) {
+      return current.evaluate(workContext, this);
+    }
+    long startTime = System.nanoTime();
+    boolean returned = false;
+    try {
+      boolean result = current.evaluate(workContext, this);
+      returned = true;
+      return result;
+    } finally {
+      whenTimer.record(System.nanoTime() - startTime, !returned);
+    }
+  }
+
+  public TaskTimer getTimer() {
+    return timer;
+  }
+
+  /**
+   * @param timer records the latency of each execution, or null for no metrics
+   */
+  public void setTimer(TaskTimer timer) {
+    checkNotFrozen();
+    this.timer = timer;
+  }
+
+  public TaskTimer getWhenTimer() {
+    return whenTimer;
+  }
+
+  /**
+   * @param whenTimer records the latency of evaluating the 'when' condition, or null for no metrics
+   */
+  public void setWhenTimer(TaskTimer whenTimer) {
+    checkNotFrozen();
+    this.whenTimer = whenTimer;
+  }
+
+  /**
+   * @return the time to wait before running the work, in milliseconds
+   */
+  public long getDelay() {
+    return delay;
+  }
+
+  public void setDelay(long delay) {
+    checkNotFrozen();
+    this.delay = delay;
   }
 
   public String getWhen() {
     return when;
   }
 
+  /**
+   * @return the slots of the compiled playbook, used to resolve variables when compiling, or null
+   */
+  public SymbolTable getSymbolTable() {
+    return symbolTable;
+  }
+
+  public void setSymbolTable(SymbolTable symbolTable) {
+    checkNotFrozen();
+    this.symbolTable = symbolTable;
+    this.compiledWork = null;
+    this.guard = null;
+  }
+
   public void setWhen(String when) {
+    checkNotFrozen();
     this.when = when;
+    this.guard = null;
   }
 
   @Override
@@ -0,0 +1,220 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.work;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.JexlScript;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A string with {{ }} expressions, split once into literal text and compiled scripts so that it can be rendered
+ * repeatedly in a single pass. Templates are immutable and can be rendered concurrently.
+ *
+ * <ul>
+ *   <li>{{ user }} is a single expression, rendering returns the resulting object</li>
+ *   <li>Hello {{ user.name }}, you are {{ user.age }} is rendered as a string</li>
+ *   <li>Text without expressions is returned as-is</li>
+ * </ul>
+ *
+ * @author matt rajkowski
+ */
+public class Template {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Template.class.getName());
+
+  private static final String START = "{{";
+  private static final String END = "}}";
+
+  private final String source;
+  // There is one more literal than there are expressions
+  private final String[] literals;
+  // The {{ }} text, kept in place when an expression has no result
+  private final String[] matches;
+  private final String[] expressions;
+  private final JexlScript[] scripts;
+  private final boolean singleExpression;
+  // The result of expressions which were evaluated when the playbook was compiled, or null
+  private final Object constant;
+
+  private Template(String source, String[] literals, String[] matches, String[] expressions, JexlScript[] scripts,
+      boolean singleExpression) {
+    this(source, literals, matches, expressions, scripts, singleExpression, null);
+  }
+
+  private Template(String source, String[] literals, String[] matches, String[] expressions, JexlScript[] scripts,
+      boolean singleExpression, Object constant) {
+    this.source = source;
+    this.literals = literals;
+    this.matches = matches;
+    this.expressions = expressions;
+    this.scripts = scripts;
+    this.singleExpression = singleExpression;
+    this.constant = constant;
+  }
+
+  /**
+   * Parses the text and compiles the expressions it contains
+   *
+   * @param text the text containing {{ }} expressions
+   * @return the template
+   */
+  public static Template compile(String text) {
+    if (text == null) {
+      return null;
+    }
+    List<String> literalList = new ArrayList<>();
+    List<String> expressionList = new ArrayList<>();
+    int position = 0;
+    while (true) {
+      int startIdx = text.indexOf(START, position);
+      if (startIdx == -1) {
+        break;
+      }
+      int endIdx = text.indexOf(END, startIdx + START.length());
+      if (endIdx == -1) {
+        break;
+      }
+      literalList.add(text.substring(position, startIdx));
+      expressionList.add(text.substring(startIdx, endIdx + END.length()));
+      position = endIdx + END.length();
+    }
+    literalList.add(text.substring(position));
+
+    int size = expressionList.size();
+    String[] expressions = new String[size];
+    JexlScript[] scripts = new JexlScript[size];
+    // {{ Hello there }} is evaluated as an object, anything else is combined into a string
+    boolean singleExpression = size == 1 && literalList.get(0).isEmpty() && literalList.get(1).isEmpty() &&
+        text.indexOf(START, START.length()) == -1;
+    for (int i = 0; i < size; i++) {
+      String match = expressionList.get(i);
+      String expression = match.substring(START.length(), match.length() - END.length()).trim();
+      expressions[i] = expression;
+      if (singleExpression) {
+        // The result is the object, so compile errors are returned to the caller
+        scripts[i] = Expression.getScriptCache().getScript(expression);
+      } else {
+        try {
+          scripts[i] = Expression.getScriptCache().getScript(expression);
+        } catch (Exception e) {
+          LOGGER.error("Expression error: " + expression, e);
+        }
+      }
+    }
+    return new Template(text, literalList.toArray(new String[0]), expressionList.toArray(new String[0]), expressions,
+        scripts, singleExpression);
+  }
+
+  /**
+   * Renders the template
+   *
+   * @param context the variables for the expressions
+   * @return the object for a single expression, otherwise the rendered string
+   */
+  public Object evaluate(JexlContext context) {
+    if (constant != null) {
+      return constant;
+    }
+    if (singleExpression) {
+      return scripts[0].execute(context);
+    }
+    if (scripts.length == 0) {
+      return source;
+    }
+    StringBuilder sb = new StringBuilder(source.length() + 16 * scripts.length);
+    for (int i = 0; i < scripts.length; i++) {
+      sb.append(literals[i]);
+      Object result = null;
+      if (scripts[i] != null) {
+        try {
+          result = scripts[i].execute(context);
+          if (result == null) {
+            LOGGER.error("Expression not replaced: " + expressions[i]);
+          }
+        } catch (Exception e) {
+          LOGGER.error("Expression error: " + expressions[i], e);
+        }
+      }
+      if (result != null) {
+        sb.append(result);
+      } else {
+        // Leave the expression in place
+        sb.append(matches[i]);
+      }
+    }
+    sb.append(literals[scripts.length]);
+    return sb.toString();
+  }
+
+  /**
+   * @return true if the template contains {{ }} expressions which are evaluated when rendered
+   */
+  public boolean hasExpressions() {
+    return scripts.length > 0;
+  }
+
+  /**
+   * @return true if the template is a single {{ }} expression which renders as an object
+   */
+  public boolean isSingleExpression() {
+    return singleExpression;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * @return the source of each {{ }} expression, without the braces
+   */
+  public List<String> getExpressions() {
+    return List.of(expressions);
+  }
+
+  /**
+   * Creates a template which renders as the value without evaluating its expressions, for expressions which only
+   * use values which do not change
+   *
+   * @param value the rendered template, not null
+   */
+  public Template toConstant(Object value) {
+    return new Template(source, literals, matches, expressions, scripts, singleExpression, value);
+  }
+
+  /**
+   * @return true when the template renders as a value found when the playbook was compiled
+   */
+  public boolean isConstant() {
+    return constant != null;
+  }
+
+  @Override
+  public String toString() {
+    return source;
+  }
+}
@@ -35,13 +35,18 @@ public class WhenTask implements Work {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(WhenTask.class.getName());
 
+  @Override
+  public String getName() {
+    return "when";
+  }
+
   @Override
   public WorkReport execute(WorkContext workContext, TaskContext taskContext) {
     if (taskContext.getData() != null) {
       if (Expression.validate(workContext, taskContext, taskContext.getData())) {
-        return new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+        return workContext.getStatusReport(WorkStatus.COMPLETED);
       }
     }
-    return new DefaultWorkReport(WorkStatus.FAILED, workContext);
+    return workContext.getStatusReport(WorkStatus.FAILED);
   }
 }
@@ -23,9 +23,13 @@
  */
 package org.jeasy.flows.work;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jeasy.flows.playbook.Playbook;
 
@@ -39,18 +43,37 @@ import org.jeasy.flows.playbook.Playbook;
  */
 public class WorkContext {
 
-  private final Map<String, Object> context = new ConcurrentHashMap<>();
+  private final Map<String, Object> context;
+  // Counts the writes to each variable, so a result computed from variables can tell when they change
+  private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+  // The map handed out by getMap(), created on first use
+  private Map<String, Object> view = null;
+  // Results kept for this context by the engine, such as the last result of each 'when' condition
+  private volatile Map<Object, Object> memos = null;
+  // Created on first use; a report is immutable, so a race only creates an extra one
+  private WorkReport completedReport = null;
+  private WorkReport failedReport = null;
 
   public WorkContext() {
+    this(new ConcurrentHashMap<>());
+  }
+
+  /**
+   * @param context the thread-safe map which holds the variables
+   */
+  protected WorkContext(Map<String, Object> context) {
+    this.context = context;
   }
 
   public WorkContext(Playbook playbook) {
+    this();
     put(playbook.getVars());
   }
 
   public void put(String key, Object value) {
     if (value != null) {
       context.put(key, value);
+      changed(key);
     }
   }
 
@@ -61,6 +84,7 @@ public class WorkContext {
     for (String var : vars.keySet()) {
       if (!context.containsKey(var)) {
         context.put(var, vars.get(var));
+        changed(var);
       }
     }
   }
@@ -70,19 +94,169 @@ public class WorkContext {
   }
 
   public Set<Map.Entry<String, Object>> getEntrySet() {
-    return context.entrySet();
+    return getMap().entrySet();
   }
 
+  /**
+   * @return a live view of the variables; changes made through it are counted in the versions
+   */
   public Map<String, Object> getMap() {
-    return context;
+    Map<String, Object> map = view;
+    if (map == null) {
+      map = new VersionedMap();
+      view = map;
+    }
+    return map;
   }
 
   public boolean containsKey(String key) {
     return context.containsKey(key);
   }
 
+  /**
+   * Returns the number of times a variable was put in, or removed from, this context
+   *
+   * @param key the variable
+   * @return the version of the variable, 0 when it was never put
+   */
+  public long getVersion(String key) {
+    AtomicLong version = versions.get(key);
+    return version == null ? 0 : version.get();
+  }
+
+  /**
+   * Increments the version of a variable
+   */
+  protected void changed(String key) {
+    AtomicLong version = versions.get(key);
+    if (version == null) {
+      version = versions.computeIfAbsent(key, k -> new AtomicLong());
+    }
+    version.incrementAndGet();
+  }
+
+  Object getMemo(Object owner) {
+    Map<Object, Object> map = memos;
+    return map == null ? null : map.get(owner);
+  }
+
+  void putMemo(Object owner, Object memo) {
+    Map<Object, Object> map = memos;
+    if (map == null) {
+      synchronized (this) {
+        map = memos;
+        if (map == null) {
+          map = new ConcurrentHashMap<>();
+          memos = map;
+        }
+      }
+    }
+    map.put(owner, memo);
+  }
+
+  /**
+   * Returns a report of the status, without an error, for this context. The report is created once and returned to
+   * every work unit which asks, so the built-in tasks do not create a report for each execution.
+   *
+   * @param status the status of the work
+   * @return the shared report
+   */
+  public WorkReport getStatusReport(WorkStatus status) {
+    WorkReport workReport = status == WorkStatus.COMPLETED ? completedReport : failedReport;
+    if (workReport == null) {
+      workReport = new DefaultWorkReport(status, this);
+      if (status == WorkStatus.COMPLETED) {
+        completedReport = workReport;
+      } else {
+        failedReport = workReport;
+      }
+    }
+    return workReport;
+  }
+
   @Override
   public String toString() {
-    return "context=" + context + '}';
+    return "context=" + getMap() + '}';
+  }
+
+  /**
+   * The variables, counting each change in the versions
+   */
+  private class VersionedMap extends AbstractMap<String, Object> {
+
+    private final Set<Map.Entry<String, Object>> entrySet = new AbstractSet<>() {
+      @Override
+      public Iterator<Map.Entry<String, Object>> iterator() {
+        Iterator<Map.Entry<String, Object>> iterator = context.entrySet().iterator();
+        return new Iterator<>() {
+          private String lastKey = null;
+
+          @Override
+          public boolean hasNext() {
+            return iterator.hasNext();
+          }
+
+          @Override
+          public Map.Entry<String, Object> next() {
+            Map.Entry<String, Object> entry = iterator.next();
+            lastKey = entry.getKey();
+            return new AbstractMap.SimpleEntry<>(entry) {
+              @Override
+              public Object setValue(Object value) {
+                VersionedMap.this.put(getKey(), value);
+                return super.setValue(value);
+              }
+            };
+          }
+
+          @Override
+          public void remove() {
+            iterator.remove();
+            changed(lastKey);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return context.size();
+      }
+    };
+
+    @Override
+    public Object get(Object key) {
+      return context.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return context.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+      Object previous = context.put(key, value);
+      changed(key);
+      return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+      Object previous = context.remove(key);
+      if (previous != null) {
+        changed((String) key);
+      }
+      return previous;
+    }
+
+    @Override
+    public int size() {
+      return context.size();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+      return entrySet;
+    }
   }
 }
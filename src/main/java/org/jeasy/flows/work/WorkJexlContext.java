@@ -0,0 +1,75 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.work;
+
+import org.apache.commons.jexl3.JexlContext;
+
+/**
+ * A JexlContext which reads the task variables first and then the work context, without copying either of them.
+ * Variables assigned by a script are written to the work context. Scripts look up variables by name, so in the
+ * {@link SlotWorkContext} of a compiled playbook a name is found in the symbol table and read from its slot.
+ *
+ * @author matt rajkowski
+ */
+public class WorkJexlContext implements JexlContext {
+
+  private final WorkContext workContext;
+  private final TaskContext taskContext;
+  private final boolean hasTaskVars;
+
+  public WorkJexlContext(WorkContext workContext, TaskContext taskContext) {
+    this.workContext = workContext;
+    this.taskContext = taskContext;
+    this.hasTaskVars = taskContext != null && !taskContext.getMap().isEmpty();
+  }
+
+  @Override
+  public Object get(String name) {
+    if (hasTaskVars) {
+      Object value = taskContext.get(name);
+      if (value != null || taskContext.containsKey(name)) {
+        return value;
+      }
+    }
+    return workContext.get(name);
+  }
+
+  @Override
+  public void set(String name, Object value) {
+    workContext.put(name, value);
+  }
+
+  @Override
+  public boolean has(String name) {
+    return (hasTaskVars && taskContext.containsKey(name)) || workContext.containsKey(name);
+  }
+
+  public WorkContext getWorkContext() {
+    return workContext;
+  }
+
+  public TaskContext getTaskContext() {
+    return taskContext;
+  }
+}
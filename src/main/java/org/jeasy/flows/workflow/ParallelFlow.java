@@ -30,6 +30,7 @@ import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.jeasy.flows.engine.DelayScheduler;
 import org.jeasy.flows.work.TaskContext;
 import org.jeasy.flows.work.WorkContext;
 import org.jeasy.flows.work.WorkReport;
@@ -37,7 +38,9 @@ import org.jeasy.flows.work.WorkReport;
 /**
  * A parallel flow executes a set of work units in parallel. A {@link ParallelFlow}
  * requires a {@link ExecutorService} to execute work units in parallel using multiple
- * threads.
+ * threads. The executor can be shared with other flows, such as a pool from the engine's
+ * {@link org.jeasy.flows.engine.ExecutorRegistry}, with a limit on how many of this flow's
+ * work units run at once.
  * 
  * <strong>It is the responsibility of the caller to manage the lifecycle of the
  * executor service.</strong>
@@ -109,6 +112,15 @@ public class ParallelFlow extends AbstractWorkFlow {
              * @return the builder instance
              */
             TimeoutStep with(ExecutorService executorService);
+
+            /**
+             *  Execute work units on virtual threads, one per work unit, which suits
+             *  work that blocks on I/O. Requires Java 21 or later.
+             *
+             * @return the builder instance
+             * @throws UnsupportedOperationException if virtual threads are not available
+             */
+            TimeoutStep withVirtualThreads();
         }
 
         public interface TimeoutStep {
@@ -116,6 +128,23 @@ public class ParallelFlow extends AbstractWorkFlow {
         }
 
         public interface BuildStep {
+            /**
+             * Limit how many work units of this flow run at once on the executor.
+             *
+             * @param maxConcurrency the maximum number of work units running at once, 0 for no limit
+             * @return the builder instance
+             */
+            BuildStep concurrency(int maxConcurrency);
+
+            /**
+             * Submit delayed work units with this scheduler when their delay ends, instead of a scheduler shared by
+             * all parallel flows.
+             *
+             * @param delayScheduler the delay scheduler
+             * @return the builder instance
+             */
+            BuildStep delays(DelayScheduler delayScheduler);
+
             ParallelFlow build();
         }
 
@@ -126,6 +155,8 @@ public class ParallelFlow extends AbstractWorkFlow {
             private ExecutorService executorService;
             private long timeout;
             private TimeUnit unit;
+            private int maxConcurrency;
+            private DelayScheduler delayScheduler;
 
             public BuildSteps() {
                 this.name = UUID.randomUUID().toString();
@@ -156,6 +187,12 @@ public class ParallelFlow extends AbstractWorkFlow {
                 return this;
             }
 
+            @Override
+            public TimeoutStep withVirtualThreads() {
+                this.executorService = ParallelFlowExecutor.virtualThreadExecutor();
+                return this;
+            }
+
             @Override
             public BuildStep timeout(long timeout, TimeUnit unit) {
                 this.timeout = timeout;
@@ -163,11 +200,23 @@ public class ParallelFlow extends AbstractWorkFlow {
                 return this;
             }
 
+            @Override
+            public BuildStep concurrency(int maxConcurrency) {
+                this.maxConcurrency = maxConcurrency;
+                return this;
+            }
+
+            @Override
+            public BuildStep delays(DelayScheduler delayScheduler) {
+                this.delayScheduler = delayScheduler;
+                return this;
+            }
+
             @Override
             public ParallelFlow build() {
                 return new ParallelFlow(
                         this.name, this.works,
-                        new ParallelFlowExecutor(this.executorService, timeout, unit));
+                        new ParallelFlowExecutor(this.executorService, maxConcurrency, timeout, unit, delayScheduler));
             }
         }
 
@@ -24,16 +24,18 @@
 package org.jeasy.flows.workflow;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import org.jeasy.flows.engine.DelayScheduler;
+import org.jeasy.flows.engine.VirtualThreads;
 import org.jeasy.flows.work.DefaultWorkReport;
 import org.jeasy.flows.work.TaskContext;
 import org.jeasy.flows.work.WorkContext;
@@ -47,59 +49,177 @@ public class ParallelFlowExecutor {
     private static final Logger LOGGER = LoggerFactory.getLogger(ParallelFlowExecutor.class.getName());
 
     private final ExecutorService workExecutor;
+    private final int maxConcurrency;
     private final long timeout;
     private final TimeUnit unit;
+    private final DelayScheduler delayScheduler;
 
     public ParallelFlowExecutor(ExecutorService workExecutor, long timeout, TimeUnit unit) {
+        this(workExecutor, 0, timeout, unit);
+    }
+
+    public ParallelFlowExecutor(ExecutorService workExecutor, int maxConcurrency, long timeout, TimeUnit unit) {
+        this(workExecutor, maxConcurrency, timeout, unit, null);
+    }
+
+    /**
+     * @param workExecutor the executor, which can be shared with other flows
+     * @param maxConcurrency the maximum number of work units running at once on the executor, 0 for no limit
+     * @param timeout how long to wait for all of the work units, after which unfinished work units are cancelled
+     * @param unit the timeout unit
+     * @param delayScheduler submits delayed work units when their delay ends, null for a scheduler shared by all
+     *     parallel flows
+     */
+    public ParallelFlowExecutor(ExecutorService workExecutor, int maxConcurrency, long timeout, TimeUnit unit,
+            DelayScheduler delayScheduler) {
         this.workExecutor = workExecutor;
+        this.maxConcurrency = maxConcurrency;
         this.timeout = timeout;
         this.unit = unit;
+        this.delayScheduler = delayScheduler;
+    }
+
+    /**
+     * Create an executor which runs each work unit on a new virtual thread. Requires Java 21 or later.
+     *
+     * @param maxConcurrency the maximum number of work units running at once, 0 for no limit
+     * @param timeout how long to wait for all of the work units
+     * @param unit the timeout unit
+     * @return the parallel flow executor
+     * @throws UnsupportedOperationException if virtual threads are not available
+     */
+    public static ParallelFlowExecutor withVirtualThreads(int maxConcurrency, long timeout, TimeUnit unit) {
+        return new ParallelFlowExecutor(virtualThreadExecutor(), maxConcurrency, timeout, unit);
+    }
+
+    static ExecutorService virtualThreadExecutor() {
+        if (!VirtualThreads.isAvailable()) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+        }
+        return VirtualThreadExecutorHolder.EXECUTOR;
     }
 
     public List<WorkReport> executeInParallel(List<TaskContext> workUnits, WorkContext workContext) {
         // Prepare tasks for parallel submission
-        LOGGER.debug("tasks=" + workUnits.size() + "; timeout=" + timeout);
-        List<Callable<WorkReport>> tasks = new ArrayList<>(workUnits.size());
-        workUnits.forEach(work -> tasks.add(() -> work.execute(workContext, work)));
+        LOGGER.debug("tasks=" + workUnits.size() + "; timeout=" + timeout + "; maxConcurrency=" + maxConcurrency);
+        List<Branch> futures = new ArrayList<>(workUnits.size());
+        workUnits.forEach(work -> futures.add(new Branch(() -> work.execute(workContext, work))));
+
+        // The executor is shared, so the number of work units running at once is limited per flow
+        Executor executor = workExecutor;
+        if (maxConcurrency > 0 && maxConcurrency < workUnits.size()) {
+            executor = new BoundedExecutor(workExecutor, maxConcurrency);
+        }
 
         // Submit work units and wait for results
         LOGGER.trace("Submit work units and wait for results");
-        List<Future<WorkReport>> futures;
-        try {
-            futures = this.workExecutor.invokeAll(tasks);
-        } catch (InterruptedException e) {
-            throw new RuntimeException("The parallel flow was interrupted while executing work units", e);
-        }
-        LOGGER.debug("executor=" + workExecutor.toString());
-        Map<TaskContext, Future<WorkReport>> workToReportFuturesMap = new HashMap<>();
         for (int index = 0; index < workUnits.size(); index++) {
-            workToReportFuturesMap.put(workUnits.get(index), futures.get(index));
+            Branch future = futures.get(index);
+            long delay = workUnits.get(index).getDelay();
+            if (delay > 0) {
+                // Delayed work units are submitted when their delay ends, so they don't hold a pool thread
+                future.schedule(getDelayScheduler(), delay, executor);
+            } else {
+                executor.execute(future);
+            }
         }
+        LOGGER.debug("executor=" + workExecutor.toString());
 
-        // Gather reports
-        List<WorkReport> workReports = new ArrayList<>();
-        for (Map.Entry<TaskContext, Future<WorkReport>> entry : workToReportFuturesMap.entrySet()) {
+        // Gather reports, in the same order as the work units; the timeout is a deadline for the whole flow
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<WorkReport> workReports = new ArrayList<>(workUnits.size());
+        for (int index = 0; index < workUnits.size(); index++) {
+            TaskContext workUnit = workUnits.get(index);
+            Branch future = futures.get(index);
             try {
                 WorkReport workReport;
                 try {
-                    workReport = entry.getValue().get(timeout, unit);
+                    workReport = future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
                 } catch (TimeoutException e) {
-                    workReport = new DefaultWorkReport(WorkStatus.FAILED, workContext);
+                    // Interrupt the straggler so it stops holding a pool thread, or drop it if it is still delayed
+                    future.cancel(true);
+                    String message = String.format("Work unit %d '%s' did not finish within %d %s",
+                            index, getBranchName(workUnit), timeout, unit);
+                    LOGGER.warn(message);
+                    workReport = new DefaultWorkReport(WorkStatus.FAILED, workContext, new TimeoutException(message));
                 }
                 workReports.add(workReport);
             } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
                 String message = String.format(
                         "The parallel flow was interrupted while waiting for the result of work unit '%s'",
-                        entry.getKey().getWork().getName());
+                        getBranchName(workUnit));
                 throw new RuntimeException(message, e);
             } catch (ExecutionException e) {
-                String message = String.format("Unable to execute work unit '%s'", entry.getKey().getWork().getName());
+                // The flow fails, so the other work units stop holding pool threads
+                futures.forEach(f -> f.cancel(true));
+                String message = String.format("Unable to execute work unit '%s'", getBranchName(workUnit));
                 throw new RuntimeException(message, e);
             }
         }
-
-        LOGGER.debug("Shutting down workExecutor");
-        workExecutor.shutdown();
         return workReports;
     }
+
+    private DelayScheduler getDelayScheduler() {
+        if (delayScheduler != null) {
+            return delayScheduler;
+        }
+        return DelaySchedulerHolder.SCHEDULER;
+    }
+
+    private static String getBranchName(TaskContext workUnit) {
+        if (workUnit.getName() != null) {
+            return workUnit.getName();
+        }
+        return workUnit.getWork().getName();
+    }
+
+    // Created on first use; a virtual thread per task executor holds no idle threads, so it is never shutdown
+    private static class VirtualThreadExecutorHolder {
+        static final ExecutorService EXECUTOR = VirtualThreads.newExecutor("parallel");
+    }
+
+    // Created on first use by flows built without a scheduler; its daemon thread is never shutdown
+    private static class DelaySchedulerHolder {
+        static final DelayScheduler SCHEDULER = new DelayScheduler();
+    }
+
+    /**
+     * A work unit which can be submitted after a delay; cancelling it also cancels the pending delay.
+     */
+    private static class Branch extends FutureTask<WorkReport> {
+
+        private volatile DelayScheduler.Timeout delay;
+
+        Branch(Callable<WorkReport> callable) {
+            super(callable);
+        }
+
+        void schedule(DelayScheduler delayScheduler, long delayMillis, Executor executor) {
+            try {
+                delay = delayScheduler.schedule(delayMillis, TimeUnit.MILLISECONDS, () -> {
+                    // Runs on the scheduler thread, which only hands the work unit to the executor
+                    if (!isDone()) {
+                        try {
+                            executor.execute(this);
+                        } catch (RejectedExecutionException e) {
+                            setException(e);
+                        }
+                    }
+                });
+            } catch (IllegalStateException e) {
+                // The scheduler is shutdown
+                setException(e);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            DelayScheduler.Timeout pending = delay;
+            if (pending != null) {
+                pending.cancel();
+            }
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
 }
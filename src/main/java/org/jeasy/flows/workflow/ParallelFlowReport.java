@@ -26,6 +26,7 @@ package org.jeasy.flows.workflow;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.jeasy.flows.work.WorkContext;
 import org.jeasy.flows.work.WorkReport;
@@ -39,6 +40,8 @@ import org.jeasy.flows.work.WorkStatus;
 public class ParallelFlowReport implements WorkReport {
 
     private final List<WorkReport> reports;
+    // Found on first use, and again after the reports change
+    private volatile PartialContexts partialContexts = null;
 
     /**
      * Create a new {@link ParallelFlowReport}.
@@ -65,12 +68,23 @@ public class ParallelFlowReport implements WorkReport {
         return reports;
     }
 
+    /**
+     * Stream the partial reports, in the order of the work units.
+     *
+     * @return partial reports
+     */
+    public Stream<WorkReport> reports() {
+        return reports.stream();
+    }
+
     void add(WorkReport workReport) {
         reports.add(workReport);
+        partialContexts = null;
     }
 
     void addAll(List<WorkReport> workReports) {
         reports.addAll(workReports);
+        partialContexts = null;
     }
 
     /**
@@ -114,18 +128,68 @@ public class ParallelFlowReport implements WorkReport {
      * The parallel flow context is the union of all partial contexts. In a parallel
      * flow, each work unit should have its own unique keys to avoid key overriding
      * when merging partial contexts.
+     *
+     * Each call returns a new context with the current entries of the partial contexts,
+     * copied in the order of the reports. A context shared by several work units, as in
+     * a parallel flow, is copied once; the distinct contexts are found on the first call
+     * and again after the reports change.
      * 
      * @return the union of all partial contexts
      */
     @Override
     public WorkContext getWorkContext() {
-        WorkContext workContext = new WorkContext();
-        for (WorkReport report : reports) {
-            WorkContext partialContext = report.getWorkContext();
+        PartialContexts current = partialContexts;
+        if (current == null || !current.isOf(reports)) {
+            current = new PartialContexts(reports);
+            partialContexts = current;
+        }
+        WorkContext merged = new WorkContext();
+        for (WorkContext partialContext : current.distinctContexts) {
             for (Map.Entry<String, Object> entry : partialContext.getEntrySet()) {
-                workContext.put(entry.getKey(), entry.getValue());
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * The partial context of each report, and the distinct ones among them
+     */
+    private static final class PartialContexts {
+
+        private final WorkContext[] reportContexts;
+        private final List<WorkContext> distinctContexts = new ArrayList<>(1);
+
+        private PartialContexts(List<WorkReport> reports) {
+            reportContexts = new WorkContext[reports.size()];
+            for (int i = 0; i < reportContexts.length; i++) {
+                WorkContext partialContext = reports.get(i).getWorkContext();
+                reportContexts[i] = partialContext;
+                if (partialContext != null && !containsInstance(distinctContexts, partialContext)) {
+                    distinctContexts.add(partialContext);
+                }
+            }
+        }
+
+        private boolean isOf(List<WorkReport> reports) {
+            if (reports.size() != reportContexts.length) {
+                return false;
+            }
+            for (int i = 0; i < reportContexts.length; i++) {
+                if (reports.get(i).getWorkContext() != reportContexts[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean containsInstance(List<WorkContext> workContexts, WorkContext workContext) {
+        for (WorkContext existing : workContexts) {
+            if (existing == workContext) {
+                return true;
             }
         }
-        return workContext;
+        return false;
     }
 }
@@ -25,8 +25,6 @@ package org.jeasy.flows.workflow;
 
 import java.util.UUID;
 
-import org.jeasy.flows.work.DefaultWorkReport;
-import org.jeasy.flows.work.Expression;
 import org.jeasy.flows.work.NoOpTask;
 import org.jeasy.flows.work.TaskContext;
 import org.jeasy.flows.work.WorkContext;
@@ -43,34 +41,48 @@ public class RepeatFlow extends AbstractWorkFlow {
 
     private final TaskContext work;
     private final WorkReportPredicate predicate;
+    private final long times;
 
     RepeatFlow(String name, TaskContext work, WorkReportPredicate predicate) {
+        this(name, work, predicate, 0);
+    }
+
+    RepeatFlow(String name, TaskContext work, WorkReportPredicate predicate, long times) {
         super(name);
         this.work = work;
         this.predicate = predicate;
+        this.times = times;
     }
 
     /**
      * {@inheritDoc}
      */
     public WorkReport execute(WorkContext workContext) {
-        WorkReport workReport;
-        do {
-            workReport = work.execute(workContext, work);
-        } while (predicate.apply(workReport));
-        return workReport;
+        return repeat(workContext);
     }
 
     @Override
     public WorkReport execute(WorkContext workContext, TaskContext taskContext2) {
-        WorkReport workReport;
         // Determine if there is a 'when' condition that must be satisfied
         if (work.getWhen() != null) {
-            boolean result = Expression.validate(workContext, work, work.getWhen());
+            boolean result = work.evaluateWhen(workContext);
             if (!result) {
-                return new DefaultWorkReport(WorkStatus.FAILED, workContext);
+                return workContext.getStatusReport(WorkStatus.FAILED);
             }
         }
+        return repeat(workContext);
+    }
+
+    private WorkReport repeat(WorkContext workContext) {
+        WorkReport workReport;
+        if (times > 0) {
+            // Count locally so the same flow can be executed again, and concurrently
+            long count = 0;
+            do {
+                workReport = work.execute(workContext, work);
+            } while (++count < times);
+            return workReport;
+        }
         do {
             workReport = work.execute(workContext, work);
         } while (predicate.apply(workReport));
@@ -110,6 +122,7 @@ public class RepeatFlow extends AbstractWorkFlow {
             private String name;
             private TaskContext work;
             private WorkReportPredicate predicate;
+            private long times;
 
             BuildSteps() {
                 this.name = UUID.randomUUID().toString();
@@ -132,18 +145,20 @@ public class RepeatFlow extends AbstractWorkFlow {
             @Override
             public BuildStep until(WorkReportPredicate predicate) {
                 this.predicate = predicate;
+                this.times = 0;
                 return this;
             }
 
             @Override
             public BuildStep times(long times) {
                 until(WorkReportPredicate.TimesPredicate.times(times));
+                this.times = times;
                 return this;
             }
 
             @Override
             public RepeatFlow build() {
-                return new RepeatFlow(name, work, predicate);
+                return new RepeatFlow(name, work, predicate, times);
             }
         }
 
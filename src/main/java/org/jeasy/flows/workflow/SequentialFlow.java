@@ -28,8 +28,10 @@ import static org.jeasy.flows.work.WorkStatus.FAILED;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 
-import org.jeasy.flows.work.Expression;
+import org.jeasy.flows.metrics.TaskTimer;
+import org.jeasy.flows.work.DefaultWorkReport;
 import org.jeasy.flows.work.TaskContext;
 import org.jeasy.flows.work.Work;
 import org.jeasy.flows.work.WorkContext;
@@ -40,7 +42,11 @@ import org.slf4j.LoggerFactory;
 /**
  * A sequential flow executes a set of work units in sequence.
  *
- * If a unit of work fails, next work units in the pipeline will be skipped.
+ * If a unit of work fails, next work units in the pipeline will be skipped. When the running
+ * thread is interrupted, such as by cancelling an asynchronous run, the flow fails before
+ * the next work unit. A work unit with a delay is run after the delay; the flow waits for it
+ * here, or an {@link Execution} can be used to wait elsewhere. An execution steps through
+ * nested sequential flows too, so the delays within them are waited for the same way.
  *
  * @author Mahmoud Ben Hassine (mahmoud.benhassine@icloud.com)
  */
@@ -49,10 +55,19 @@ public class SequentialFlow extends AbstractWorkFlow {
     private static final Logger LOGGER = LoggerFactory.getLogger(SequentialFlow.class.getName());
 
     private final List<TaskContext> taskContexts = new ArrayList<>();
+    // Whether this flow and each of its work units is a playbook block, determined once instead of on every run
+    private final boolean block;
+    private final boolean[] blockSteps;
 
     SequentialFlow(String name, List<TaskContext> taskContexts) {
         super(name);
         this.taskContexts.addAll(taskContexts);
+        this.block = "block".equals(name);
+        this.blockSteps = new boolean[this.taskContexts.size()];
+        for (int i = 0; i < blockSteps.length; i++) {
+            Work work = this.taskContexts.get(i).getWork();
+            blockSteps[i] = work instanceof SequentialFlow && ((SequentialFlow) work).block;
+        }
     }
 
     /**
@@ -65,45 +80,197 @@ public class SequentialFlow extends AbstractWorkFlow {
 
     @Override
     public WorkReport execute(WorkContext workContext, TaskContext taskContext2) {
-        WorkReport workReport = null;
-        for (TaskContext taskContext : taskContexts) {
+        Execution execution = newExecution(workContext);
+        while (execution.hasNext()) {
+            long delay = execution.takeDelay();
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    // The next step sees the interrupt and fails the flow
+                    Thread.currentThread().interrupt();
+                }
+            }
+            execution.next();
+        }
+        return execution.getReport();
+    }
+
+    /**
+     * Start a run of this flow which is driven a work unit at a time, so that the caller
+     * can wait for a work unit's delay without holding a thread.
+     *
+     * @param workContext context in which the flow will be run
+     * @return the execution, positioned before the first work unit
+     */
+    public Execution newExecution(WorkContext workContext) {
+        return new Execution(workContext, 0);
+    }
+
+    /**
+     * Start a run of this flow part way through, such as to resume a run which was interrupted.
+     *
+     * @param workContext context in which the flow will be run
+     * @param fromIndex the index of the first work unit to run
+     * @return the execution, positioned before the work unit
+     */
+    public Execution newExecution(WorkContext workContext, int fromIndex) {
+        return new Execution(workContext, fromIndex);
+    }
+
+    /**
+     * A single run of a {@link SequentialFlow}. An execution is used by one thread at a time,
+     * which may change between work units. A work unit which is a sequential flow, such as a
+     * playbook block, is run a work unit at a time by a nested execution; its index only
+     * advances when the nested flow has finished.
+     */
+    public class Execution {
+
+        private final WorkContext workContext;
+        private int index;
+        private boolean stopped = false;
+        private boolean waited = false;
+        private WorkReport workReport = null;
+        // The running nested flow and when it was started, for the timer of its work unit
+        private Execution nested = null;
+        private long nestedStartTime;
+
+        private Execution(WorkContext workContext, int index) {
+            this.workContext = workContext;
+            this.index = Math.max(0, index);
+        }
+
+        public WorkContext getWorkContext() {
+            return workContext;
+        }
+
+        /**
+         * @return the index of the next work unit
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public boolean hasNext() {
+            return nested != null || (!stopped && index < taskContexts.size());
+        }
+
+        /**
+         * Get the delay to wait before the next work unit; once taken, the delay is not
+         * returned again.
+         *
+         * @return the delay in milliseconds, or 0 to run the next work unit now
+         */
+        public long takeDelay() {
+            if (nested != null) {
+                return nested.takeDelay();
+            }
+            if (waited || !hasNext()) {
+                return 0;
+            }
+            waited = true;
+            return taskContexts.get(index).getDelay();
+        }
+
+        /**
+         * Run the next work unit.
+         */
+        public void next() {
+            if (nested != null) {
+                nextNested();
+                return;
+            }
+            int step = index++;
+            TaskContext taskContext = taskContexts.get(step);
+            waited = false;
+            if (Thread.currentThread().isInterrupted()) {
+                LOGGER.warn("Workflow '{}' was interrupted, skipping subsequent work units", getName());
+                workReport = new DefaultWorkReport(FAILED, workContext,
+                        new CancellationException("Workflow '" + getName() + "' was interrupted"));
+                stopped = true;
+                return;
+            }
             if (taskContext.getWork() == null) {
                 LOGGER.error("Task has no Work object!");
-                continue;
+                return;
             }
             if (taskContext.getWork().getClass() == null) {
                 LOGGER.error("Task has no Work class!");
-                continue;
+                return;
             }
             // Determine if there is a 'when' condition that must be satisfied
-            boolean canExecute = true;
             if (taskContext.getWhen() != null) {
-                boolean result = Expression.validate(workContext, taskContext, taskContext.getWhen());
+                boolean result = taskContext.evaluateWhen(workContext);
                 if (!result) {
                     // If within a block, then break;
-                    if ("block".equals(getName())) {
-                        break;
+                    if (block) {
+                        stopped = true;
+                        return;
                     }
                     // Else skip just this task
-                    canExecute = false;
-                    LOGGER.warn("Skipping " + taskContext.getWork().getClass().getSimpleName() + ", condition not met: "
-                            + taskContext.getWhen());
+                    LOGGER.debug("Skipping {}, condition not met: {}",
+                            taskContext.getWork().getClass().getSimpleName(), taskContext.getWhen());
+                    return;
                 }
             }
-            if (canExecute) {
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Executing work: " + taskContext.getWork().getClass().getSimpleName());
+            if (taskContext.getWork() instanceof SequentialFlow) {
+                // Step through the nested flow, this work unit completes with its last work unit
+                index = step;
+                nested = ((SequentialFlow) taskContext.getWork()).newExecution(workContext);
+                nestedStartTime = System.nanoTime();
+                if (!nested.hasNext()) {
+                    completeNested();
                 }
-                workReport = taskContext.getWork().execute(workContext, taskContext);
-                if (workReport != null && FAILED.equals(workReport.getStatus())
-                        && !"block".equals(taskContext.getWork().getName())) {
-                    LOGGER.warn("Work unit '{}' has failed, skipping subsequent work units",
-                            taskContext.getWork().getName());
-                    break;
+                return;
+            }
+            completed(step, taskContext.execute(workContext, taskContext));
+        }
+
+        private void nextNested() {
+            try {
+                nested.next();
+            } catch (RuntimeException | Error e) {
+                TaskTimer timer = taskContexts.get(index).getTimer();
+                if (timer != null) {
+                    timer.record(System.nanoTime() - nestedStartTime, true);
                 }
+                nested = null;
+                index++;
+                throw e;
+            }
+            if (!nested.hasNext()) {
+                completeNested();
+            }
+        }
+
+        private void completeNested() {
+            WorkReport nestedReport = nested.getReport();
+            TaskTimer timer = taskContexts.get(index).getTimer();
+            if (timer != null) {
+                timer.record(System.nanoTime() - nestedStartTime,
+                        nestedReport != null && FAILED.equals(nestedReport.getStatus()));
             }
+            nested = null;
+            waited = false;
+            completed(index++, nestedReport);
+        }
+
+        private void completed(int step, WorkReport report) {
+            workReport = report;
+            if (workReport != null && FAILED.equals(workReport.getStatus()) && !blockSteps[step]) {
+                TaskContext taskContext = taskContexts.get(step);
+                LOGGER.warn("Work unit '{}' has failed, skipping subsequent work units",
+                        taskContext.getName() != null ? taskContext.getName() : taskContext.getWork().getName());
+                stopped = true;
+            }
+        }
+
+        /**
+         * @return the report of the last work unit which was run, or null if none was run
+         */
+        public WorkReport getReport() {
+            return workReport;
         }
-        return workReport;
     }
 
     public static class Builder {
@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.engine;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class DelaySchedulerTest {
+
+  @Test
+  void testNeverRunsEarly() throws Exception {
+    DelayScheduler delayScheduler = new DelayScheduler(5, TimeUnit.MILLISECONDS, 8);
+    try {
+      // Longer than a turn of the wheel, shorter, and already due
+      long[] delays = {100, 23, 0};
+      CountDownLatch latch = new CountDownLatch(delays.length);
+      AtomicInteger early = new AtomicInteger();
+      for (long delay : delays) {
+        long startTime = System.nanoTime();
+        delayScheduler.schedule(delay, TimeUnit.MILLISECONDS, () -> {
+          if (System.nanoTime() - startTime < TimeUnit.MILLISECONDS.toNanos(delay)) {
+            early.incrementAndGet();
+          }
+          latch.countDown();
+        });
+      }
+      Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+      Assertions.assertEquals(0, early.get());
+      Assertions.assertEquals(0, delayScheduler.getPendingCount());
+    } finally {
+      delayScheduler.shutdown();
+    }
+  }
+
+  @Test
+  void testCancel() throws Exception {
+    DelayScheduler delayScheduler = new DelayScheduler();
+    try {
+      AtomicInteger runs = new AtomicInteger();
+      DelayScheduler.Timeout timeout = delayScheduler.schedule(50, TimeUnit.MILLISECONDS, runs::incrementAndGet);
+      CountDownLatch latch = new CountDownLatch(1);
+      delayScheduler.schedule(100, TimeUnit.MILLISECONDS, latch::countDown);
+      Assertions.assertEquals(2, delayScheduler.getPendingCount());
+      Assertions.assertTrue(timeout.cancel());
+      Assertions.assertFalse(timeout.cancel());
+      Assertions.assertTrue(timeout.isCancelled());
+      Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS));
+      Assertions.assertEquals(0, runs.get());
+      Assertions.assertEquals(0, delayScheduler.getPendingCount());
+    } finally {
+      delayScheduler.shutdown();
+    }
+  }
+
+  @Test
+  void testManyPendingDelays() throws Exception {
+    DelayScheduler delayScheduler = new DelayScheduler();
+    try {
+      int count = 200_000;
+      CountDownLatch latch = new CountDownLatch(count);
+      for (int i = 0; i < count; i++) {
+        delayScheduler.schedule(200 + (i % 300), TimeUnit.MILLISECONDS, latch::countDown);
+      }
+      Assertions.assertTrue(delayScheduler.getPendingCount() > 0);
+      Assertions.assertTrue(latch.await(30, TimeUnit.SECONDS), "Remaining: " + latch.getCount());
+      Assertions.assertEquals(0, delayScheduler.getPendingCount());
+    } finally {
+      delayScheduler.shutdown();
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.engine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ExecutorRegistryTest {
+
+  @Test
+  void testNamedPools() throws Exception {
+    ExecutorRegistry executorRegistry = new ExecutorRegistry(2);
+    ExecutorService email = executorRegistry.register("email", 4);
+    Assertions.assertSame(email, executorRegistry.register("email", 4));
+    Assertions.assertSame(email, executorRegistry.getExecutor("email"));
+
+    // Unknown names use the default pool
+    ExecutorService defaultExecutor = executorRegistry.getDefaultExecutor();
+    Assertions.assertSame(defaultExecutor, executorRegistry.getExecutor("unknown"));
+    Assertions.assertSame(defaultExecutor, executorRegistry.getExecutor(null));
+    Assertions.assertTrue(executorRegistry.getNames().contains(ExecutorRegistry.DEFAULT_POOL));
+
+    Assertions.assertEquals("done", email.submit(() -> "done").get(1, TimeUnit.SECONDS));
+
+    executorRegistry.shutdown();
+    Assertions.assertTrue(executorRegistry.awaitTermination(1, TimeUnit.SECONDS));
+    Assertions.assertTrue(email.isShutdown());
+    Assertions.assertThrows(IllegalStateException.class, () -> executorRegistry.register("history", 1));
+  }
+
+  @Test
+  void testEngineOwnsThePools() {
+    ExecutorRegistry executorRegistry = new ExecutorRegistry(1);
+    WorkFlowEngine workFlowEngine = WorkFlowEngineBuilder.aNewWorkFlowEngine().with(executorRegistry).build();
+    Assertions.assertSame(executorRegistry, workFlowEngine.getExecutorRegistry());
+    ExecutorService executorService = workFlowEngine.getExecutorRegistry().getDefaultExecutor();
+    workFlowEngine.shutdown();
+    Assertions.assertTrue(executorService.isShutdown());
+  }
+
+  @Test
+  void testVirtualPool() throws Exception {
+    ExecutorRegistry executorRegistry = new ExecutorRegistry(2, ExecutorRegistry.ThreadMode.VIRTUAL);
+    Assertions.assertEquals(ExecutorRegistry.ThreadMode.VIRTUAL, executorRegistry.getThreadMode());
+    // Falls back to platform threads when virtual threads are not available
+    ExecutorService virtual = executorRegistry.getExecutor(ExecutorRegistry.VIRTUAL_POOL);
+    Assertions.assertSame(virtual, executorRegistry.registerVirtual(ExecutorRegistry.VIRTUAL_POOL));
+    Boolean isVirtual = virtual.submit(() -> Thread.currentThread().getName().startsWith("easy-flows-virtual-"))
+        .get(1, TimeUnit.SECONDS);
+    Assertions.assertTrue(isVirtual);
+    Assertions.assertEquals("done", executorRegistry.getDefaultExecutor().submit(() -> "done").get(1, TimeUnit.SECONDS));
+    executorRegistry.shutdown();
+  }
+}
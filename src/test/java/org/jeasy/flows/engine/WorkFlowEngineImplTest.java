@@ -30,11 +30,16 @@ import static org.jeasy.flows.workflow.ParallelFlow.Builder.aNewParallelFlow;
 import static org.jeasy.flows.workflow.RepeatFlow.Builder.aNewRepeatFlow;
 import static org.jeasy.flows.workflow.SequentialFlow.Builder.aNewSequentialFlow;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jeasy.flows.work.DefaultWorkReport;
 import org.jeasy.flows.work.TaskContext;
@@ -183,6 +188,152 @@ class WorkFlowEngineImplTest {
         Assertions.assertEquals(WorkStatus.COMPLETED, workReport.getStatus());
     }
 
+    @Test
+    void runAsync() throws Exception {
+        ExecutorService asyncExecutor = Executors.newSingleThreadExecutor();
+        WorkFlowEngine workFlowEngine = aNewWorkFlowEngine().withAsyncExecutor(asyncExecutor).build();
+        TaskContext countWords = new TaskContext(new WordCountWork(), "hello async world");
+        countWords.put("partition", 1);
+        WorkFlow workflow = aNewSequentialFlow()
+                .execute(countWords)
+                .then(new AggregateWordCountsWork())
+                .build();
+
+        WorkContext workContext = new WorkContext();
+        CompletableFuture<Integer> totalCount = workFlowEngine.runAsync(workflow, workContext)
+                .thenApply(workReport -> (Integer) workReport.getWorkContext().get("totalCount"));
+        Assertions.assertEquals(3, totalCount.get(5, TimeUnit.SECONDS));
+        workFlowEngine.shutdown();
+        Assertions.assertTrue(asyncExecutor.isShutdown());
+    }
+
+    @Test
+    void cancelRunAsync() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger completedUnits = new AtomicInteger();
+        Work blockingWork = new Work() {
+            @Override
+            public String getName() {
+                return "blocking work";
+            }
+
+            @Override
+            public WorkReport execute(WorkContext workContext, TaskContext taskContext) {
+                started.countDown();
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    // Keep the interrupt for the flow to see
+                    Thread.currentThread().interrupt();
+                }
+                completedUnits.incrementAndGet();
+                return new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+            }
+        };
+        WorkFlowEngine workFlowEngine = aNewWorkFlowEngine().build();
+        WorkFlow workflow = aNewSequentialFlow()
+                .execute(new TaskContext(blockingWork))
+                .then(new TaskContext(blockingWork))
+                .build();
+
+        CompletableFuture<WorkReport> future = workFlowEngine.runAsync(workflow, new WorkContext());
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        long startTime = System.nanoTime();
+        Assertions.assertTrue(future.cancel(true));
+        Assertions.assertTrue(future.isCancelled());
+
+        // The interrupted run stops before the second work unit
+        workFlowEngine.shutdown();
+        Assertions.assertTrue(workFlowEngine.getExecutorRegistry().awaitTermination(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(5));
+        Assertions.assertEquals(1, completedUnits.get());
+    }
+
+    @Test
+    void runAsyncReleasesThreadDuringDelay() throws Exception {
+        // One thread runs every workflow, so the delays can only overlap if the thread is released
+        ExecutorService asyncExecutor = Executors.newSingleThreadExecutor();
+        WorkFlowEngine workFlowEngine = aNewWorkFlowEngine().withAsyncExecutor(asyncExecutor).build();
+        List<CompletableFuture<WorkReport>> futures = new ArrayList<>();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            TaskContext delayed = new TaskContext(new PrintMessageWork(), "delayed " + i);
+            delayed.setDelay(300);
+            WorkFlow workflow = aNewSequentialFlow()
+                    .execute(new TaskContext(new PrintMessageWork(), "before " + i))
+                    .then(delayed)
+                    .build();
+            futures.add(workFlowEngine.runAsync(workflow, new WorkContext()));
+        }
+        for (CompletableFuture<WorkReport> future : futures) {
+            Assertions.assertEquals(WorkStatus.COMPLETED, future.get(5, TimeUnit.SECONDS).getStatus());
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        Assertions.assertTrue(elapsedMillis >= 300, "Elapsed: " + elapsedMillis);
+        Assertions.assertTrue(elapsedMillis < 1500, "Elapsed: " + elapsedMillis);
+
+        // Cancelling while waiting for a delay stops the run
+        TaskContext delayed = new TaskContext(new WordCountWork(), "not counted");
+        delayed.setDelay(10_000);
+        delayed.put("partition", 1);
+        WorkContext workContext = new WorkContext();
+        CompletableFuture<WorkReport> future = workFlowEngine.runAsync(
+                aNewSequentialFlow().execute(delayed).build(), workContext);
+        Thread.sleep(50);
+        Assertions.assertTrue(future.cancel(true));
+        Assertions.assertEquals(0, workFlowEngine.getExecutorRegistry().getDelayScheduler().getPendingCount());
+        Assertions.assertNull(workContext.get("wordCountInPartition1"));
+        workFlowEngine.shutdown();
+    }
+
+    @Test
+    void runAsyncReleasesThreadDuringNestedDelay() throws Exception {
+        // The delays are within blocks, which are stepped through like the workflow
+        ExecutorService asyncExecutor = Executors.newSingleThreadExecutor();
+        WorkFlowEngine workFlowEngine = aNewWorkFlowEngine().withAsyncExecutor(asyncExecutor).build();
+        List<WorkContext> workContexts = new ArrayList<>();
+        List<CompletableFuture<WorkReport>> futures = new ArrayList<>();
+        long startTime = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            TaskContext delayed = new TaskContext(new WordCountWork(), "delayed " + i);
+            delayed.setDelay(300);
+            delayed.put("partition", i);
+            SequentialFlow block = aNewSequentialFlow()
+                    .named("block")
+                    .execute(new TaskContext(new PrintMessageWork(), "before " + i))
+                    .then(delayed)
+                    .build();
+            WorkFlow workflow = aNewSequentialFlow()
+                    .execute(new TaskContext(block))
+                    .then(new TaskContext(new PrintMessageWork(), "after " + i))
+                    .build();
+            WorkContext workContext = new WorkContext();
+            workContexts.add(workContext);
+            futures.add(workFlowEngine.runAsync(workflow, workContext));
+        }
+        for (CompletableFuture<WorkReport> future : futures) {
+            Assertions.assertEquals(WorkStatus.COMPLETED, future.get(5, TimeUnit.SECONDS).getStatus());
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        Assertions.assertTrue(elapsedMillis >= 300, "Elapsed: " + elapsedMillis);
+        Assertions.assertTrue(elapsedMillis < 1500, "Elapsed: " + elapsedMillis);
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertNotNull(workContexts.get(i).get("wordCountInPartition" + i));
+        }
+        workFlowEngine.shutdown();
+    }
+
+    @Test
+    void runWaitsForDelay() {
+        TaskContext delayed = new TaskContext(new PrintMessageWork(), "delayed");
+        delayed.setDelay(100);
+        WorkFlow workflow = aNewSequentialFlow().execute(delayed).build();
+        long startTime = System.nanoTime();
+        WorkReport workReport = aNewWorkFlowEngine().build().run(workflow, new WorkContext());
+        Assertions.assertEquals(WorkStatus.COMPLETED, workReport.getStatus());
+        Assertions.assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
     static class PrintMessageWork implements Work {
 
         public static final String MESSAGE_VAR = "totalCount";
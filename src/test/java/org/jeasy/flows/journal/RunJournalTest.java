@@ -0,0 +1,170 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.journal;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.jeasy.flows.engine.WorkFlowEngine;
+import org.jeasy.flows.engine.WorkFlowEngineBuilder;
+import org.jeasy.flows.playbook.Playbook;
+import org.jeasy.flows.playbook.PlaybookManager;
+import org.jeasy.flows.reader.YamlReader;
+import org.jeasy.flows.work.WorkContext;
+import org.jeasy.flows.work.WorkReport;
+import org.jeasy.flows.work.WorkStatus;
+import org.jeasy.flows.workflow.SequentialFlow;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RunJournalTest {
+
+  private static final String YAML = """
+      id: journal-workflow
+      vars:
+        name: journal
+      workflow:
+        - set: first = 1
+        - set: second = 2
+        - set: third = 3
+      """;
+
+  static class Untrusted implements Serializable {
+  }
+
+  private static Playbook playbook;
+  private static SequentialFlow workFlow;
+
+  @BeforeAll
+  static void addPlaybook() {
+    PlaybookManager.register(new HashMap<>());
+    playbook = YamlReader.readPlaybook(YAML);
+    PlaybookManager.add(playbook);
+    workFlow = PlaybookManager.getCompiledPlaybook(playbook.getId()).getWorkFlow();
+  }
+
+  @Test
+  void testFinishedRunsAreNotUnfinished(@TempDir Path tempDir) throws IOException {
+    Path path = tempDir.resolve("runs.journal");
+    WorkFlowEngine engine = WorkFlowEngineBuilder.aNewWorkFlowEngine()
+        .with(new RunJournal(path, RunJournal.Durability.ASYNC))
+        .build();
+    WorkReport workReport = engine.run(workFlow, new WorkContext(playbook));
+    Assertions.assertEquals(WorkStatus.COMPLETED, workReport.getStatus());
+    WorkReport asyncReport = engine.runAsync(workFlow, new WorkContext(playbook)).join();
+    Assertions.assertEquals(WorkStatus.COMPLETED, asyncReport.getStatus());
+    engine.shutdown();
+
+    Assertions.assertTrue(Files.size(path) > 0);
+    Assertions.assertTrue(RunJournal.readUnfinishedRuns(path).isEmpty());
+  }
+
+  @Test
+  void testResumeFromLastCompletedStep(@TempDir Path tempDir) throws IOException {
+    Path path = tempDir.resolve("runs.journal");
+
+    // Record a run which stops after its first step, as if the application had stopped
+    try (RunJournal journal = new RunJournal(path)) {
+      WorkContext workContext = new WorkContext(playbook);
+      workContext.put("count", 7);
+      workContext.put("temporary", "removed later");
+      RunJournal.Run run = journal.start(playbook.getId(), workContext);
+      workContext.put("first", "1");
+      workContext.put("total", 12345678901L);
+      workContext.put("ratio", 0.5);
+      workContext.put("enabled", true);
+      workContext.getMap().remove("temporary");
+      run.stepCompleted(0, workContext);
+    }
+
+    List<UnfinishedRun> unfinishedRuns = RunJournal.readUnfinishedRuns(path);
+    Assertions.assertEquals(1, unfinishedRuns.size());
+    UnfinishedRun unfinishedRun = unfinishedRuns.get(0);
+    Assertions.assertEquals(playbook.getId(), unfinishedRun.getWorkflowName());
+    Assertions.assertEquals(1, unfinishedRun.getNextStep());
+    WorkContext recovered = unfinishedRun.getWorkContext();
+    Assertions.assertEquals("journal", recovered.get("name"));
+    Assertions.assertEquals(7, recovered.get("count"));
+    Assertions.assertEquals("1", recovered.get("first"));
+    Assertions.assertEquals(12345678901L, recovered.get("total"));
+    Assertions.assertEquals(0.5, recovered.get("ratio"));
+    Assertions.assertEquals(true, recovered.get("enabled"));
+    Assertions.assertFalse(recovered.containsKey("temporary"));
+
+    // The remaining steps run, and the run is finished in the journal
+    WorkFlowEngine engine = WorkFlowEngineBuilder.aNewWorkFlowEngine().with(new RunJournal(path)).build();
+    WorkReport workReport = engine.resume(workFlow, unfinishedRun);
+    engine.shutdown();
+    Assertions.assertEquals(WorkStatus.COMPLETED, workReport.getStatus());
+    Assertions.assertEquals("1", workReport.getWorkContext().get("first"));
+    Assertions.assertEquals("2", workReport.getWorkContext().get("second"));
+    Assertions.assertEquals("3", workReport.getWorkContext().get("third"));
+    Assertions.assertTrue(RunJournal.readUnfinishedRuns(path).isEmpty());
+  }
+
+  @Test
+  void testTornRecordIsTruncated(@TempDir Path tempDir) throws IOException {
+    Path path = tempDir.resolve("runs.journal");
+    try (RunJournal journal = new RunJournal(path)) {
+      journal.start(playbook.getId(), new WorkContext(playbook));
+    }
+    long validLength = Files.size(path);
+
+    // A record cut short by a crash
+    Files.write(path, new byte[] {0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+    Assertions.assertEquals(1, RunJournal.readUnfinishedRuns(path).size());
+
+    try (RunJournal journal = new RunJournal(path)) {
+      Assertions.assertEquals(validLength, Files.size(path));
+      journal.start(playbook.getId(), new WorkContext(playbook)).finish(null);
+    }
+    Assertions.assertEquals(1, RunJournal.readUnfinishedRuns(path).size());
+  }
+
+  @Test
+  void testUnreadableValueSkipsOnlyItsRun(@TempDir Path tempDir) throws IOException {
+    Path path = tempDir.resolve("runs.journal");
+    try (RunJournal journal = new RunJournal(path)) {
+      WorkContext untrusted = new WorkContext(playbook);
+      untrusted.put("object", new Untrusted());
+      journal.start(playbook.getId(), untrusted);
+      WorkContext trusted = new WorkContext(playbook);
+      trusted.put("items", new ArrayList<>(List.of("a", "b")));
+      journal.start(playbook.getId(), trusted);
+    }
+
+    // The class is not allowed by the filter, so only the other run is resumed
+    List<UnfinishedRun> unfinishedRuns = RunJournal.readUnfinishedRuns(path);
+    Assertions.assertEquals(1, unfinishedRuns.size());
+    Assertions.assertEquals(List.of("a", "b"), unfinishedRuns.get(0).getWorkContext().get("items"));
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  void testBucketsAreContiguous() {
+    Assertions.assertEquals(0, LatencyHistogram.indexOf(0));
+    Assertions.assertEquals(15, LatencyHistogram.indexOf(15));
+    Assertions.assertEquals(16, LatencyHistogram.indexOf(16));
+    Assertions.assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+    for (int index = 1; index < LatencyHistogram.BUCKET_COUNT; index++) {
+      long lowest = LatencyHistogram.highestValueAt(index - 1) + 1;
+      Assertions.assertEquals(index, LatencyHistogram.indexOf(lowest));
+      Assertions.assertEquals(index, LatencyHistogram.indexOf(LatencyHistogram.highestValueAt(index)));
+    }
+  }
+
+  @Test
+  void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assertions.assertEquals(0, histogram.getValueAtPercentile(50));
+    for (long value = 1; value <= 1000; value++) {
+      histogram.record(value * 1000);
+    }
+    Assertions.assertEquals(1000, histogram.getCount());
+    assertWithinPrecision(500_000, histogram.getValueAtPercentile(50));
+    assertWithinPrecision(990_000, histogram.getValueAtPercentile(99));
+    assertWithinPrecision(999_000, histogram.getValueAtPercentile(99.9));
+    assertWithinPrecision(1_000_000, histogram.getValueAtPercentile(100));
+    Assertions.assertEquals(500_500, histogram.getMean(), 500_500 * 0.07);
+
+    histogram.reset();
+    Assertions.assertEquals(0, histogram.getCount());
+    Assertions.assertEquals(0, histogram.getMean());
+  }
+
+  @Test
+  void testStepOrder() {
+    Assertions.assertTrue(ExecutionMetrics.compareSteps("2", "10") < 0);
+    Assertions.assertTrue(ExecutionMetrics.compareSteps("4", "4.1") < 0);
+    Assertions.assertTrue(ExecutionMetrics.compareSteps("4.10", "4.2") > 0);
+    Assertions.assertEquals(0, ExecutionMetrics.compareSteps("3.1", "3.1"));
+  }
+
+  private static void assertWithinPrecision(long expected, long actual) {
+    Assertions.assertTrue(actual >= expected && actual <= expected * 1.125, "Expected ~" + expected + " was " + actual);
+  }
+}
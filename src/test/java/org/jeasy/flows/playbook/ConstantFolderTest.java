@@ -0,0 +1,214 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.playbook;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.jeasy.flows.reader.YamlReader;
+import org.jeasy.flows.work.TaskContext;
+import org.jeasy.flows.work.Work;
+import org.jeasy.flows.work.WorkContext;
+import org.jeasy.flows.work.WorkReport;
+import org.jeasy.flows.work.WorkStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ConstantFolderTest {
+
+  private static final String YAML = """
+      ---
+      id: %s
+      vars:
+        mode: test
+        greeting: Hello
+        limit: 3
+      workflow:
+        - log: "{{ greeting }} world"
+        - set: counter = {{ 0 }}
+        - log: "{{ counter }}"
+        - block:
+          - when: mode == 'live'
+          - set: sent = yes
+        - set: checked = yes
+          when: "{{ mode == 'test' }}"
+        - set: skipped = yes
+          when: mode == 'live'
+        - evaluate: limit = 5
+        - set: over = yes
+          when: limit > 4
+      """;
+
+  @Test
+  void testFoldingIsOffByDefault() {
+    Playbook playbook = YamlReader.readPlaybook(YAML.formatted("constant-folding-off"));
+    PlaybookManager.add(playbook);
+    Assertions.assertFalse(PlaybookManager.isConstantFolding());
+    CompiledPlaybook compiledPlaybook = PlaybookManager.getCompiledPlaybook(playbook.getId());
+    Assertions.assertTrue(compiledPlaybook.getFoldingReport().isEmpty());
+    Assertions.assertNull(compiledPlaybook.getFoldedWorkFlow());
+    assertRun(playbook.getId());
+  }
+
+  @Test
+  void testConstantsAreFolded() {
+    Playbook playbook = YamlReader.readPlaybook(YAML.formatted("constant-folding"));
+    PlaybookManager.add(playbook);
+    try {
+      PlaybookManager.setConstantFolding(true);
+      FoldingReport foldingReport = PlaybookManager.getCompiledPlaybook(playbook.getId()).getFoldingReport();
+      Assertions.assertEquals(List.of("0", "3.0", "4"), steps(foldingReport.getFolded()));
+      Assertions.assertEquals(List.of("3.1", "5"), steps(foldingReport.getEliminated()));
+      Assertions.assertTrue(foldingReport.getFolded().stream()
+          .anyMatch(item -> "Hello world".equals(item.getValue())));
+      assertRun(playbook.getId());
+    } finally {
+      PlaybookManager.setConstantFolding(false);
+    }
+  }
+
+  @Test
+  void testCallerWorkContextIsNotFolded() {
+    Playbook playbook = YamlReader.readPlaybook(YAML.formatted("constant-folding-caller"));
+    PlaybookManager.add(playbook);
+    try {
+      PlaybookManager.setConstantFolding(true);
+      WorkContext workContext = new WorkContext();
+      workContext.put("mode", "live");
+      WorkReport workReport = PlaybookManager.run(playbook.getId(), workContext);
+      Assertions.assertEquals(WorkStatus.COMPLETED, workReport.getStatus());
+      Assertions.assertEquals("yes", workContext.get("sent"));
+      Assertions.assertEquals("yes", workContext.get("skipped"));
+      Assertions.assertNull(workContext.get("checked"));
+    } finally {
+      PlaybookManager.setConstantFolding(false);
+    }
+  }
+
+  @Test
+  void testCustomTaskLeavesNoConstants() {
+    String yaml = """
+        ---
+        id: constant-folding-custom
+        vars:
+          mode: test
+        workflow:
+          - go-live: Changes the mode
+          - set: sent = yes
+            when: mode == 'live'
+        """;
+    PlaybookManager.register(new HashMap<>(Map.of("go-live", GoLiveTask.class.getName())));
+    Playbook playbook = YamlReader.readPlaybook(yaml);
+    PlaybookManager.add(playbook);
+    try {
+      PlaybookManager.setConstantFolding(true);
+      Assertions.assertTrue(PlaybookManager.getCompiledPlaybook(playbook.getId()).getFoldingReport().isEmpty());
+      WorkReport workReport = PlaybookManager.run(playbook.getId());
+      Assertions.assertEquals("yes", workReport.getWorkContext().get("sent"));
+    } finally {
+      PlaybookManager.setConstantFolding(false);
+    }
+  }
+
+  @Test
+  void testFalseWhenTaskInBlockKeepsItsReport() {
+    String yaml = """
+        ---
+        id: constant-folding-block-when
+        vars:
+          mode: test
+        workflow:
+          - set: started = yes
+          - block:
+            - when: mode == 'live'
+            - set: sent = yes
+        """;
+    Playbook playbook = YamlReader.readPlaybook(yaml);
+    PlaybookManager.add(playbook);
+    WorkReport unfolded = PlaybookManager.run(playbook.getId());
+    Assertions.assertEquals(WorkStatus.FAILED, unfolded.getStatus());
+    try {
+      PlaybookManager.setConstantFolding(true);
+      FoldingReport foldingReport = PlaybookManager.getCompiledPlaybook(playbook.getId()).getFoldingReport();
+      Assertions.assertEquals(List.of("1.0"), steps(foldingReport.getFolded()));
+      Assertions.assertEquals(List.of("1.1"), steps(foldingReport.getEliminated()));
+      WorkReport folded = PlaybookManager.run(playbook.getId());
+      Assertions.assertEquals(unfolded.getStatus(), folded.getStatus());
+      Assertions.assertNull(folded.getWorkContext().get("sent"));
+    } finally {
+      PlaybookManager.setConstantFolding(false);
+    }
+  }
+
+  @Test
+  void testEveryTaskEliminated() {
+    String yaml = """
+        ---
+        id: constant-folding-empty
+        vars:
+          enabled: no
+        workflow:
+          - log: Sending
+            when: enabled == 'yes'
+        """;
+    Playbook playbook = YamlReader.readPlaybook(yaml);
+    PlaybookManager.add(playbook);
+    // Without folding the task is skipped, and there is no report
+    Assertions.assertNull(PlaybookManager.run(playbook.getId()));
+    try {
+      PlaybookManager.setConstantFolding(true);
+      Assertions.assertEquals(1,
+          PlaybookManager.getCompiledPlaybook(playbook.getId()).getFoldingReport().getEliminated().size());
+      Assertions.assertNull(PlaybookManager.run(playbook.getId()));
+    } finally {
+      PlaybookManager.setConstantFolding(false);
+    }
+  }
+
+  private static void assertRun(String playbookId) {
+    WorkReport workReport = PlaybookManager.run(playbookId);
+    Assertions.assertNotNull(workReport);
+    Assertions.assertEquals(WorkStatus.COMPLETED, workReport.getStatus());
+    WorkContext workContext = workReport.getWorkContext();
+    Assertions.assertEquals("yes", workContext.get("checked"));
+    Assertions.assertEquals("yes", workContext.get("over"));
+    Assertions.assertNull(workContext.get("sent"));
+    Assertions.assertNull(workContext.get("skipped"));
+  }
+
+  private static List<String> steps(List<FoldingReport.Item> items) {
+    return items.stream().map(FoldingReport.Item::getStep).sorted().collect(Collectors.toList());
+  }
+
+  public static class GoLiveTask implements Work {
+
+    @Override
+    public WorkReport execute(WorkContext workContext, TaskContext taskContext) {
+      workContext.getMap().put("mode", "live");
+      return workContext.getStatusReport(WorkStatus.COMPLETED);
+    }
+  }
+}
@@ -23,13 +23,28 @@
  */
 package org.jeasy.flows.playbook;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
+import org.jeasy.flows.engine.WorkFlowEngine;
+import org.jeasy.flows.engine.WorkFlowEngineBuilder;
+import org.jeasy.flows.metrics.ExecutionMetrics;
+import org.jeasy.flows.metrics.TaskMetrics;
 import org.jeasy.flows.reader.YamlReader;
 import org.jeasy.flows.work.LogTask;
 import org.jeasy.flows.work.NoOpTask;
 import org.jeasy.flows.work.SetTask;
+import org.jeasy.flows.work.WorkContext;
 import org.jeasy.flows.work.WorkReport;
 import org.jeasy.flows.work.WorkStatus;
 import org.junit.jupiter.api.Assertions;
@@ -291,4 +306,303 @@ class PlaybookManagerTest {
     Assertions.assertNull(workReport.getWorkContext().get("block2"));
     Assertions.assertEquals("yes", workReport.getWorkContext().get("finished"));
   }
+
+  @Test
+  void testCompiledPlaybookIsReused() {
+    String yaml = """
+        id: compiled-workflow
+        name: Runs more than once
+        workflow:
+          - log: Repeating 3 times
+            repeat: 3
+          - parallel:
+            threads: 2
+            timeout: 5
+            tasks:
+              - set: first = yes
+              - set: second = yes
+          - set: finished = yes
+        """;
+
+    Playbook playbook = YamlReader.readPlaybook(yaml);
+    PlaybookManager.add(playbook);
+
+    CompiledPlaybook compiledPlaybook = PlaybookManager.getCompiledPlaybook(playbook.getId());
+    Assertions.assertNotNull(compiledPlaybook);
+    Assertions.assertSame(playbook, compiledPlaybook.getPlaybook());
+    Assertions.assertTrue(compiledPlaybook.getBuildNanos() > 0);
+
+    // The same workflow is used for each run
+    for (int i = 0; i < 3; i++) {
+      WorkReport workReport = PlaybookManager.run(playbook.getId());
+      Assertions.assertNotNull(workReport);
+      Assertions.assertEquals(WorkStatus.COMPLETED, workReport.getStatus());
+      Assertions.assertEquals("yes", workReport.getWorkContext().get("finished"));
+    }
+    Assertions.assertSame(compiledPlaybook, PlaybookManager.getCompiledPlaybook(playbook.getId()));
+    Assertions.assertEquals(3, compiledPlaybook.getRunCount());
+    Assertions.assertTrue(compiledPlaybook.getRunNanos() > 0);
+
+    // Replacing the playbook invalidates the compiled workflow
+    Playbook replacement = YamlReader.readPlaybook(yaml);
+    PlaybookManager.add(replacement);
+    CompiledPlaybook recompiledPlaybook = PlaybookManager.getCompiledPlaybook(playbook.getId());
+    Assertions.assertNotSame(compiledPlaybook, recompiledPlaybook);
+    Assertions.assertSame(replacement, recompiledPlaybook.getPlaybook());
+    WorkReport workReport = PlaybookManager.run(playbook.getId());
+    Assertions.assertEquals(WorkStatus.COMPLETED, workReport.getStatus());
+  }
+
+  @Test
+  void testReloadWhileRunning() throws Exception {
+    String yaml = """
+        - id: reload-first
+          workflow:
+            - set: value = 'first'
+            - set: finished = yes
+        - id: reload-second
+          workflow:
+            - set: value = 'second'
+            - set: finished = yes
+        """;
+    PlaybookManager.add(YamlReader.readPlaybooks(yaml));
+
+    int runners = 4;
+    AtomicBoolean reloading = new AtomicBoolean(true);
+    AtomicInteger runs = new AtomicInteger();
+    ExecutorService executorService = Executors.newFixedThreadPool(runners);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < runners; i++) {
+        String playbookId = (i % 2 == 0) ? "reload-first" : "reload-second";
+        results.add(executorService.submit(() -> {
+          while (reloading.get()) {
+            WorkReport workReport = PlaybookManager.run(playbookId);
+            if (workReport == null || workReport.getStatus() != WorkStatus.COMPLETED) {
+              return "Run failed for " + playbookId;
+            }
+            if (!"yes".equals(workReport.getWorkContext().get("finished"))) {
+              return "Run did not finish for " + playbookId;
+            }
+            runs.incrementAndGet();
+          }
+          return null;
+        }));
+      }
+
+      // Reload the whole library while the runners are going
+      for (int i = 0; i < 50; i++) {
+        PlaybookManager.add(YamlReader.readPlaybooks(yaml));
+      }
+      reloading.set(false);
+      for (Future<String> result : results) {
+        Assertions.assertNull(result.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+    Assertions.assertTrue(runs.get() > 0);
+
+    // Both playbooks of the last reload were published and compiled together
+    CompiledPlaybook first = PlaybookManager.getCompiledPlaybook("reload-first");
+    CompiledPlaybook second = PlaybookManager.getCompiledPlaybook("reload-second");
+    Assertions.assertNotNull(first);
+    Assertions.assertNotNull(second);
+    Assertions.assertSame(first.getPlaybook(), PlaybookManager.getPlaybook("reload-first"));
+    Assertions.assertSame(second.getPlaybook(), PlaybookManager.getPlaybook("reload-second"));
+  }
+
+  @Test
+  void testExecutionMetrics() {
+    String yaml = """
+        id: metrics-workflow
+        workflow:
+          - set: counter = 1
+          - log: Repeating 3 times
+            repeat: 3
+          - log: Skipped
+            when: counter == 2
+          - parallel:
+            threads: 2
+            timeout: 5
+            tasks:
+              - set: first = yes
+              - set: second = yes
+          - block:
+            - set: inside = yes
+          - set: finished = yes
+        """;
+
+    Playbook playbook = YamlReader.readPlaybook(yaml);
+    WorkFlowEngine previousEngine = PlaybookManager.getWorkFlowEngine();
+    Assertions.assertNull(PlaybookManager.getExecutionMetrics());
+    PlaybookManager.setWorkFlowEngine(WorkFlowEngineBuilder.aNewWorkFlowEngine().withMetrics().build());
+    try {
+      PlaybookManager.add(playbook);
+      for (int i = 0; i < 5; i++) {
+        WorkReport workReport = PlaybookManager.run(playbook.getId());
+        Assertions.assertEquals(WorkStatus.COMPLETED, workReport.getStatus());
+      }
+
+      ExecutionMetrics executionMetrics = PlaybookManager.getExecutionMetrics();
+      Assertions.assertNotNull(executionMetrics);
+      Map<String, TaskMetrics> metricsByStep = new HashMap<>();
+      for (TaskMetrics taskMetrics : executionMetrics.getMetrics(playbook.getId())) {
+        metricsByStep.put(taskMetrics.getStep() + " " + taskMetrics.getKind(), taskMetrics);
+      }
+      Assertions.assertEquals(5, metricsByStep.get("0 TASK").getCount());
+      Assertions.assertEquals("set", metricsByStep.get("0 TASK").getTaskId());
+      Assertions.assertEquals(15, metricsByStep.get("1 REPEAT").getCount());
+      Assertions.assertEquals(5, metricsByStep.get("1 TASK").getCount());
+      // The condition is evaluated, but the task is skipped
+      Assertions.assertEquals(5, metricsByStep.get("2 WHEN").getCount());
+      Assertions.assertEquals(0, metricsByStep.get("2 TASK").getCount());
+      Assertions.assertEquals(5, metricsByStep.get("3 PARALLEL_JOIN").getCount());
+      Assertions.assertEquals(5, metricsByStep.get("3.0 TASK").getCount());
+      Assertions.assertEquals(5, metricsByStep.get("3.1 TASK").getCount());
+      Assertions.assertEquals(5, metricsByStep.get("4 TASK").getCount());
+      Assertions.assertEquals(5, metricsByStep.get("4.0 TASK").getCount());
+      TaskMetrics finished = metricsByStep.get("5 TASK");
+      Assertions.assertEquals(5, finished.getCount());
+      Assertions.assertEquals(0, finished.getErrorCount());
+      Assertions.assertTrue(finished.getP50Nanos() > 0);
+      Assertions.assertTrue(finished.getP50Nanos() <= finished.getP99Nanos());
+      Assertions.assertTrue(finished.getP99Nanos() <= finished.getP999Nanos());
+    } finally {
+      PlaybookManager.setWorkFlowEngine(previousEngine);
+    }
+    // The playbook is recompiled for the previous engine, which does not have metrics
+    Assertions.assertNotNull(PlaybookManager.getCompiledPlaybook(playbook.getId()));
+    Assertions.assertNull(PlaybookManager.getExecutionMetrics());
+  }
+
+  @Test
+  void testRunAsync() throws Exception {
+    String yaml = """
+        id: async-workflow
+        workflow:
+          - parallel:
+            timeout: 5
+            tasks:
+              - set: first = yes
+              - set: second = yes
+          - set: finished = yes
+        """;
+    Playbook playbook = YamlReader.readPlaybook(yaml);
+    PlaybookManager.add(playbook);
+
+    List<CompletableFuture<WorkReport>> futures = new ArrayList<>();
+    AtomicInteger completed = new AtomicInteger();
+    for (int i = 0; i < 10; i++) {
+      futures.add(PlaybookManager.runAsync(playbook.getId()).whenComplete((workReport, error) -> {
+        if (workReport != null && "yes".equals(workReport.getWorkContext().get("finished"))) {
+          completed.incrementAndGet();
+        }
+      }));
+    }
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+    Assertions.assertEquals(10, completed.get());
+    for (CompletableFuture<WorkReport> future : futures) {
+      Assertions.assertEquals(WorkStatus.COMPLETED, future.get().getStatus());
+    }
+
+    // An unknown playbook completes with no report, as with run()
+    Assertions.assertNull(PlaybookManager.runAsync("async-unknown").get(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void testEngineWithOnlyRun() throws Exception {
+    String yaml = """
+        id: run-only-engine-workflow
+        workflow:
+          - parallel:
+            timeout: 5
+            tasks:
+              - set: first = yes
+          - set: finished = yes
+        """;
+    Playbook playbook = YamlReader.readPlaybook(yaml);
+    WorkFlowEngine previousEngine = PlaybookManager.getWorkFlowEngine();
+    // An engine written before the engine had pools, journals and metrics
+    PlaybookManager.setWorkFlowEngine((workFlow, workContext) -> workFlow.execute(workContext));
+    try {
+      PlaybookManager.add(playbook);
+      Assertions.assertNotNull(PlaybookManager.getExecutorRegistry());
+      Assertions.assertEquals(WorkStatus.COMPLETED, PlaybookManager.run(playbook.getId()).getStatus());
+      WorkReport workReport = PlaybookManager.runAsync(playbook.getId()).get(5, TimeUnit.SECONDS);
+      Assertions.assertEquals("yes", workReport.getWorkContext().get("finished"));
+      Assertions.assertTrue(PlaybookManager.resumeUnfinishedRuns().isEmpty());
+    } finally {
+      PlaybookManager.setWorkFlowEngine(previousEngine);
+    }
+  }
+
+  @Test
+  void testRunBatch() {
+    String yaml = """
+        id: batch-workflow
+        workflow:
+          - when: number % 10 != 0
+          - set: finished = yes
+        """;
+    Playbook playbook = YamlReader.readPlaybook(yaml);
+    PlaybookManager.add(playbook);
+
+    List<WorkContext> workContexts = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      WorkContext workContext = new WorkContext(playbook);
+      workContext.put("number", i);
+      workContexts.add(workContext);
+    }
+    BatchReport batchReport = PlaybookManager.runBatch(playbook.getId(), workContexts.stream(), 4, 16);
+    Assertions.assertNotNull(batchReport);
+    Assertions.assertEquals(1000, batchReport.getCount());
+    Assertions.assertEquals(900, batchReport.getCount(WorkStatus.COMPLETED));
+    Assertions.assertEquals(100, batchReport.getCount(WorkStatus.FAILED));
+    Assertions.assertEquals(100, batchReport.getFailureCount());
+    // Each failure is kept by its position in the batch
+    Assertions.assertEquals(100, batchReport.getFailures().size());
+    for (Map.Entry<Long, WorkReport> failure : batchReport.getFailures().entrySet()) {
+      Assertions.assertEquals(0, failure.getKey() % 10);
+      Assertions.assertEquals(failure.getKey().intValue(), failure.getValue().getWorkContext().get("number"));
+    }
+    for (int i = 1; i < 1000; i += 10) {
+      Assertions.assertEquals("yes", workContexts.get(i).get("finished"));
+    }
+    Assertions.assertTrue(batchReport.getP50Nanos() > 0);
+    Assertions.assertTrue(batchReport.getP50Nanos() <= batchReport.getP99Nanos());
+    Assertions.assertTrue(batchReport.getElapsedNanos() > 0);
+
+    // The stream is read as the batch progresses
+    BatchReport streamReport = PlaybookManager.runBatch(playbook.getId(),
+        IntStream.range(0, 49).mapToObj(i -> {
+          WorkContext workContext = new WorkContext(playbook);
+          workContext.put("number", i * 2 + 1);
+          return workContext;
+        }), 1, 8);
+    Assertions.assertEquals(49, streamReport.getCount(WorkStatus.COMPLETED));
+    Assertions.assertTrue(streamReport.getFailures().isEmpty());
+
+    Assertions.assertNull(PlaybookManager.runBatch("batch-unknown", workContexts));
+  }
+
+  @Test
+  void testDelay() throws Exception {
+    String yaml = """
+        id: delay-workflow
+        workflow:
+          - set: started = yes
+          - set: finished = yes
+            delay: 1
+        """;
+    Playbook playbook = YamlReader.readPlaybook(yaml);
+    Assertions.assertEquals(1, playbook.getTaskList().get(1).getDelay());
+    PlaybookManager.add(playbook);
+
+    long startTime = System.nanoTime();
+    CompletableFuture<WorkReport> future = PlaybookManager.runAsync(playbook.getId());
+    WorkReport workReport = future.get(5, TimeUnit.SECONDS);
+    Assertions.assertEquals("yes", workReport.getWorkContext().get("finished"));
+    Assertions.assertTrue(System.nanoTime() - startTime >= TimeUnit.SECONDS.toNanos(1));
+  }
 }
@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.playbook;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jeasy.flows.reader.YamlReader;
+import org.jeasy.flows.work.DefaultWorkReport;
+import org.jeasy.flows.work.TaskContext;
+import org.jeasy.flows.work.Work;
+import org.jeasy.flows.work.WorkContext;
+import org.jeasy.flows.work.WorkReport;
+import org.jeasy.flows.work.WorkStatus;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class PlaybookProcessorTest {
+
+  private static final AtomicInteger running = new AtomicInteger();
+  private static final AtomicInteger maxRunning = new AtomicInteger();
+
+  public static class SlowTask implements Work {
+
+    @Override
+    public WorkReport execute(WorkContext workContext, TaskContext taskContext) {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(2);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        running.decrementAndGet();
+      }
+      return new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+    }
+  }
+
+  @Test
+  void testEventsToReports() throws Exception {
+    Map<String, String> taskLibrary = new HashMap<>();
+    taskLibrary.put("slow", SlowTask.class.getName());
+    PlaybookManager.register(taskLibrary);
+    PlaybookManager.add(YamlReader.readPlaybook("""
+        id: processor-workflow
+        vars:
+          source: 'test'
+          score: '{{ event * 10 }}'
+        workflow:
+          - slow
+          - when: event % 5 != 0
+        """));
+
+    int events = 200;
+    int maxInFlight = 4;
+    AtomicInteger completed = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    AtomicInteger withVars = new AtomicInteger();
+    AtomicInteger withEventVars = new AtomicInteger();
+    CountDownLatch finished = new CountDownLatch(1);
+    PlaybookProcessor<Integer> processor = new PlaybookProcessor<>("processor-workflow", maxInFlight);
+    processor.subscribe(new Flow.Subscriber<>() {
+      private Flow.Subscription subscription;
+
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+      }
+
+      @Override
+      public void onNext(WorkReport workReport) {
+        if (workReport.getStatus() == WorkStatus.COMPLETED) {
+          completed.incrementAndGet();
+        } else {
+          failed.incrementAndGet();
+        }
+        if ("test".equals(workReport.getWorkContext().get("source"))) {
+          withVars.incrementAndGet();
+        }
+        // The var expressions are evaluated with the event
+        WorkContext workContext = workReport.getWorkContext();
+        if (workContext.get("score") instanceof Integer score && score == (Integer) workContext.get("event") * 10) {
+          withEventVars.incrementAndGet();
+        }
+        // A slow consumer, which holds back the events
+        subscription.request(1);
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        finished.countDown();
+      }
+
+      @Override
+      public void onComplete() {
+        finished.countDown();
+      }
+    });
+
+    try (SubmissionPublisher<Integer> eventPublisher = new SubmissionPublisher<>()) {
+      eventPublisher.subscribe(processor);
+      for (int i = 0; i < events; i++) {
+        eventPublisher.submit(i);
+      }
+    }
+    Assertions.assertTrue(finished.await(30, TimeUnit.SECONDS));
+    Assertions.assertEquals(160, completed.get());
+    Assertions.assertEquals(40, failed.get());
+    Assertions.assertEquals(events, withVars.get());
+    Assertions.assertEquals(events, withEventVars.get());
+    Assertions.assertTrue(maxRunning.get() <= maxInFlight, "Runs at once: " + maxRunning.get());
+    Assertions.assertTrue(processor.isClosed());
+  }
+
+  @Test
+  void testClosedProcessorCancelsEvents() throws Exception {
+    PlaybookManager.add(YamlReader.readPlaybook("""
+        id: processor-closed-workflow
+        workflow:
+          - set: done = yes
+        """));
+    PlaybookProcessor<Integer> processor = new PlaybookProcessor<>("processor-closed-workflow", 2);
+    processor.close();
+    try (SubmissionPublisher<Integer> eventPublisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), 4)) {
+      eventPublisher.subscribe(processor);
+      // Without the cancel, upstream would wait for requests once its buffer is full
+      for (int i = 0; i < 100; i++) {
+        eventPublisher.offer(i, 10, TimeUnit.MILLISECONDS, null);
+      }
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (eventPublisher.hasSubscribers() && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      Assertions.assertFalse(eventPublisher.hasSubscribers());
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.reader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Set;
+
+import org.jeasy.flows.playbook.CompiledPlaybook;
+import org.jeasy.flows.playbook.PlaybookManager;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PlaybookDirectoryTest {
+
+  @BeforeAll
+  static void registerTasks() {
+    PlaybookManager.register(new HashMap<>());
+  }
+
+  @Test
+  void testScanOnlyChangedFiles(@TempDir Path tempDir) throws IOException {
+    Path first = tempDir.resolve("first.yml");
+    Path second = tempDir.resolve("second.yaml");
+    Files.writeString(first, playbook("dir-first", "one"));
+    Files.writeString(second, playbook("dir-second", "two"));
+    Files.writeString(tempDir.resolve("notes.txt"), "not a playbook");
+
+    try (PlaybookDirectory directory = new PlaybookDirectory(tempDir)) {
+      Assertions.assertEquals(2, directory.scan());
+      Assertions.assertEquals(Set.of("dir-first"), directory.getPlaybookIds(first));
+      CompiledPlaybook unchanged = PlaybookManager.getCompiledPlaybook("dir-second");
+      Assertions.assertNotNull(unchanged);
+
+      // Nothing changed
+      Assertions.assertEquals(0, directory.scan());
+
+      // Only the changed file is read, and the other playbook keeps its compiled workflow
+      Files.writeString(first, playbook("dir-first", "changed"));
+      Assertions.assertEquals(1, directory.scan());
+      Assertions.assertEquals("changed",
+          PlaybookManager.getPlaybook("dir-first").getTaskList().get(0).getData());
+      Assertions.assertSame(unchanged, PlaybookManager.getCompiledPlaybook("dir-second"));
+
+      // A playbook moved to another file is replaced
+      Files.writeString(first, playbook("dir-renamed", "one"));
+      Assertions.assertEquals(1, directory.scan());
+      Assertions.assertNull(PlaybookManager.getPlaybook("dir-first"));
+      Assertions.assertNotNull(PlaybookManager.getPlaybook("dir-renamed"));
+
+      // Deleting a file removes its playbooks
+      Files.delete(second);
+      Assertions.assertEquals(1, directory.scan());
+      Assertions.assertNull(PlaybookManager.getPlaybook("dir-second"));
+      Assertions.assertTrue(directory.getPlaybookIds(second).isEmpty());
+    }
+    PlaybookManager.remove("dir-renamed");
+  }
+
+  @Test
+  void testWatchDirectory(@TempDir Path tempDir) throws Exception {
+    Path file = tempDir.resolve("watched.yml");
+    Files.writeString(file, playbook("dir-watched", "one"));
+
+    try (PlaybookDirectory directory = new PlaybookDirectory(tempDir)) {
+      directory.scan();
+      directory.start();
+      Files.writeString(file, playbook("dir-watched", "two"));
+
+      // Some file systems are polled by the watch service, so allow for a delay
+      long deadline = System.currentTimeMillis() + 15000;
+      while (!"two".equals(PlaybookManager.getPlaybook("dir-watched").getTaskList().get(0).getData())
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(50);
+      }
+      Assertions.assertEquals("two", PlaybookManager.getPlaybook("dir-watched").getTaskList().get(0).getData());
+    }
+    PlaybookManager.remove("dir-watched");
+  }
+
+  private static String playbook(String id, String message) {
+    return "---\n" +
+        "id: " + id + "\n" +
+        "workflow:\n" +
+        "  - log: " + message + "\n";
+  }
+}
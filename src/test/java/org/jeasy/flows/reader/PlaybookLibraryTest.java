@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.reader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jeasy.flows.playbook.Playbook;
+import org.jeasy.flows.playbook.Task;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PlaybookLibraryTest {
+
+  private static final String YAML = """
+      ---
+      - id: user-registered
+        name: A user registered
+        vars:
+          user: '{{ event.user }}'
+        workflow:
+          - email:
+            to-user: '{{ user.id }}'
+            subject: 'Thank you for registering'
+          - log: Repeating
+            repeat: 3
+          - parallel:
+            threads: 4
+            timeout: 20
+            pool: email
+            tasks:
+              - email:
+                to-role: 'community-manager'
+              - block:
+                - log: inside
+                  when: user != null
+          - set: finished = yes
+      - id: user-deleted
+        workflow:
+          - noop
+      """;
+
+  @Test
+  void testConvertAndLoad(@TempDir Path tempDir) throws IOException {
+    Path yaml = tempDir.resolve("playbooks.yml");
+    Path binary = tempDir.resolve("playbooks.bin");
+    Files.writeString(yaml, YAML);
+    Map<String, String> taskLibrary = new HashMap<>();
+    taskLibrary.put("email", "com.example.EmailTask");
+
+    // The first load converts the YAML
+    PlaybookLibrary library = PlaybookLibrary.load(yaml, binary, taskLibrary);
+    Assertions.assertNotNull(library);
+    Assertions.assertTrue(Files.exists(binary));
+    Assertions.assertEquals(2, library.size());
+    Assertions.assertEquals(List.of("user-registered", "user-deleted"), List.copyOf(library.getIds()));
+    Assertions.assertTrue(library.getTaskIds().contains("email"));
+
+    List<Playbook> expected = YamlReader.readPlaybooks(YAML);
+    Assertions.assertEquals(describe(expected), describe(library.getPlaybooks()));
+    Playbook playbook = library.getPlaybook("user-registered");
+    Assertions.assertSame(playbook, library.getPlaybook("user-registered"));
+    Assertions.assertNull(library.getPlaybook("missing"));
+    Task parallel = playbook.getTaskList().get(2);
+    Assertions.assertEquals("email", parallel.getPool());
+    Assertions.assertEquals(20, parallel.getTimeout());
+    Assertions.assertEquals("user != null", parallel.getTaskList().get(1).getTaskList().get(0).getWhen());
+
+    // The next load uses the binary file
+    long modified = Files.getLastModifiedTime(binary).toMillis();
+    PlaybookLibrary reloaded = PlaybookLibrary.load(yaml, binary, taskLibrary);
+    Assertions.assertEquals(describe(expected), describe(reloaded.getPlaybooks()));
+    Assertions.assertEquals(modified, Files.getLastModifiedTime(binary).toMillis());
+  }
+
+  @Test
+  void testStaleOrCorruptFileFallsBackToYaml(@TempDir Path tempDir) throws IOException {
+    Path yaml = tempDir.resolve("playbooks.yml");
+    Path binary = tempDir.resolve("playbooks.bin");
+    Files.writeString(yaml, YAML);
+    Map<String, String> taskLibrary = Map.of("email", "com.example.EmailTask");
+    Assertions.assertNotNull(PlaybookLibrary.load(yaml, binary, taskLibrary));
+
+    // The YAML changed
+    Files.writeString(yaml, YAML.replace("user-deleted", "user-removed"));
+    PlaybookLibrary library = PlaybookLibrary.load(yaml, binary, taskLibrary);
+    Assertions.assertNotNull(library.getPlaybook("user-removed"));
+    Assertions.assertNull(library.getPlaybook("user-deleted"));
+
+    // The task library changed
+    Map<String, String> newTaskLibrary = Map.of("email", "com.example.NewEmailTask");
+    byte[] previousHash = library.getSourceHash();
+    library = PlaybookLibrary.load(yaml, binary, newTaskLibrary);
+    Assertions.assertFalse(Arrays.equals(previousHash, library.getSourceHash()));
+
+    // The file is damaged
+    Files.write(binary, new byte[] { 1, 2, 3 });
+    Assertions.assertThrows(IOException.class, () -> PlaybookLibrary.open(binary));
+    library = PlaybookLibrary.load(yaml, binary, newTaskLibrary);
+    Assertions.assertNotNull(library);
+    Assertions.assertEquals(2, library.size());
+  }
+
+  @Test
+  void testUnknownTaskIdIsNotConverted(@TempDir Path tempDir) throws IOException {
+    Path yaml = tempDir.resolve("playbooks.yml");
+    Path binary = tempDir.resolve("playbooks.bin");
+    Files.writeString(yaml, YAML);
+    Assertions.assertNull(PlaybookLibrary.load(yaml, binary, new HashMap<>()));
+    Assertions.assertFalse(Files.exists(binary));
+  }
+
+  private static String describe(List<Playbook> playbooks) {
+    StringBuilder sb = new StringBuilder();
+    for (Playbook playbook : playbooks) {
+      sb.append(playbook.getId()).append('|').append(playbook.getName()).append('|').append(playbook.getVars())
+          .append('\n');
+      describe(sb, playbook.getTaskList(), 1);
+    }
+    return sb.toString();
+  }
+
+  private static void describe(StringBuilder sb, List<Task> tasks, int depth) {
+    if (tasks == null) {
+      return;
+    }
+    for (Task task : tasks) {
+      sb.append("  ".repeat(depth)).append(task.getId()).append('|').append(task.getName()).append('|')
+          .append(task.getData()).append('|').append(task.getWhen()).append('|').append(task.getRepeat())
+          .append('|').append(task.getThreads()).append('|').append(task.getTimeout()).append('|')
+          .append(task.getDelay()).append('|').append(task.getPool()).append('|').append(task.getVars()).append('\n');
+      describe(sb, task.getTaskList(), depth + 1);
+    }
+  }
+}
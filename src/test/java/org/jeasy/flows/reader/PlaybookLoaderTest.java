@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.reader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jeasy.flows.playbook.Playbook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PlaybookLoaderTest {
+
+  private static String library(String prefix, int count) {
+    StringBuilder yaml = new StringBuilder("---\n# A generated library\n");
+    for (int i = 0; i < count; i++) {
+      yaml.append("- id: ").append(prefix).append(i).append("\n")
+          .append("  vars:\n")
+          .append("    index: ").append(i).append("\n")
+          .append("  workflow:\n")
+          .append("    - log: Playbook ").append(i).append("\n")
+          .append("      when: index > 0\n")
+          .append("    - block:\n")
+          .append("      - id: not a playbook\n")
+          .append("      - set: finished = yes\n\n");
+    }
+    return yaml.toString();
+  }
+
+  @Test
+  void testLoadMatchesYamlReader() {
+    String yaml = library("chunk-", 50);
+    List<Playbook> expected = YamlReader.readPlaybooks(yaml);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    List<Playbook> playbooks = new PlaybookLoader(pool).load(yaml);
+    pool.shutdown();
+    Assertions.assertEquals(50, playbooks.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Playbook playbook = playbooks.get(i);
+      Assertions.assertEquals("chunk-" + i, playbook.getId());
+      Assertions.assertEquals(expected.get(i).getVars(), playbook.getVars());
+      Assertions.assertEquals(expected.get(i).getTaskList().size(), playbook.getTaskList().size());
+      Assertions.assertEquals("index > 0", playbook.getTaskList().get(0).getWhen());
+    }
+  }
+
+  @Test
+  void testFindPlaybookOffsets() {
+    String yaml = "---\n- id: first\n  workflow:\n    - noop\n\r\n- id: second\n  workflow:\n  - id: nested\n";
+    int[] offsets = PlaybookLoader.findPlaybookOffsets(yaml);
+    Assertions.assertEquals(2, offsets.length);
+    Assertions.assertTrue(yaml.startsWith("- id: first", offsets[0]));
+    Assertions.assertTrue(yaml.startsWith("- id: second", offsets[1]));
+    // A single playbook without a list is not split
+    Assertions.assertEquals(0, PlaybookLoader.findPlaybookOffsets("id: single\nworkflow:\n  - noop\n").length);
+  }
+
+  @Test
+  void testLoadFiles(@TempDir Path tempDir) throws IOException {
+    Path first = tempDir.resolve("first.yml");
+    Path second = tempDir.resolve("second.yml");
+    Path missing = tempDir.resolve("missing.yml");
+    Files.writeString(first, library("first-", 20));
+    Files.writeString(second, library("second-", 3));
+
+    PlaybookLoadReport report = new PlaybookLoader().load(Arrays.asList(second, missing, first));
+    Assertions.assertEquals(23, report.getPlaybooks().size());
+    // Merged in the order of the files
+    Assertions.assertEquals("second-0", report.getPlaybooks().get(0).getId());
+    Assertions.assertEquals("first-0", report.getPlaybooks().get(3).getId());
+    Assertions.assertEquals("first-19", report.getPlaybooks().get(22).getId());
+
+    Assertions.assertEquals(Arrays.asList(second, missing, first), List.copyOf(report.getParseTimes().keySet()));
+    Assertions.assertTrue(report.getParseTime(first) > 0);
+    Assertions.assertEquals(-1, report.getParseTime(tempDir.resolve("other.yml")));
+    Assertions.assertTrue(report.hasFailures());
+    Assertions.assertEquals(List.of(missing), report.getFailedFiles());
+  }
+}
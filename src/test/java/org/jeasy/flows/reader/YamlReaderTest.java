@@ -23,12 +23,18 @@
  */
 package org.jeasy.flows.reader;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 import org.jeasy.flows.playbook.Playbook;
 import org.jeasy.flows.playbook.Task;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class YamlReaderTest {
 
@@ -199,4 +205,58 @@ class YamlReaderTest {
     Assertions.assertEquals("blog-post-published", playbookList.get(0).getId());
     Assertions.assertEquals("web-page-published", playbookList.get(1).getId());
   }
+
+  @Test
+  void testReadFromStream(@TempDir Path tempDir) throws IOException {
+    String yaml = """
+        # Blank lines, comments and a multi-line value within the workflow
+        - id: first
+          name: First
+
+          vars:
+            greeting: 'hello'
+
+            audience: world
+          workflow:
+            - log: '{{ greeting }}'
+            # A comment between tasks
+            - email:
+              to: admins
+              body: >
+                Line one
+                line two
+
+            - set: done = yes
+        - id: second
+          workflow:
+            - noop
+        """;
+
+    Path path = tempDir.resolve("playbooks.yml");
+    Files.writeString(path, yaml.replace("\n", "\r\n"));
+    List<Playbook> fromPath = YamlReader.readPlaybooks(path);
+    List<Playbook> fromStream = YamlReader.readPlaybooks(
+        new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)));
+    List<Playbook> fromString = YamlReader.readPlaybooks(yaml);
+
+    for (List<Playbook> playbookList : List.of(fromPath, fromStream, fromString)) {
+      Assertions.assertNotNull(playbookList);
+      Assertions.assertEquals(2, playbookList.size());
+      Playbook playbook = playbookList.get(0);
+      Assertions.assertEquals("first", playbook.getId());
+      Assertions.assertEquals("First", playbook.getName());
+      Assertions.assertEquals(2, playbook.getVars().size());
+      Assertions.assertEquals("world", playbook.getVars().get("audience"));
+      Assertions.assertEquals(3, playbook.getTaskList().size());
+      Task email = playbook.getTaskList().get(1);
+      Assertions.assertEquals("admins", email.getVars().get("to"));
+      Assertions.assertEquals("Line one line two", email.getVars().get("body"));
+      Assertions.assertEquals(2, email.getVars().size());
+      Assertions.assertEquals("done = yes", playbook.getTaskList().get(2).getData());
+      Assertions.assertEquals("second", playbookList.get(1).getId());
+      Assertions.assertEquals("noop", playbookList.get(1).getTaskList().get(0).getId());
+    }
+
+    Assertions.assertNull(YamlReader.readPlaybooks(tempDir.resolve("missing.yml")));
+  }
 }
@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.work;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class GuardTest {
+
+  @Test
+  void testVersions() {
+    WorkContext workContext = new WorkContext();
+    Assertions.assertEquals(0, workContext.getVersion("count"));
+    workContext.put("count", 1);
+    workContext.put("count", 2);
+    workContext.put("count", null);
+    Assertions.assertEquals(2, workContext.getVersion("count"));
+    // The vars only change the variables which are not set
+    workContext.put(Map.of("count", 3, "name", "first"));
+    Assertions.assertEquals(2, workContext.getVersion("count"));
+    Assertions.assertEquals(1, workContext.getVersion("name"));
+    workContext.getMap().remove("name");
+    workContext.getEntrySet().iterator().next().setValue(4);
+    Assertions.assertEquals(2, workContext.getVersion("name"));
+    Assertions.assertEquals(3, workContext.getVersion("count"));
+
+    SlotWorkContext slotWorkContext = new SymbolTable(List.of("count")).newWorkContext(Map.of("count", 1));
+    Assertions.assertEquals(1, slotWorkContext.getVersion("count"));
+    slotWorkContext.put(0, 2);
+    slotWorkContext.getMap().put("count", 3);
+    slotWorkContext.put("other", true);
+    Assertions.assertEquals(3, slotWorkContext.getVersion("count"));
+    Assertions.assertEquals(1, slotWorkContext.getVersion("other"));
+  }
+
+  @Test
+  void testResultIsReused() {
+    TaskContext taskContext = new TaskContext(new NoOpTask());
+    taskContext.setWhen("count < 3");
+    CountingWorkContext workContext = new CountingWorkContext();
+    workContext.put("count", 1);
+    Assertions.assertTrue(taskContext.evaluateWhen(workContext));
+
+    // The unchanged variable is not read again
+    int reads = workContext.reads;
+    Assertions.assertTrue(taskContext.evaluateWhen(workContext));
+    Assertions.assertEquals(reads, workContext.reads);
+
+    // Changes through the map are counted too
+    workContext.getMap().put("count", 5);
+    Assertions.assertFalse(taskContext.evaluateWhen(workContext));
+
+    // Each work context keeps its own result
+    CountingWorkContext otherWorkContext = new CountingWorkContext();
+    otherWorkContext.put("count", 2);
+    Assertions.assertTrue(taskContext.evaluateWhen(otherWorkContext));
+    reads = workContext.reads;
+    Assertions.assertFalse(taskContext.evaluateWhen(workContext));
+    Assertions.assertEquals(reads, workContext.reads);
+  }
+
+  @Test
+  void testMutableValuesAreEvaluated() {
+    TaskContext taskContext = new TaskContext(new NoOpTask());
+    taskContext.setWhen("{{ person.age > 18 }}");
+    WorkContext workContext = new WorkContext();
+    Person person = new Person("Name", 20);
+    workContext.put("person", person);
+    Assertions.assertTrue(taskContext.evaluateWhen(workContext));
+    person.setAge(10);
+    Assertions.assertFalse(taskContext.evaluateWhen(workContext));
+  }
+
+  @Test
+  void testDependencies() {
+    TaskContext taskContext = new TaskContext(new NoOpTask());
+    Assertions.assertArrayEquals(new String[] {"person", "person.age", "limit"},
+        new Guard("{{ person.age > limit }}", taskContext).getDependencies());
+    Assertions.assertArrayEquals(new String[0], new Guard("1 < 2", taskContext).getDependencies());
+    Assertions.assertNull(new Guard("person.isAdult()", taskContext).getDependencies());
+    Assertions.assertNull(new Guard("count = 3", taskContext).getDependencies());
+    taskContext.put("limit", "{{ max }}");
+    Assertions.assertNull(new Guard("count < limit", taskContext).getDependencies());
+  }
+
+  private static class CountingWorkContext extends WorkContext {
+
+    private int reads = 0;
+
+    @Override
+    public Object get(String key) {
+      reads++;
+      return super.get(key);
+    }
+  }
+}
@@ -42,4 +42,14 @@ class NoOpTaskTest {
 		Assertions.assertEquals(WorkStatus.COMPLETED, workReport.getStatus());
 
 	}
+
+	@Test
+	void testReportIsShared() {
+		WorkContext workContext = new WorkContext();
+		WorkReport workReport = work.execute(workContext, new TaskContext(work));
+		Assertions.assertSame(workContext, workReport.getWorkContext());
+		Assertions.assertNull(workReport.getError());
+		Assertions.assertSame(workReport, work.execute(workContext, new TaskContext(work)));
+		Assertions.assertNotSame(workReport, work.execute(new WorkContext(), new TaskContext(work)));
+	}
 }
@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.work;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.jexl3.JexlBuilder;
+import org.apache.commons.jexl3.JexlScript;
+import org.apache.commons.jexl3.MapContext;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ScriptCacheTest {
+
+  @Test
+  void testHitsAndMisses() {
+    ScriptCache scriptCache = new ScriptCache(new JexlBuilder().create(), 10);
+    JexlScript script = scriptCache.getScript("1 + 2");
+    Assertions.assertSame(script, scriptCache.getScript("1 + 2"));
+    Assertions.assertEquals(3, script.execute(new MapContext()));
+    Assertions.assertEquals(1, scriptCache.getMisses());
+    Assertions.assertEquals(1, scriptCache.getHits());
+    Assertions.assertEquals(1, scriptCache.size());
+  }
+
+  @Test
+  void testLeastRecentlyUsedEviction() {
+    ScriptCache scriptCache = new ScriptCache(new JexlBuilder().create(), 2);
+    JexlScript first = scriptCache.getScript("a + 1");
+    scriptCache.getScript("b + 1");
+    // Use the first script so that the second becomes the eldest
+    scriptCache.getScript("a + 1");
+    scriptCache.getScript("c + 1");
+    Assertions.assertEquals(2, scriptCache.size());
+    Assertions.assertEquals(1, scriptCache.getEvictions());
+    Assertions.assertSame(first, scriptCache.getScript("a + 1"));
+
+    // Shrinking the cache evicts the eldest scripts
+    scriptCache.setMaxSize(1);
+    Assertions.assertEquals(1, scriptCache.size());
+    Assertions.assertEquals(2, scriptCache.getEvictions());
+  }
+
+  @Test
+  void testSharedByExpressionAndSetTask() {
+    ScriptCache scriptCache = Expression.getScriptCache();
+    long misses = scriptCache.getMisses();
+    WorkContext workContext = new WorkContext();
+    workContext.put("counter", 1);
+    TaskContext taskContext = new TaskContext(new SetTask(), "counter = counter + 41");
+    new SetTask().execute(workContext, taskContext);
+    Assertions.assertEquals(42, workContext.get("counter"));
+    Assertions.assertEquals(42, Expression.evaluate(workContext, taskContext, "counter + 0"));
+    Assertions.assertEquals(misses + 2, scriptCache.getMisses());
+    Assertions.assertSame(scriptCache.getScript("counter + 41"), scriptCache.getScript("counter + 41"));
+  }
+
+  @Test
+  void testConcurrentLookups() throws Exception {
+    ScriptCache scriptCache = new ScriptCache(new JexlBuilder().create(), 32);
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        int thread = t;
+        futures.add(executorService.submit(() -> {
+          for (int i = 0; i < 1000; i++) {
+            Assertions.assertEquals(3, scriptCache.getScript("1 + 2").execute(new MapContext()));
+            scriptCache.getScript("value + " + (thread * 1000 + i % 50));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executorService.shutdown();
+    }
+    Assertions.assertTrue(scriptCache.size() <= 32);
+    Assertions.assertEquals(8000, scriptCache.getHits() + scriptCache.getMisses());
+  }
+}
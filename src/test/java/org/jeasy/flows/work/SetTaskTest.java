@@ -64,4 +64,51 @@ class SetTaskTest {
     Assertions.assertNotNull(workContext.get("age"));
     Assertions.assertEquals(20, workContext.get("age"));
   }
+
+  @Test
+  void testAssignmentIsCompiledOnce() {
+    SetTask setTask = new SetTask();
+    TaskContext taskContext = new TaskContext(setTask, "counter = counter + 1");
+    taskContext.compileWork();
+    SetTask.Assignment assignment = (SetTask.Assignment) taskContext.getCompiledWork();
+    Assertions.assertEquals("counter", assignment.getProperty());
+    Assertions.assertTrue(assignment.isExpression());
+
+    WorkContext workContext = new WorkContext();
+    workContext.put("counter", 0);
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertEquals(WorkStatus.COMPLETED, setTask.execute(workContext, taskContext).getStatus());
+    }
+    Assertions.assertEquals(3, workContext.get("counter"));
+    Assertions.assertSame(assignment, taskContext.getCompiledWork());
+
+    // Changing the data prepares the task again
+    taskContext.setData("label = {{ 'count ' + counter }}");
+    setTask.execute(workContext, taskContext);
+    Assertions.assertEquals("count 3", workContext.get("label"));
+    taskContext.setData("flag = yes");
+    setTask.execute(workContext, taskContext);
+    Assertions.assertEquals("yes", workContext.get("flag"));
+    Assertions.assertFalse(((SetTask.Assignment) taskContext.getCompiledWork()).isExpression());
+
+    // Data without an assignment fails
+    taskContext.setData("missing");
+    Assertions.assertEquals(WorkStatus.FAILED, setTask.execute(workContext, taskContext).getStatus());
+  }
+
+  @Test
+  void testRepeatedAssignment() {
+    String yaml = """
+        id: set-repeat-workflow
+        workflow:
+          - set: counter = {{ 0 }}
+          - set: counter = counter + 1
+            repeat: 5
+        """;
+    Playbook playbook = YamlReader.readPlaybook(yaml);
+    PlaybookManager.add(playbook);
+    WorkReport workReport = PlaybookManager.run(playbook.getId());
+    Assertions.assertEquals(WorkStatus.COMPLETED, workReport.getStatus());
+    Assertions.assertEquals(5, workReport.getWorkContext().get("counter"));
+  }
 }
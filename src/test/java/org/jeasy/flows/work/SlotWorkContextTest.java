@@ -0,0 +1,213 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.work;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jeasy.flows.playbook.CompiledPlaybook;
+import org.jeasy.flows.playbook.Playbook;
+import org.jeasy.flows.playbook.PlaybookManager;
+import org.jeasy.flows.reader.YamlReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SlotWorkContextTest {
+
+  @Test
+  void testSlotsAndOtherVariables() {
+    SymbolTable symbolTable = new SymbolTable(List.of("name", "count", "name"));
+    Assertions.assertEquals(2, symbolTable.size());
+    Assertions.assertEquals(1, symbolTable.slot("count"));
+    Assertions.assertEquals(SymbolTable.UNKNOWN, symbolTable.slot("other"));
+
+    SlotWorkContext workContext = symbolTable.newWorkContext(Map.of("name", "first", "other", "value"));
+    Assertions.assertEquals("first", workContext.get("name"));
+    Assertions.assertEquals("first", workContext.get(symbolTable.slot("name")));
+    Assertions.assertEquals("value", workContext.get("other"));
+    Assertions.assertFalse(workContext.containsKey("count"));
+
+    // The vars do not replace variables which are set
+    workContext.put(Map.of("name", "second"));
+    Assertions.assertEquals("first", workContext.get("name"));
+
+    workContext.put(symbolTable.slot("count"), 3);
+    workContext.put("count", null);
+    Assertions.assertEquals(3, workContext.get("count"));
+    Assertions.assertTrue(workContext.containsKey("count"));
+
+    // The map is a live view of both
+    Map<String, Object> map = workContext.getMap();
+    Assertions.assertEquals(Map.of("name", "first", "count", 3, "other", "value"), new HashMap<>(map));
+    map.remove("name");
+    map.remove("other");
+    map.put("added", true);
+    Assertions.assertFalse(workContext.containsKey("name"));
+    Assertions.assertNull(workContext.get("other"));
+    Assertions.assertEquals(true, workContext.get("added"));
+    workContext.getEntrySet().removeIf(entry -> entry.getKey().equals("count"));
+    Assertions.assertEquals(Map.of("added", true), new HashMap<>(map));
+  }
+
+  @Test
+  void testSymbolTableLookups() {
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      names.add("var" + i);
+    }
+    SymbolTable symbolTable = new SymbolTable(names);
+    for (int i = 0; i < 100; i++) {
+      // An equal name which is not the same instance is found too
+      Assertions.assertEquals(i, symbolTable.slot(new String("var" + i)));
+      Assertions.assertEquals("var" + i, symbolTable.name(i));
+    }
+    Assertions.assertEquals(SymbolTable.UNKNOWN, symbolTable.slot("var100"));
+    Assertions.assertEquals(SymbolTable.UNKNOWN, symbolTable.slot(null));
+    Assertions.assertEquals(SymbolTable.UNKNOWN, new SymbolTable(List.of()).slot("var0"));
+  }
+
+  @Test
+  void testCompiledTasksUseSlots() {
+    SymbolTable symbolTable = new SymbolTable(List.of("count", "large"));
+    NamedAccessWorkContext workContext = new NamedAccessWorkContext(symbolTable);
+    workContext.put(symbolTable.slot("count"), 1);
+
+    TaskContext setContext = new TaskContext(new SetTask(), "large = yes");
+    setContext.setWhen("count > 2");
+    setContext.setSymbolTable(symbolTable);
+    setContext.compileWork();
+    Assertions.assertFalse(setContext.evaluateWhen(workContext));
+    // The guard and the assignment read and write the slots, not the names
+    int namedAccesses = workContext.namedAccesses;
+    Assertions.assertFalse(setContext.evaluateWhen(workContext));
+    workContext.put(symbolTable.slot("count"), 3);
+    Assertions.assertTrue(setContext.evaluateWhen(workContext));
+    setContext.getWork().execute(workContext, setContext);
+    Assertions.assertEquals("yes", workContext.get(symbolTable.slot("large")));
+    Assertions.assertEquals(namedAccesses + 1, workContext.namedAccesses);
+
+    // A work context without the same slots is used by name
+    WorkContext other = new WorkContext();
+    other.put("count", 5);
+    Assertions.assertTrue(setContext.evaluateWhen(other));
+    setContext.getWork().execute(other, setContext);
+    Assertions.assertEquals("yes", other.get("large"));
+  }
+
+  @Test
+  void testValuesAreWrittenBeforeVersions() {
+    SymbolTable symbolTable = new SymbolTable(List.of("count"));
+    WriteOrderWorkContext workContext = new WriteOrderWorkContext(symbolTable);
+    Map<String, Object> map = workContext.getMap();
+    workContext.put("count", 1);
+    workContext.put("other", 1);
+    map.put("count", 2);
+    map.put("other", 2);
+    map.entrySet().forEach(entry -> entry.setValue(3));
+    map.remove("count");
+    map.remove("other");
+    workContext.put(Map.of("count", 4, "other", 4));
+    map.entrySet().removeIf(entry -> true);
+    // Each version was incremented after its value was written
+    Assertions.assertEquals(List.of(1, 1, 2, 2, 3, 3, "removed", "removed", 4, 4, "removed", "removed"),
+        workContext.seen);
+  }
+
+  @Test
+  void testCompiledPlaybookUsesSlots() {
+    String yaml = """
+        id: slot-workflow
+        vars:
+          limit: 10
+        workflow:
+          - set: total = {{ limit * 2 }}
+          - block:
+            - when: total > limit
+            - set: large = yes
+          - evaluate: extra = total + 1
+        """;
+    Playbook playbook = YamlReader.readPlaybook(yaml);
+    PlaybookManager.add(playbook);
+    CompiledPlaybook compiledPlaybook = PlaybookManager.getCompiledPlaybook(playbook.getId());
+    Assertions.assertEquals(List.of("limit", "total", "large"), compiledPlaybook.getSymbolTable().getNames());
+
+    WorkReport workReport = PlaybookManager.run(playbook.getId());
+    Assertions.assertEquals(WorkStatus.COMPLETED, workReport.getStatus());
+    WorkContext workContext = workReport.getWorkContext();
+    Assertions.assertInstanceOf(SlotWorkContext.class, workContext);
+    Assertions.assertEquals(20, workContext.get("total"));
+    Assertions.assertEquals("yes", workContext.get("large"));
+    Assertions.assertEquals(21, workContext.get("extra"));
+  }
+
+  private static class NamedAccessWorkContext extends SlotWorkContext {
+
+    private int namedAccesses = 0;
+
+    NamedAccessWorkContext(SymbolTable symbolTable) {
+      super(symbolTable);
+    }
+
+    @Override
+    public Object get(String key) {
+      namedAccesses++;
+      return super.get(key);
+    }
+
+    @Override
+    public void put(String key, Object value) {
+      namedAccesses++;
+      super.put(key, value);
+    }
+
+    @Override
+    public long getVersion(String key) {
+      namedAccesses++;
+      return super.getVersion(key);
+    }
+  }
+
+  private static class WriteOrderWorkContext extends SlotWorkContext {
+
+    private final List<Object> seen = new ArrayList<>();
+
+    WriteOrderWorkContext(SymbolTable symbolTable) {
+      super(symbolTable);
+    }
+
+    @Override
+    protected void changed(String key) {
+      seen.add(containsKey(key) ? get(key) : "removed");
+      super.changed(key);
+    }
+
+    @Override
+    protected void changed(int slot) {
+      seen.add(get(slot) != null ? get(slot) : "removed");
+      super.changed(slot);
+    }
+  }
+}
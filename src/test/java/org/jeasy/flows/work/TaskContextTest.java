@@ -0,0 +1,55 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.work;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TaskContextTest {
+
+  @Test
+  void testFrozenTaskContext() {
+    TaskContext taskContext = new TaskContext(new NoOpTask(), "data");
+    taskContext.put("name", "value");
+    taskContext.freeze();
+    Assertions.assertTrue(taskContext.isFrozen());
+    Assertions.assertEquals("value", taskContext.get("name"));
+    Assertions.assertThrows(IllegalStateException.class, () -> taskContext.put("name", "other"));
+    Assertions.assertThrows(IllegalStateException.class, () -> taskContext.put(Map.of("name", "other")));
+    Assertions.assertThrows(IllegalStateException.class, () -> taskContext.setData("other"));
+    Assertions.assertThrows(IllegalStateException.class, () -> taskContext.setWhen("true"));
+    Assertions.assertThrows(IllegalStateException.class, () -> taskContext.setName("other"));
+    Assertions.assertThrows(IllegalStateException.class, () -> taskContext.setDelay(10));
+    Assertions.assertThrows(IllegalStateException.class, () -> taskContext.setTimer(null));
+    Assertions.assertThrows(IllegalStateException.class, () -> taskContext.setWhenTimer(null));
+    Assertions.assertThrows(IllegalStateException.class, () -> taskContext.setCompiledWork(null));
+    Assertions.assertThrows(IllegalStateException.class, taskContext::compileTemplates);
+    Assertions.assertThrows(IllegalStateException.class, taskContext::compileWork);
+    Assertions.assertThrows(IllegalStateException.class, () -> taskContext.foldTemplates(template -> template));
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> taskContext.getMap().put("name", "other"));
+    Assertions.assertEquals("value", taskContext.get("name"));
+  }
+}
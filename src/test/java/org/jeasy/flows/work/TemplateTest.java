@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.work;
+
+import java.util.List;
+
+import org.apache.commons.jexl3.JexlContext;
+import org.apache.commons.jexl3.MapContext;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class TemplateTest {
+
+  @Test
+  void testSingleExpressionIsAnObject() {
+    JexlContext mapContext = new MapContext();
+    mapContext.set("items", List.of("a", "b"));
+    Template template = Template.compile("{{ items }}");
+    Assertions.assertTrue(template.isSingleExpression());
+    Assertions.assertEquals(List.of("a", "b"), template.evaluate(mapContext));
+  }
+
+  @Test
+  void testLiteralsAndExpressions() {
+    JexlContext mapContext = new MapContext();
+    mapContext.set("user", new Person("Jane", 30));
+    Template template = Template.compile("User {{ user.name }} is {{ user.age }}, {{ missing }} stays");
+    Assertions.assertTrue(template.hasExpressions());
+    Assertions.assertFalse(template.isSingleExpression());
+    Assertions.assertEquals("User Jane is 30, {{ missing }} stays", template.evaluate(mapContext));
+
+    // Rendering again uses the same parsed template
+    mapContext.set("user", new Person("John", 40));
+    Assertions.assertEquals("User John is 40, {{ missing }} stays", template.evaluate(mapContext));
+  }
+
+  @Test
+  void testReplacementIsLiteral() {
+    JexlContext mapContext = new MapContext();
+    mapContext.set("price", "$5.00");
+    Assertions.assertEquals("Price: $5.00", Template.compile("Price: {{ price }}").evaluate(mapContext));
+  }
+
+  @Test
+  void testTextWithoutExpressions() {
+    Template template = Template.compile("Just a message");
+    Assertions.assertFalse(template.hasExpressions());
+    Assertions.assertEquals("Just a message", template.evaluate(new MapContext()));
+  }
+
+  @Test
+  void testTaskContextTemplates() {
+    TaskContext taskContext = new TaskContext(new LogTask(), "Hello {{ name }}");
+    taskContext.put(LogTask.MESSAGE_VAR, "Bye {{ name }}");
+    taskContext.compileTemplates();
+    Assertions.assertSame(taskContext.getDataTemplate(), taskContext.getDataTemplate());
+    Assertions.assertSame(taskContext.getTemplate(LogTask.MESSAGE_VAR), taskContext.getTemplate(LogTask.MESSAGE_VAR));
+
+    WorkContext workContext = new WorkContext();
+    workContext.put("name", "world");
+    Assertions.assertEquals("Hello world", Expression.evaluate(workContext, taskContext, taskContext.getDataTemplate()));
+    Assertions.assertEquals(WorkStatus.COMPLETED, new LogTask().execute(workContext, taskContext).getStatus());
+
+    // Changing the data replaces the template
+    taskContext.setData("Goodbye {{ name }}");
+    Assertions.assertEquals("Goodbye world",
+        Expression.evaluate(workContext, taskContext, taskContext.getDataTemplate()));
+  }
+}
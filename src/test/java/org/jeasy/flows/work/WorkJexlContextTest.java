@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ *  Copyright 2021 Matt Rajkowski (https://github.com/rajkowski)
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *  THE SOFTWARE.
+ */
+package org.jeasy.flows.work;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class WorkJexlContextTest {
+
+  @Test
+  void testTaskVarsBeforeWorkContext() {
+    WorkContext workContext = new WorkContext();
+    workContext.put("name", "work");
+    workContext.put("shared", "work");
+    TaskContext taskContext = new TaskContext(new NoOpTask());
+    taskContext.put("shared", "task");
+    taskContext.put("empty", null);
+
+    WorkJexlContext jexlContext = new WorkJexlContext(workContext, taskContext);
+    Assertions.assertEquals("work", jexlContext.get("name"));
+    Assertions.assertEquals("task", jexlContext.get("shared"));
+    Assertions.assertTrue(jexlContext.has("empty"));
+    Assertions.assertNull(jexlContext.get("empty"));
+    Assertions.assertFalse(jexlContext.has("missing"));
+    Assertions.assertEquals("task work", Expression.evaluate(workContext, taskContext, "{{ shared }} {{ name }}"));
+  }
+
+  @Test
+  void testWritesGoToWorkContext() {
+    WorkContext workContext = new WorkContext();
+    workContext.put("counter", 1);
+    TaskContext taskContext = new TaskContext(new EvaluateTask(), "counter = counter + 1; total = counter * 10");
+
+    WorkReport workReport = new EvaluateTask().execute(workContext, taskContext);
+    Assertions.assertEquals(WorkStatus.COMPLETED, workReport.getStatus());
+    Assertions.assertEquals(2, workContext.get("counter"));
+    Assertions.assertEquals(20, workContext.get("total"));
+    Assertions.assertFalse(taskContext.containsKey("total"));
+  }
+}
@@ -23,12 +23,17 @@
  */
 package org.jeasy.flows.workflow;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.jeasy.flows.engine.DelayScheduler;
 import org.jeasy.flows.work.DefaultWorkReport;
 import org.jeasy.flows.work.TaskContext;
 import org.jeasy.flows.work.Work;
@@ -67,6 +72,167 @@ class ParallelFlowExecutorTest {
         Assertions.assertNotEquals(workReports.get(0).getStatus(), workReports.get(1).getStatus());
     }
 
+    @Test
+    void testConcurrencyLimitOnSharedExecutor() {
+
+        // given
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Work work = (workContext, taskContext) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+        };
+        List<TaskContext> workUnits = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            workUnits.add(new TaskContext(work));
+        }
+        ParallelFlowExecutor parallelFlowExecutor = new ParallelFlowExecutor(executorService, 2, 5, TimeUnit.SECONDS);
+
+        // when
+        List<WorkReport> workReports = parallelFlowExecutor.executeInParallel(workUnits, new WorkContext());
+        // the shared executor can be used again
+        List<WorkReport> moreWorkReports = parallelFlowExecutor.executeInParallel(workUnits, new WorkContext());
+        executorService.shutdown();
+
+        // then
+        Assertions.assertEquals(6, workReports.size());
+        Assertions.assertEquals(6, moreWorkReports.size());
+        Assertions.assertTrue(workReports.stream().allMatch(report -> report.getStatus() == WorkStatus.COMPLETED));
+        Assertions.assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void testTimeoutIsDeadlineForAllWorkUnits() {
+
+        // given
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        AtomicInteger interrupted = new AtomicInteger();
+        Work slowWork = (workContext, taskContext) -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+                Thread.currentThread().interrupt();
+            }
+            return new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+        };
+        Work quickWork = (workContext, taskContext) -> new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+        List<TaskContext> workUnits = new ArrayList<>();
+        workUnits.add(new TaskContext(quickWork));
+        for (int i = 0; i < 3; i++) {
+            TaskContext slowTask = new TaskContext(slowWork);
+            slowTask.setName("slow-" + i);
+            workUnits.add(slowTask);
+        }
+        ParallelFlowExecutor parallelFlowExecutor = new ParallelFlowExecutor(executorService, 300, TimeUnit.MILLISECONDS);
+
+        // when
+        long start = System.nanoTime();
+        List<WorkReport> workReports = parallelFlowExecutor.executeInParallel(workUnits, new WorkContext());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        executorService.shutdown();
+
+        // then
+        Assertions.assertTrue(elapsedMillis < 900, "Took " + elapsedMillis + "ms");
+        Assertions.assertEquals(4, workReports.size());
+        Assertions.assertEquals(WorkStatus.COMPLETED, workReports.get(0).getStatus());
+        for (int i = 1; i < 4; i++) {
+            WorkReport workReport = workReports.get(i);
+            Assertions.assertEquals(WorkStatus.FAILED, workReport.getStatus());
+            Assertions.assertInstanceOf(TimeoutException.class, workReport.getError());
+            Assertions.assertTrue(workReport.getError().getMessage().contains("slow-" + (i - 1)));
+        }
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            while (interrupted.get() < 3) {
+                Thread.sleep(10);
+            }
+        });
+    }
+
+    @Test
+    void testFailedWorkUnitCancelsTheOthers() {
+
+        // given
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        AtomicInteger running = new AtomicInteger();
+        Work failingWork = (workContext, taskContext) -> {
+            throw new IllegalStateException("failed");
+        };
+        Work slowWork = (workContext, taskContext) -> {
+            running.incrementAndGet();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+        };
+        List<TaskContext> workUnits = new ArrayList<>();
+        workUnits.add(new TaskContext(failingWork));
+        for (int i = 0; i < 3; i++) {
+            workUnits.add(new TaskContext(slowWork));
+        }
+        ParallelFlowExecutor parallelFlowExecutor = new ParallelFlowExecutor(executorService, 30, TimeUnit.SECONDS);
+
+        // when
+        Assertions.assertThrows(RuntimeException.class,
+                () -> parallelFlowExecutor.executeInParallel(workUnits, new WorkContext()));
+        executorService.shutdown();
+
+        // then the slow work units are interrupted, or never started
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+            while (running.get() > 0) {
+                Thread.sleep(10);
+            }
+        });
+    }
+
+    @Test
+    void testDelayedWorkUnitsDoNotHoldThreads() {
+
+        // given one thread, so the delays can only overlap if it is not held while waiting
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        DelayScheduler delayScheduler = new DelayScheduler();
+        Work quickWork = (workContext, taskContext) -> new DefaultWorkReport(WorkStatus.COMPLETED, workContext);
+        List<TaskContext> workUnits = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TaskContext delayedTask = new TaskContext(quickWork);
+            delayedTask.setDelay(200);
+            workUnits.add(delayedTask);
+        }
+        TaskContext lateTask = new TaskContext(quickWork);
+        lateTask.setName("late");
+        lateTask.setDelay(10_000);
+        workUnits.add(lateTask);
+        ParallelFlowExecutor parallelFlowExecutor = new ParallelFlowExecutor(executorService, 0, 500,
+                TimeUnit.MILLISECONDS, delayScheduler);
+
+        // when
+        long start = System.nanoTime();
+        List<WorkReport> workReports = parallelFlowExecutor.executeInParallel(workUnits, new WorkContext());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        executorService.shutdown();
+
+        // then the delayed work units ran together, and the late one failed at the deadline
+        Assertions.assertTrue(elapsedMillis >= 200 && elapsedMillis < 900, "Took " + elapsedMillis + "ms");
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals(WorkStatus.COMPLETED, workReports.get(i).getStatus());
+        }
+        Assertions.assertEquals(WorkStatus.FAILED, workReports.get(3).getStatus());
+        Assertions.assertInstanceOf(TimeoutException.class, workReports.get(3).getError());
+        Assertions.assertEquals(0, delayScheduler.getPendingCount());
+        delayScheduler.shutdown();
+    }
+
     static class HelloWorldWork implements Work {
 
         public static final String STATUS_VAR = "STATUS";
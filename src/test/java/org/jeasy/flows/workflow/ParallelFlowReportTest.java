@@ -33,12 +33,13 @@ import org.junit.jupiter.api.Test;
 class ParallelFlowReportTest {
 
 	private Exception exception;
+	private WorkContext workContext;
 	private ParallelFlowReport parallelFlowReport;
 
 	@BeforeEach
 	void setUp() {
 		exception = new Exception("test exception");
-		WorkContext workContext = new WorkContext();
+		workContext = new WorkContext();
 		parallelFlowReport = new ParallelFlowReport();
 		parallelFlowReport.add(new DefaultWorkReport(WorkStatus.FAILED, workContext, exception));
 		parallelFlowReport.add(new DefaultWorkReport(WorkStatus.COMPLETED, workContext));
@@ -58,4 +59,46 @@ class ParallelFlowReportTest {
 	void testGetReports() {
 		Assertions.assertEquals(2, parallelFlowReport.getReports().size());
 	}
+
+	@Test
+	void testReportsStream() {
+		Assertions.assertEquals(1, parallelFlowReport.reports().filter(report -> report.getError() != null).count());
+	}
+
+	@Test
+	void testEachCallSeesTheCurrentContext() {
+		workContext.put("first", 1);
+		WorkContext merged = parallelFlowReport.getWorkContext();
+		Assertions.assertNotSame(workContext, merged);
+		Assertions.assertEquals(1, merged.get("first"));
+		// Later changes to the partial context are seen by the next call
+		workContext.put("second", 2);
+		Assertions.assertEquals(2, parallelFlowReport.getWorkContext().get("second"));
+		// A caller's changes are not seen by other callers, nor by the work units
+		merged.put("third", 3);
+		Assertions.assertNull(parallelFlowReport.getWorkContext().get("third"));
+		Assertions.assertNull(workContext.get("third"));
+	}
+
+	@Test
+	void testReplacedReportIsMerged() {
+		WorkContext otherContext = new WorkContext();
+		otherContext.put("other", true);
+		Assertions.assertNull(parallelFlowReport.getWorkContext().get("other"));
+		parallelFlowReport.getReports().set(1, new DefaultWorkReport(WorkStatus.COMPLETED, otherContext));
+		Assertions.assertEquals(true, parallelFlowReport.getWorkContext().get("other"));
+	}
+
+	@Test
+	void testDistinctWorkContextsAreMerged() {
+		workContext.put("first", 1);
+		WorkContext otherContext = new WorkContext();
+		otherContext.put("second", 2);
+		parallelFlowReport.add(new DefaultWorkReport(WorkStatus.COMPLETED, otherContext));
+		WorkContext merged = parallelFlowReport.getWorkContext();
+		Assertions.assertEquals(1, merged.get("first"));
+		Assertions.assertEquals(2, merged.get("second"));
+		otherContext.put("second", 3);
+		Assertions.assertEquals(3, parallelFlowReport.getWorkContext().get("second"));
+	}
 }